@@ -0,0 +1,293 @@
+package org.dmdev.bookstore.batch;
+
+import lombok.extern.slf4j.Slf4j;
+import org.dmdev.bookstore.domain.Author;
+import org.dmdev.bookstore.domain.Book;
+import org.dmdev.bookstore.domain.BookFile;
+import org.dmdev.bookstore.domain.BookGenre;
+import org.dmdev.bookstore.domain.Genre;
+import org.dmdev.bookstore.repository.AuthorRepository;
+import org.dmdev.bookstore.repository.BookFileRepository;
+import org.dmdev.bookstore.repository.BookRepository;
+import org.dmdev.bookstore.repository.GenreRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.util.concurrent.Queues;
+
+import jakarta.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Optional micro-batching of book writes across concurrent requests. Creates and metadata-only
+ * updates arriving within {@code max-wait} (or until {@code max-batch-size} is reached) are written
+ * with one multi-row statement per table; each caller still gets its own book or error. If a
+ * batch fails it is replayed one write at a time so only the offending caller sees the error.
+ * Updates that change links always run on their own. When the queue is full a write runs directly
+ * instead of waiting, and a caller whose write is not flushed within {@code timeout} gets an error
+ * (the write may still be applied later).
+ */
+@Slf4j
+@Component
+public class BookWriteCoalescer {
+
+    private final BookRepository bookRepository;
+    private final AuthorRepository authorRepository;
+    private final GenreRepository genreRepository;
+    private final BookFileRepository bookFileRepository;
+    private final TransactionalOperator transactionalOperator;
+    private final boolean enabled;
+    private final Duration timeout;
+    // Multicast without auto-cancel survives its subscriber, so the flusher can resubscribe after a failure
+    private final Sinks.Many<PendingWrite> writes;
+    // Sinks reject concurrent emission; producers take turns instead of spinning on the event loop
+    private final Object emitLock = new Object();
+    private final Disposable flusher;
+
+    public BookWriteCoalescer(BookRepository bookRepository,
+                              AuthorRepository authorRepository,
+                              GenreRepository genreRepository,
+                              BookFileRepository bookFileRepository,
+                              TransactionalOperator transactionalOperator,
+                              @Value("${bookstore.write-coalescer.enabled:false}") boolean enabled,
+                              @Value("${bookstore.write-coalescer.max-batch-size:200}") int maxBatchSize,
+                              @Value("${bookstore.write-coalescer.max-wait:PT0.005S}") Duration maxWait,
+                              @Value("${bookstore.write-coalescer.timeout:PT30S}") Duration timeout) {
+        this.bookRepository = bookRepository;
+        this.authorRepository = authorRepository;
+        this.genreRepository = genreRepository;
+        this.bookFileRepository = bookFileRepository;
+        this.transactionalOperator = transactionalOperator;
+        this.enabled = enabled;
+        this.timeout = timeout;
+        this.writes = Sinks.many().multicast()
+                .onBackpressureBuffer(Math.max(Queues.SMALL_BUFFER_SIZE, maxBatchSize * 4), false);
+        this.flusher = !enabled ? null : writes.asFlux()
+                // Fair backpressure: buffers wait for demand instead of failing while flushes are slow
+                .bufferTimeout(Math.max(1, maxBatchSize), maxWait, true)
+                .concatMap(batch -> flush(batch).onErrorResume(e -> {
+                    log.error("Write batch of {} failed unexpectedly: {}", batch.size(), e.getMessage(), e);
+                    batch.forEach(write -> write.result().tryEmitError(e));
+                    return Mono.empty();
+                }))
+                .doOnError(e -> log.error("Write coalescer failed, resubscribing: {}", e.getMessage(), e))
+                .retry()
+                .subscribe();
+        if (enabled) {
+            log.info("Book write coalescer enabled: batches of up to {} writes within {}", maxBatchSize, maxWait);
+        }
+    }
+
+    /**
+     * Same contract as {@link BookRepository#createAggregate}.
+     */
+    public Mono<Book> create(Book book, List<UUID> genreIds, List<BookFile> files) {
+        if (!enabled) {
+            return bookRepository.createAggregate(book, genreIds, files);
+        }
+        return submit(new PendingWrite(Kind.CREATE, book, genreIds, files, Sinks.one()));
+    }
+
+    /**
+     * Same contract as {@link BookRepository#updateAggregate}.
+     */
+    public Mono<Book> update(Book book, List<UUID> genreIds, List<BookFile> files) {
+        if (!enabled || genreIds != null || files != null) {
+            return bookRepository.updateAggregate(book, genreIds, files);
+        }
+        return submit(new PendingWrite(Kind.UPDATE, book, null, null, Sinks.one()));
+    }
+
+    @PreDestroy
+    void shutdown() {
+        synchronized (emitLock) {
+            writes.tryEmitComplete();
+        }
+        if (flusher != null) {
+            flusher.dispose();
+        }
+    }
+
+    private Mono<Book> submit(PendingWrite write) {
+        return Mono.defer(() -> {
+            Sinks.EmitResult result;
+            synchronized (emitLock) {
+                result = writes.tryEmitNext(write);
+            }
+            if (result.isFailure()) {
+                log.debug("Write queue unavailable ({}), writing book {} directly", result, write.book().getId());
+                return execute(write);
+            }
+            return write.result().asMono().timeout(timeout);
+        });
+    }
+
+    private Mono<Void> flush(List<PendingWrite> batch) {
+        List<PendingWrite> creates = batch.stream().filter(write -> write.kind() == Kind.CREATE).toList();
+        List<PendingWrite> updates = batch.stream().filter(write -> write.kind() == Kind.UPDATE).toList();
+        log.debug("Flushing {} creates and {} updates", creates.size(), updates.size());
+        return flushCreates(creates).then(flushUpdates(updates));
+    }
+
+    private Mono<Void> flushCreates(List<PendingWrite> creates) {
+        if (creates.isEmpty()) {
+            return Mono.empty();
+        }
+        Set<UUID> authorIds = creates.stream()
+                .map(write -> write.book().getAuthorId())
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        Set<UUID> genreIds = creates.stream()
+                .flatMap(write -> write.genreIds().stream())
+                .collect(Collectors.toSet());
+        return Mono.zip(
+                        authorRepository.findAllById(authorIds).map(Author::getId).collect(Collectors.toSet()),
+                        genreRepository.findAllById(genreIds).collectMap(Genre::getId, Function.identity()))
+                .flatMap(known -> {
+                    List<PendingWrite> batchable = new ArrayList<>();
+                    List<PendingWrite> individual = new ArrayList<>();
+                    for (PendingWrite write : creates) {
+                        if (!known.getT1().contains(write.book().getAuthorId())) {
+                            write.result().tryEmitEmpty();
+                        } else if (!known.getT2().keySet().containsAll(write.genreIds())) {
+                            // Let the single-statement path raise the foreign key error for this caller
+                            individual.add(write);
+                        } else {
+                            batchable.add(write);
+                        }
+                    }
+                    return insertAll(batchable, known.getT2())
+                            .then(runIndividually(individual));
+                });
+    }
+
+    private Mono<Void> insertAll(List<PendingWrite> creates, Map<UUID, Genre> genres) {
+        if (creates.isEmpty()) {
+            return Mono.empty();
+        }
+        List<Book> books = creates.stream().map(PendingWrite::book).toList();
+        List<BookGenre> links = creates.stream()
+                .flatMap(write -> write.genreIds().stream().map(genreId -> new BookGenre(write.book().getId(), genreId)))
+                .toList();
+        List<BookFile> files = creates.stream().flatMap(write -> write.files().stream()).toList();
+        return bookRepository.insertAll(books)
+                .then(genreRepository.insertBookGenres(links))
+                .then(bookFileRepository.saveBookFiles(files))
+                .as(transactionalOperator::transactional)
+                .then(Mono.fromRunnable(() -> creates.forEach(write -> {
+                    Book book = write.book();
+                    // Inserted rows start at the column default
+                    book.setVersion(0L);
+                    book.setGenres(write.genreIds().stream().map(genres::get).toList());
+                    book.setFiles(write.files());
+                    write.result().tryEmitValue(book);
+                })))
+                .onErrorResume(e -> {
+                    log.warn("Batched insert of {} books failed ({}), retrying individually", creates.size(), e.getMessage());
+                    return runIndividually(creates);
+                })
+                .then();
+    }
+
+    private Mono<Void> flushUpdates(List<PendingWrite> updates) {
+        if (updates.isEmpty()) {
+            return Mono.empty();
+        }
+        // One statement cannot apply two updates to the same row in order, so repeats go afterwards
+        Set<UUID> seen = new HashSet<>();
+        List<PendingWrite> batchable = new ArrayList<>();
+        List<PendingWrite> repeated = new ArrayList<>();
+        updates.forEach(write -> (seen.add(write.book().getId()) ? batchable : repeated).add(write));
+        return bookRepository.updateAll(batchable.stream().map(PendingWrite::book).toList())
+                .collectList()
+                // All chunks commit together, so a failure leaves nothing applied to replay over
+                .as(transactionalOperator::transactional)
+                .onErrorResume(e -> {
+                    log.warn("Batched update of {} books failed ({}), retrying individually", batchable.size(), e.getMessage());
+                    return runIndividually(batchable).then(Mono.empty());
+                })
+                .flatMap(updatedIds -> emitUpdated(batchable, updatedIds))
+                .then(runIndividually(repeated));
+    }
+
+    /**
+     * Answers batched updates that have committed. Writes whose version did not match get empty;
+     * the rest get the re-read aggregate, read one by one if the batched read fails, since
+     * replaying the write with its now-stale version would report a conflict for a committed update.
+     */
+    private Mono<Void> emitUpdated(List<PendingWrite> batchable, List<UUID> updatedIds) {
+        Set<UUID> updated = new HashSet<>(updatedIds);
+        List<PendingWrite> applied = new ArrayList<>();
+        batchable.forEach(write -> {
+            if (updated.contains(write.book().getId())) {
+                applied.add(write);
+            } else {
+                write.result().tryEmitEmpty();
+            }
+        });
+        if (applied.isEmpty()) {
+            return Mono.empty();
+        }
+        return bookRepository.findAggregatesByIds(updatedIds)
+                .collectMap(Book::getId)
+                .doOnNext(books -> applied.forEach(write -> {
+                    Book book = books.get(write.book().getId());
+                    if (book == null) {
+                        write.result().tryEmitEmpty();
+                    } else {
+                        write.result().tryEmitValue(book);
+                    }
+                }))
+                .then()
+                .onErrorResume(e -> {
+                    log.warn("Reading {} updated books failed ({}), reading individually", applied.size(), e.getMessage());
+                    return Flux.fromIterable(applied)
+                            .concatMap(write -> bookRepository.findAggregateById(write.book().getId())
+                                    .doOnNext(book -> write.result().tryEmitValue(book))
+                                    .switchIfEmpty(Mono.fromRunnable(() -> write.result().tryEmitEmpty()))
+                                    .onErrorResume(readError -> {
+                                        write.result().tryEmitError(readError);
+                                        return Mono.empty();
+                                    }))
+                            .then();
+                });
+    }
+
+    private Mono<Void> runIndividually(List<PendingWrite> writes) {
+        return Flux.fromIterable(writes)
+                .concatMap(write -> execute(write)
+                        .doOnNext(book -> write.result().tryEmitValue(book))
+                        .switchIfEmpty(Mono.fromRunnable(() -> write.result().tryEmitEmpty()))
+                        .onErrorResume(e -> {
+                            write.result().tryEmitError(e);
+                            return Mono.empty();
+                        }))
+                .then();
+    }
+
+    private Mono<Book> execute(PendingWrite write) {
+        return write.kind() == Kind.CREATE
+                ? bookRepository.createAggregate(write.book(), write.genreIds(), write.files())
+                : bookRepository.updateAggregate(write.book(), null, null);
+    }
+
+    private enum Kind {
+        CREATE, UPDATE
+    }
+
+    private record PendingWrite(Kind kind, Book book, List<UUID> genreIds, List<BookFile> files, Sinks.One<Book> result) {
+    }
+}
@@ -0,0 +1,79 @@
+package org.dmdev.bookstore.cache;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.dmdev.bookstore.dto.BookDTO;
+import org.dmdev.bookstore.dto.GenreDTO;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Size-bounded, TTL-based read-through cache of hydrated books (Caffeine's W-TinyLFU eviction).
+ * Concurrent misses for the same id share one load.
+ */
+@Slf4j
+@Component
+public class BookCache {
+
+    private final boolean enabled;
+    private final AsyncCache<UUID, BookDTO> cache;
+
+    public BookCache(@Value("${bookstore.cache.books.enabled:true}") boolean enabled,
+                     @Value("${bookstore.cache.books.maximum-size:10000}") long maximumSize,
+                     @Value("${bookstore.cache.books.ttl:PT10M}") Duration ttl,
+                     MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .buildAsync();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "books");
+        log.info("Book cache {}: maximum size {}, ttl {}", enabled ? "enabled" : "disabled", maximumSize, ttl);
+    }
+
+    public Mono<BookDTO> get(UUID id, Function<UUID, Mono<BookDTO>> loader) {
+        if (!enabled) {
+            return loader.apply(id);
+        }
+        // An empty load completes with null, which Caffeine does not store
+        return Mono.fromFuture(() -> cache.get(id, (key, executor) -> loader.apply(key).toFuture()), true);
+    }
+
+    public void invalidate(UUID id) {
+        cache.synchronous().invalidate(id);
+    }
+
+    public void invalidateAll(Collection<UUID> ids) {
+        cache.synchronous().invalidateAll(ids);
+    }
+
+    public void invalidateByGenre(UUID genreId) {
+        invalidateIf(book -> genresOf(book).stream().anyMatch(genre -> genreId.equals(genre.id())));
+    }
+
+    private void invalidateIf(Predicate<BookDTO> predicate) {
+        List<UUID> stale = cache.synchronous().asMap().entrySet().stream()
+                .filter(entry -> predicate.test(entry.getValue()))
+                .map(Map.Entry::getKey)
+                .toList();
+        invalidateAll(stale);
+    }
+
+    private static List<GenreDTO> genresOf(BookDTO book) {
+        return Objects.requireNonNullElse(book.genres(), List.of());
+    }
+}
@@ -0,0 +1,53 @@
+package org.dmdev.bookstore.controller;
+
+import lombok.RequiredArgsConstructor;
+import org.dmdev.bookstore.model.ResponseModel;
+import org.dmdev.bookstore.service.CatalogExportService;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Mono;
+
+@RestController
+@RequiredArgsConstructor
+@RequestMapping("/api/admin/exports")
+@PreAuthorize("hasRole('ADMIN')")
+public class AdminExportController {
+
+    private static final MediaType GZIP = MediaType.parseMediaType("application/gzip");
+
+    private final CatalogExportService catalogExportService;
+
+    @PostMapping
+    Mono<ResponseModel> start() {
+        return catalogExportService.start();
+    }
+
+    @GetMapping
+    Mono<ResponseModel> list() {
+        return catalogExportService.list();
+    }
+
+    /**
+     * A finished export is sent as a file; one still being written is streamed as it grows,
+     * without a Content-Length.
+     */
+    @GetMapping("/{fileName}")
+    Mono<ResponseEntity<?>> download(@PathVariable String fileName) {
+        return Mono.justOrEmpty(catalogExportService.find(fileName))
+                .map(file -> {
+                    ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                            .contentType(GZIP)
+                            .header(HttpHeaders.CONTENT_DISPOSITION,
+                                    ContentDisposition.attachment().filename(fileName).build().toString());
+                    return catalogExportService.isRunning(fileName)
+                            ? response.body(catalogExportService.tail(file))
+                            : response.body(new FileSystemResource(file));
+                })
+                .defaultIfEmpty(ResponseEntity.notFound().build());
+    }
+}
@@ -5,7 +5,10 @@ import org.dmdev.bookstore.domain.Author;
 import org.dmdev.bookstore.dto.AuthorDTO;
 import org.dmdev.bookstore.model.ResponseModel;
 import org.dmdev.bookstore.service.AuthorService;
+import org.dmdev.bookstore.service.IdempotencyService;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ServerWebExchange;
 import reactor.core.publisher.Mono;
 
 import java.util.UUID;
@@ -16,6 +19,7 @@ import java.util.UUID;
 public class AuthorController {
 
     private final AuthorService authorService;
+    private final IdempotencyService idempotencyService;
 
     @GetMapping
     Mono<ResponseModel> findAll(){
@@ -23,18 +27,28 @@ public class AuthorController {
     }
 
     @GetMapping("/{id}")
-    Mono<ResponseModel> find(@PathVariable UUID id){
-        return authorService.find(id);
+    Mono<ResponseEntity<ResponseModel>> find(@PathVariable UUID id, ServerWebExchange exchange){
+        return ConditionalResponses.conditional(exchange, authorService.findLastModified(id),
+                () -> authorService.find(id));
+    }
+
+    @GetMapping("/{id}/full")
+    Mono<ResponseModel> findWithBooks(@PathVariable UUID id,
+                                      @RequestParam(defaultValue = "1") int page,
+                                      @RequestParam(defaultValue = "20") int size) {
+        return authorService.findWithBooks(id, page, size);
     }
 
     @PostMapping
-    Mono<ResponseModel> save(@RequestBody AuthorDTO authorDTO) {
-        return authorService.save(authorDTO);
+    Mono<ResponseEntity<ResponseModel>> save(@RequestBody AuthorDTO authorDTO,
+                                             @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey) {
+        return ConditionalResponses.withConflictStatus(idempotencyService.execute("create-author", idempotencyKey, authorDTO,
+                () -> authorService.save(authorDTO)));
     }
 
     @PutMapping
-    Mono<ResponseModel> update(@RequestBody AuthorDTO authorDTO) {
-        return authorService.update(authorDTO);
+    Mono<ResponseEntity<ResponseModel>> update(@RequestBody AuthorDTO authorDTO) {
+        return ConditionalResponses.withConflictStatus(authorService.update(authorDTO));
     }
 
     @DeleteMapping("/{id}")
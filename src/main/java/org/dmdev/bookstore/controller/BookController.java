@@ -2,13 +2,33 @@ package org.dmdev.bookstore.controller;
 
 import lombok.RequiredArgsConstructor;
 import org.dmdev.bookstore.dto.BookDTO;
+import org.dmdev.bookstore.dto.BulkBookUpdateDTO;
+import org.dmdev.bookstore.dto.ImportProgressDTO;
+import org.dmdev.bookstore.model.BookFilter;
 import org.dmdev.bookstore.model.ResponseModel;
+import org.dmdev.bookstore.service.BookBulkService;
+import org.dmdev.bookstore.service.BookFileService;
+import org.dmdev.bookstore.service.BookImportService;
 import org.dmdev.bookstore.service.BookService;
+import org.dmdev.bookstore.service.GenreQueryService;
+import org.dmdev.bookstore.service.IdempotencyService;
+import org.dmdev.bookstore.service.SuggestionService;
 import org.dmdev.bookstore.domain.Book;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.codec.StringDecoder;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.multipart.PartEvent;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 @RestController
@@ -17,33 +37,118 @@ import java.util.UUID;
 public class BookController {
 
     private final BookService bookService;
+    private final SuggestionService suggestionService;
+    private final GenreQueryService genreQueryService;
+    private final BookImportService bookImportService;
+    private final BookBulkService bookBulkService;
+    private final BookFileService bookFileService;
+    private final IdempotencyService idempotencyService;
 
     @PostMapping
-    Mono<ResponseModel> save(@RequestBody BookDTO bookDTO) {
-        return bookService.save(bookDTO);
+    Mono<ResponseEntity<ResponseModel>> save(@RequestBody BookDTO bookDTO,
+                                             @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey) {
+        return ConditionalResponses.withConflictStatus(idempotencyService.execute("create-book", idempotencyKey, bookDTO,
+                () -> bookService.save(bookDTO)));
+    }
+
+    @PreAuthorize("hasRole('ADMIN')")
+    @PostMapping(value = "/import",
+            consumes = {MediaType.APPLICATION_NDJSON_VALUE, "text/csv"},
+            produces = MediaType.APPLICATION_NDJSON_VALUE)
+    Flux<ImportProgressDTO> importBooks(ServerHttpRequest request) {
+        MediaType contentType = request.getHeaders().getContentType();
+        Flux<String> lines = StringDecoder.allMimeTypes()
+                .decode(request.getBody(), ResolvableType.forClass(String.class), contentType, Map.of());
+        return bookImportService.importBooks(lines, BookImportService.Format.of(contentType));
+    }
+
+    @PreAuthorize("hasRole('ADMIN')")
+    @PostMapping("/bulk/update")
+    Mono<ResponseModel> bulkUpdate(@RequestBody BulkBookUpdateDTO update) {
+        return bookBulkService.update(update);
+    }
+
+    @PreAuthorize("hasRole('ADMIN')")
+    @PostMapping("/bulk/delete")
+    Mono<ResponseModel> bulkDelete(@RequestBody BookFilter filter) {
+        return bookBulkService.delete(filter);
     }
 
     @GetMapping
     Mono<ResponseModel> findAll(
             @RequestParam(defaultValue = "1") int page,
-            @RequestParam(defaultValue = "10") int size
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(required = false) String cursor
     ) {
+        if (cursor != null) {
+            return bookService.findAllByCursor(cursor, size);
+        }
         return bookService.findAll(page, size);
     }
 
+    @GetMapping(value = "/stream", produces = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.TEXT_EVENT_STREAM_VALUE})
+    Flux<BookDTO> streamAll() {
+        return bookService.streamAll();
+    }
+
+    @GetMapping("/search")
+    Mono<ResponseModel> search(
+            @RequestParam String q,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "10") int size
+    ) {
+        return bookService.search(q, cursor, size);
+    }
+
+    @GetMapping("/suggest")
+    Mono<ResponseModel> suggest(@RequestParam String prefix, @RequestParam(defaultValue = "10") int limit) {
+        return suggestionService.suggest(prefix, limit);
+    }
+
+    @GetMapping(params = "ids")
+    Mono<ResponseModel> findAllByIds(@RequestParam List<UUID> ids) {
+        return bookService.findAllByIds(ids);
+    }
+
     @GetMapping("/byAuthor/{authorId}")
     Mono<ResponseModel> findAllByAuthor(@PathVariable UUID authorId) {
         return bookService.findAllByAuthor(authorId);
     }
 
+    @GetMapping(value = "/byAuthor/{authorId}/stream", produces = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.TEXT_EVENT_STREAM_VALUE})
+    Flux<BookDTO> streamAllByAuthor(@PathVariable UUID authorId) {
+        return bookService.streamAllByAuthor(authorId);
+    }
+
     @GetMapping("/{id}")
-    Mono<ResponseModel> findById(@PathVariable UUID id) {
-        return bookService.findById(id);
+    Mono<ResponseEntity<ResponseModel>> findById(@PathVariable UUID id, ServerWebExchange exchange) {
+        return ConditionalResponses.conditional(exchange, bookService.findLastModified(id),
+                updatedAt -> bookService.findById(id, updatedAt),
+                response -> response.getData() instanceof BookDTO book ? book.updatedAt() : null);
     }
 
+    /**
+     * Sends the file body itself, honouring Range and If-Range so interrupted downloads can resume,
+     * and preferring a stored gzip variant when the client accepts it.
+     */
     @GetMapping("/download/{bookFileId}")
-    Mono<ResponseModel> download(@PathVariable UUID bookFileId){
-        return bookService.download(bookFileId);
+    Mono<Void> download(@PathVariable UUID bookFileId, ServerWebExchange exchange) {
+        return bookFileService.findDownload(bookFileId, FileResponses.acceptsGzip(exchange.getRequest()))
+                .flatMap(download -> FileResponses.send(exchange, download,
+                        () -> bookFileService.recordFullDownload(download)))
+                .switchIfEmpty(Mono.defer(() -> {
+                    exchange.getResponse().setStatusCode(HttpStatus.NOT_FOUND);
+                    return exchange.getResponse().setComplete();
+                }));
+    }
+
+    /**
+     * Multipart upload of a book file in the {@code file} part; streamed to disk, never buffered.
+     */
+    @PostMapping(value = "/{bookId}/files", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    Mono<ResponseModel> uploadFile(@PathVariable UUID bookId, @RequestParam String format,
+                                   @RequestBody Flux<PartEvent> parts) {
+        return bookFileService.upload(bookId, format, parts);
     }
 
     @GetMapping("/by-genres")
@@ -51,13 +156,29 @@ public class BookController {
         return bookService.findBooksByGenres(genreIds);
     }
 
+    @GetMapping("/by-genres/query")
+    Mono<ResponseModel> queryByGenres(
+            @RequestParam(defaultValue = "") List<UUID> all,
+            @RequestParam(defaultValue = "") List<UUID> any,
+            @RequestParam(defaultValue = "") List<UUID> none,
+            @RequestParam(defaultValue = "0") int offset,
+            @RequestParam(defaultValue = "20") int limit
+    ) {
+        return genreQueryService.query(all, any, none, offset, limit);
+    }
+
+    @GetMapping(value = "/by-genres/stream", produces = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.TEXT_EVENT_STREAM_VALUE})
+    Flux<BookDTO> streamBooksByGenres(@RequestParam List<UUID> genreIds) {
+        return bookService.streamBooksByGenres(genreIds);
+    }
+
     @DeleteMapping("/{id}")
     Mono<ResponseModel> delete(@PathVariable UUID id) {
         return bookService.delete(id);
     }
 
     @PutMapping
-    Mono<ResponseModel> update(@RequestBody BookDTO bookDTO) {
-        return bookService.update(bookDTO);
+    Mono<ResponseEntity<ResponseModel>> update(@RequestBody BookDTO bookDTO) {
+        return ConditionalResponses.withConflictStatus(bookService.update(bookDTO));
     }
 }
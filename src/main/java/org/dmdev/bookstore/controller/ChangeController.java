@@ -0,0 +1,39 @@
+package org.dmdev.bookstore.controller;
+
+import lombok.RequiredArgsConstructor;
+import org.dmdev.bookstore.dto.ChangeEventDTO;
+import org.dmdev.bookstore.service.ChangeFeedService;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+
+@RestController
+@RequiredArgsConstructor
+@RequestMapping("/api/changes")
+public class ChangeController {
+
+    private static final Duration HEARTBEAT = Duration.ofSeconds(15);
+
+    private final ChangeFeedService changeFeedService;
+
+    /**
+     * Catalog changes as server-sent events. Resume with the {@code Last-Event-ID} header that
+     * EventSource sends on reconnect, or with {@code after}; without either, only new events are sent.
+     */
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    Flux<ServerSentEvent<ChangeEventDTO>> stream(@RequestParam(required = false) Long after,
+                                                 @RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId) {
+        Flux<ServerSentEvent<ChangeEventDTO>> events = changeFeedService.stream(lastEventId != null ? lastEventId : after)
+                .map(event -> ServerSentEvent.builder(event)
+                        .id(Long.toString(event.position()))
+                        .event(event.aggregateType() + "." + event.eventType().toLowerCase())
+                        .build());
+        // Comments keep idle connections from being closed by proxies
+        Flux<ServerSentEvent<ChangeEventDTO>> heartbeats = Flux.interval(HEARTBEAT)
+                .map(tick -> ServerSentEvent.<ChangeEventDTO>builder().comment("heartbeat").build());
+        return events.publish(shared -> Flux.merge(shared, heartbeats.takeUntilOther(shared.ignoreElements())));
+    }
+}
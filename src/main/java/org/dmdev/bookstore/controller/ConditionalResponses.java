@@ -0,0 +1,75 @@
+package org.dmdev.bookstore.controller;
+
+import org.dmdev.bookstore.model.ResponseModel;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Conditional GET support driven by a row's {@code updated_at}. The validator is checked
+ * before the body is built, so an unchanged resource costs one version lookup. Also maps
+ * conflicting writes to their status code.
+ */
+final class ConditionalResponses {
+
+    private ConditionalResponses() {
+    }
+
+    static Mono<ResponseEntity<ResponseModel>> conditional(ServerWebExchange exchange,
+                                                           Mono<Instant> lastModified,
+                                                           Supplier<Mono<ResponseModel>> body) {
+        return conditional(exchange, lastModified, updatedAt -> body.get(), response -> null);
+    }
+
+    /**
+     * As above for bodies that may come from a cache: {@code body} gets the validator just read,
+     * and the validators sent are those of the body's own version ({@code versionOf}) where it
+     * reports one, so a stale body is never labelled with a newer tag.
+     */
+    static Mono<ResponseEntity<ResponseModel>> conditional(ServerWebExchange exchange,
+                                                           Mono<Instant> lastModified,
+                                                           Function<Instant, Mono<ResponseModel>> body,
+                                                           Function<ResponseModel, Instant> versionOf) {
+        return lastModified
+                .flatMap(updatedAt -> {
+                    String etag = etag(updatedAt);
+                    if (exchange.checkNotModified(etag, updatedAt)) {
+                        return Mono.just(ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                                .eTag(etag)
+                                .lastModified(updatedAt)
+                                .<ResponseModel>build());
+                    }
+                    // The validator is read before the body, so a body newer than it at worst makes the
+                    // client revalidate once more; an older one must carry its own validator instead
+                    return body.apply(updatedAt).map(response -> {
+                        if (!ResponseModel.SUCCESS_STATUS.equals(response.getStatus())) {
+                            return ResponseEntity.ok(response);
+                        }
+                        Instant sent = Objects.requireNonNullElse(versionOf.apply(response), updatedAt);
+                        return ResponseEntity.ok().eTag(etag(sent)).lastModified(sent).body(response);
+                    });
+                })
+                .switchIfEmpty(Mono.defer(() -> body.apply(null).map(ResponseEntity::ok)));
+    }
+
+    /**
+     * Maps a conflict (stale version, idempotency key in use) to 409 so clients can retry.
+     */
+    static Mono<ResponseEntity<ResponseModel>> withConflictStatus(Mono<ResponseModel> update) {
+        return update.map(response -> ResponseModel.CONFLICT_STATUS.equals(response.getStatus())
+                ? ResponseEntity.status(HttpStatus.CONFLICT).body(response)
+                : ResponseEntity.ok(response));
+    }
+
+    static String etag(Instant updatedAt) {
+        long micros = ChronoUnit.MICROS.between(Instant.EPOCH, updatedAt);
+        return "\"" + Long.toHexString(micros) + "\"";
+    }
+}
@@ -0,0 +1,196 @@
+package org.dmdev.bookstore.controller;
+
+import org.dmdev.bookstore.model.BookFileDownload;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.codec.ResourceRegionEncoder;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.support.ResourceRegion;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ZeroCopyHttpOutputMessage;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes stored files with conditional GET and byte-range support. Whole files and single ranges
+ * go out with zero-copy where the server supports it; multiple ranges are sent as
+ * {@code multipart/byteranges}, each part read from its file position. A precompressed variant is
+ * sent as is with its Content-Encoding, and ranges then refer to the encoded bytes.
+ */
+public final class FileResponses {
+
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+    private static final ResourceRegionEncoder REGION_ENCODER = new ResourceRegionEncoder(READ_BUFFER_SIZE);
+
+    private FileResponses() {
+    }
+
+    public static Mono<Void> send(ServerWebExchange exchange, BookFileDownload download) {
+        return send(exchange, download, () -> {
+        });
+    }
+
+    /**
+     * As {@link #send(ServerWebExchange, BookFileDownload)}, running {@code onFullBody} once the
+     * whole file has been written in a 200 response to a GET.
+     */
+    public static Mono<Void> send(ServerWebExchange exchange, BookFileDownload download, Runnable onFullBody) {
+        ServerHttpResponse response = exchange.getResponse();
+        HttpHeaders headers = response.getHeaders();
+        headers.setETag(download.etag());
+        headers.setLastModified(download.lastModified());
+        headers.set(HttpHeaders.ACCEPT_RANGES, "bytes");
+        // Whether a precompressed variant was chosen depends on the request's Accept-Encoding
+        headers.add(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (download.contentEncoding() != null) {
+            headers.set(HttpHeaders.CONTENT_ENCODING, download.contentEncoding());
+        }
+        headers.setContentDisposition(ContentDisposition.attachment()
+                .filename(download.fileName(), StandardCharsets.UTF_8)
+                .build());
+        if (exchange.checkNotModified(download.etag(), download.lastModified())) {
+            return response.setComplete();
+        }
+
+        List<HttpRange> ranges = requestedRanges(exchange, download);
+        FileSystemResource resource = new FileSystemResource(download.path());
+        if (ranges.isEmpty()) {
+            response.setStatusCode(HttpStatus.OK);
+            headers.setContentType(download.mediaType());
+            headers.setContentLength(download.size());
+            boolean get = HttpMethod.GET.equals(exchange.getRequest().getMethod());
+            return writeRegion(response, resource, 0, download.size())
+                    .doOnSuccess(done -> {
+                        if (get) {
+                            onFullBody.run();
+                        }
+                    });
+        }
+
+        List<ResourceRegion> regions;
+        try {
+            regions = HttpRange.toResourceRegions(ranges, resource);
+        } catch (IllegalArgumentException e) {
+            response.setStatusCode(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE);
+            headers.set(HttpHeaders.CONTENT_RANGE, "bytes */" + download.size());
+            return response.setComplete();
+        }
+        response.setStatusCode(HttpStatus.PARTIAL_CONTENT);
+        if (regions.size() == 1) {
+            ResourceRegion region = regions.get(0);
+            headers.setContentType(download.mediaType());
+            headers.setContentLength(region.getCount());
+            headers.set(HttpHeaders.CONTENT_RANGE, contentRange(region, download.size()));
+            return writeRegion(response, resource, region.getPosition(), region.getCount());
+        }
+        String boundary = MimeTypeUtils.generateMultipartBoundaryString();
+        headers.setContentType(MediaType.parseMediaType("multipart/byteranges; boundary=" + boundary));
+        return response.writeWith(REGION_ENCODER.encode(Flux.fromIterable(regions), response.bufferFactory(),
+                ResolvableType.forClass(ResourceRegion.class), download.mediaType(),
+                Map.of(ResourceRegionEncoder.BOUNDARY_STRING_HINT, boundary)));
+    }
+
+    /**
+     * Whether the request's Accept-Encoding allows gzip: listed with a non-zero quality, or
+     * covered by a non-zero {@code *} without being refused by name.
+     */
+    public static boolean acceptsGzip(ServerHttpRequest request) {
+        Double gzip = null;
+        Double any = null;
+        for (String value : request.getHeaders().getOrEmpty(HttpHeaders.ACCEPT_ENCODING)) {
+            for (String coding : value.split(",")) {
+                String[] parts = coding.split(";");
+                String name = parts[0].trim().toLowerCase();
+                double quality = quality(parts);
+                if (name.equals("gzip") || name.equals("x-gzip")) {
+                    gzip = quality;
+                } else if (name.equals("*")) {
+                    any = quality;
+                }
+            }
+        }
+        if (gzip != null) {
+            return gzip > 0;
+        }
+        return any != null && any > 0;
+    }
+
+    private static double quality(String[] parameters) {
+        for (int i = 1; i < parameters.length; i++) {
+            String parameter = parameters[i].trim();
+            if (parameter.startsWith("q=")) {
+                try {
+                    return Double.parseDouble(parameter.substring(2));
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 1;
+    }
+
+    /**
+     * The ranges to serve: none if there is no Range header, it is malformed (which RFC 9110 says
+     * to ignore), or If-Range names a different representation.
+     */
+    private static List<HttpRange> requestedRanges(ServerWebExchange exchange, BookFileDownload download) {
+        HttpHeaders requestHeaders = exchange.getRequest().getHeaders();
+        String ifRange = requestHeaders.getFirst(HttpHeaders.IF_RANGE);
+        if (ifRange != null && !matchesIfRange(ifRange.trim(), download)) {
+            return List.of();
+        }
+        try {
+            return requestHeaders.getRange();
+        } catch (IllegalArgumentException e) {
+            return List.of();
+        }
+    }
+
+    private static boolean matchesIfRange(String ifRange, BookFileDownload download) {
+        if (ifRange.startsWith("\"")) {
+            // Strong comparison; weak tags never match
+            return ifRange.equals(download.etag());
+        }
+        if (ifRange.startsWith("W/")) {
+            return false;
+        }
+        try {
+            Instant date = ZonedDateTime.parse(ifRange, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant();
+            return date.equals(download.lastModified().truncatedTo(ChronoUnit.SECONDS));
+        } catch (DateTimeParseException e) {
+            return false;
+        }
+    }
+
+    private static Mono<Void> writeRegion(ServerHttpResponse response, FileSystemResource resource, long position, long count) {
+        if (response instanceof ZeroCopyHttpOutputMessage zeroCopy) {
+            return zeroCopy.writeWith(resource.getFile().toPath(), position, count);
+        }
+        // HEAD responses and servers without sendfile support
+        return response.writeWith(DataBufferUtils.takeUntilByteCount(
+                DataBufferUtils.read(resource, position, response.bufferFactory(), READ_BUFFER_SIZE), count));
+    }
+
+    private static String contentRange(ResourceRegion region, long size) {
+        long start = region.getPosition();
+        return "bytes " + start + "-" + (start + region.getCount() - 1) + "/" + size;
+    }
+}
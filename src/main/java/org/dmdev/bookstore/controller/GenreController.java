@@ -1,10 +1,11 @@
 package org.dmdev.bookstore.controller;
 
 import lombok.RequiredArgsConstructor;
-import org.dmdev.bookstore.domain.Genre;
 import org.dmdev.bookstore.dto.GenreDTO;
 import org.dmdev.bookstore.model.ResponseModel;
 import org.dmdev.bookstore.service.GenreService;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import reactor.core.publisher.Mono;
 
@@ -17,9 +18,18 @@ public class GenreController {
 
     private final GenreService genreService;
 
+    // The framework answers 304 on a matching If-None-Match when the entity carries an ETag
     @GetMapping
-    Mono<ResponseModel> findAll(){
-        return genreService.findAllGenres();
+    Mono<ResponseEntity<byte[]>> findAll(){
+        return genreService.findAllGenresSnapshot()
+                .map(snapshot -> {
+                    ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                            .contentType(MediaType.APPLICATION_JSON);
+                    if (snapshot.etag() != null) {
+                        response.eTag(snapshot.etag());
+                    }
+                    return response.body(snapshot.body());
+                });
     }
 
     @PostMapping
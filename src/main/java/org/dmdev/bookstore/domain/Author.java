@@ -6,6 +6,7 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
 import org.springframework.data.annotation.Transient;
+import org.springframework.data.annotation.Version;
 import org.springframework.data.relational.core.mapping.Column;
 import org.springframework.data.relational.core.mapping.Table;
 
@@ -29,6 +30,8 @@ public class Author {
     private LocalDate birthdate;
     @Column("death_date ")
     private LocalDate dateOfDeath;
+    @Version
+    private Long version;
     @Transient
     private List<Book> books;
 }
@@ -0,0 +1,33 @@
+package org.dmdev.bookstore.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Column;
+import org.springframework.data.relational.core.mapping.Table;
+
+import java.time.Instant;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Table(name = "blobs")
+public class Blob {
+    @Id
+    private String sha256;
+    @Column("size_bytes")
+    private Long size;
+    @Column("ref_count")
+    private Integer refCount;
+    @Column("created_at")
+    private Instant createdAt;
+    @Column("unreferenced_at")
+    private Instant unreferencedAt;
+    @Column("gzip_size_bytes")
+    private Long gzipSize;
+    @Column("compressed_at")
+    private Instant compressedAt;
+}
@@ -5,10 +5,13 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.ReadOnlyProperty;
 import org.springframework.data.annotation.Transient;
+import org.springframework.data.annotation.Version;
 import org.springframework.data.relational.core.mapping.Column;
 import org.springframework.data.relational.core.mapping.Table;
 
+import java.time.Instant;
 import java.time.LocalDate;
 import java.util.List;
 import java.util.UUID;
@@ -31,6 +34,12 @@ public class Book {
     private LocalDate publicationDate;
     @Column("author_id")
     private UUID authorId;
+    @Version
+    private Long version;
+    // Maintained by triggers, see V11
+    @ReadOnlyProperty
+    @Column("updated_at")
+    private Instant updatedAt;
     @Transient
     private List<Genre> genres;
     @Transient
@@ -25,4 +25,9 @@ public class BookFile {
     private String format;
     @Column("file_path")
     private String filePath;
+    private String sha256;
+    @Column("size_bytes")
+    private Long size;
+    @Column("file_name")
+    private String fileName;
 }
@@ -0,0 +1,27 @@
+package org.dmdev.bookstore.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Column;
+import org.springframework.data.relational.core.mapping.Table;
+
+import java.time.Instant;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Table(name = "idempotency_keys")
+public class IdempotencyKey {
+    @Id
+    private String id;
+    @Column("request_hash")
+    private String requestHash;
+    @Column("response")
+    private String response;
+    @Column("created_at")
+    private Instant createdAt;
+}
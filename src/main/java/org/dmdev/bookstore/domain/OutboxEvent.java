@@ -0,0 +1,34 @@
+package org.dmdev.bookstore.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Column;
+import org.springframework.data.relational.core.mapping.Table;
+
+import java.time.Instant;
+import java.util.UUID;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Table(name = "outbox_events")
+public class OutboxEvent {
+    @Id
+    private Long id;
+    @Column("aggregate_type")
+    private String aggregateType;
+    @Column("aggregate_id")
+    private UUID aggregateId;
+    @Column("event_type")
+    private String eventType;
+    @Column("payload")
+    private String payload;
+    @Column("created_at")
+    private Instant createdAt;
+    @Column("position")
+    private Long position;
+}
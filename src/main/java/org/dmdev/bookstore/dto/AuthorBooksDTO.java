@@ -0,0 +1,13 @@
+package org.dmdev.bookstore.dto;
+
+import lombok.Builder;
+
+import java.util.List;
+
+@Builder
+public record AuthorBooksDTO(
+        AuthorDTO author,
+        List<BookDTO> books,
+        long totalBooks
+) {
+}
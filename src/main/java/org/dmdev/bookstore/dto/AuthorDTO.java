@@ -12,5 +12,6 @@ public record AuthorDTO(UUID id,
                         String firstName,
                         String lastName,
                         LocalDate birthDate,
-                        LocalDate deathDate) {
+                        LocalDate deathDate,
+                        Long version) {
 }
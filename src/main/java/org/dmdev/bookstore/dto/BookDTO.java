@@ -3,6 +3,7 @@ package org.dmdev.bookstore.dto;
 import lombok.Builder;
 import org.dmdev.bookstore.domain.Author;
 
+import java.time.Instant;
 import java.time.LocalDate;
 import java.util.List;
 import java.util.UUID;
@@ -15,5 +16,7 @@ public record BookDTO(UUID id,
                       int pages,
                       UUID authorId,
                       List<GenreDTO> genres,
-                      List<BookFileDTO> bookFiles) {
+                      List<BookFileDTO> bookFiles,
+                      Long version,
+                      Instant updatedAt) {
 }
@@ -1,6 +1,6 @@
 package org.dmdev.bookstore.dto;
-import org.springframework.core.io.Resource;
 
+import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.Builder;
 
 import java.util.UUID;
@@ -10,6 +10,9 @@ public record BookFileDTO(
         UUID id,
         UUID bookId,
         String format,
-        String filepath
+        @JsonProperty(access = JsonProperty.Access.READ_ONLY) String filepath,
+        String sha256,
+        Long size,
+        String fileName
 ) {
 }
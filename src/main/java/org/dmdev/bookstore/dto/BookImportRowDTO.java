@@ -0,0 +1,30 @@
+package org.dmdev.bookstore.dto;
+
+import lombok.Builder;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * One title of a publisher feed. Genres are referenced by name; the author must already exist.
+ */
+@Builder
+public record BookImportRowDTO(
+        String isbn,
+        String title,
+        int pages,
+        LocalDate publishedDate,
+        UUID authorId,
+        List<String> genres,
+        List<File> files
+) {
+
+    /**
+     * A file already on the server, given as a path. Only imports may point a book at a path;
+     * the public book API takes files through uploads.
+     */
+    @Builder
+    public record File(String format, String filepath) {
+    }
+}
@@ -0,0 +1,12 @@
+package org.dmdev.bookstore.dto;
+
+import lombok.Builder;
+
+import java.util.List;
+
+@Builder
+public record BookPageDTO(
+        List<BookDTO> books,
+        String next
+) {
+}
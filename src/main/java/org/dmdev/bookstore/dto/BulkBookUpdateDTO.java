@@ -0,0 +1,19 @@
+package org.dmdev.bookstore.dto;
+
+import lombok.Builder;
+import org.dmdev.bookstore.model.BookFilter;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Changes applied to every book matching {@code filter}; null or empty fields are left alone.
+ */
+@Builder
+public record BulkBookUpdateDTO(
+        BookFilter filter,
+        UUID authorId,
+        List<UUID> addGenreIds,
+        List<UUID> removeGenreIds
+) {
+}
@@ -0,0 +1,14 @@
+package org.dmdev.bookstore.dto;
+
+import lombok.Builder;
+
+@Builder
+public record BulkResultDTO(
+        long matched,
+        long booksAffected,
+        long genreLinksAdded,
+        long genreLinksRemoved,
+        long filesDeleted,
+        int transactions
+) {
+}
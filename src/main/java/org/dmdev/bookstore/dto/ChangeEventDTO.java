@@ -0,0 +1,18 @@
+package org.dmdev.bookstore.dto;
+
+import com.fasterxml.jackson.annotation.JsonRawValue;
+import lombok.Builder;
+
+import java.time.Instant;
+import java.util.UUID;
+
+@Builder
+public record ChangeEventDTO(
+        long position,
+        String aggregateType,
+        UUID aggregateId,
+        String eventType,
+        @JsonRawValue String payload,
+        Instant occurredAt
+) {
+}
@@ -0,0 +1,17 @@
+package org.dmdev.bookstore.dto;
+
+import lombok.Builder;
+
+import java.time.Instant;
+
+@Builder
+public record ExportJobDTO(
+        String fileName,
+        String status,
+        long rows,
+        long bytes,
+        Instant startedAt,
+        Instant finishedAt,
+        String error
+) {
+}
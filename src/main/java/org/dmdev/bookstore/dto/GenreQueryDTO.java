@@ -0,0 +1,15 @@
+package org.dmdev.bookstore.dto;
+
+import lombok.Builder;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+@Builder
+public record GenreQueryDTO(
+        long total,
+        List<BookDTO> books,
+        Map<UUID, Integer> facets
+) {
+}
@@ -0,0 +1,4 @@
+package org.dmdev.bookstore.dto;
+
+public record ImportErrorDTO(long line, String message) {
+}
@@ -0,0 +1,20 @@
+package org.dmdev.bookstore.dto;
+
+import lombok.Builder;
+
+import java.util.List;
+
+/**
+ * Emitted after every chunk of an import. Counters are cumulative; {@code errors} only
+ * lists the rows rejected in the latest chunk.
+ */
+@Builder
+public record ImportProgressDTO(
+        long processed,
+        long imported,
+        long failed,
+        double rowsPerSecond,
+        List<ImportErrorDTO> errors,
+        boolean done
+) {
+}
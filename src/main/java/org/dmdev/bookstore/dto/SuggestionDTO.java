@@ -0,0 +1,16 @@
+package org.dmdev.bookstore.dto;
+
+import lombok.Builder;
+
+import java.util.UUID;
+
+@Builder
+public record SuggestionDTO(
+        UUID id,
+        Type type,
+        String text
+) {
+    public enum Type {
+        BOOK, AUTHOR
+    }
+}
@@ -0,0 +1,218 @@
+package org.dmdev.bookstore.index;
+
+import org.dmdev.bookstore.domain.BookGenre;
+import org.roaringbitmap.FastAggregation;
+import org.roaringbitmap.PeekableIntIterator;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory genre index. Books get dense int ordinals and every genre keeps a compressed bitmap of them,
+ * so AND / OR / NOT expressions and facet counts are bitmap operations instead of a GROUP BY over book_genres.
+ * Ordinals of deleted books are not reused until the index is rebuilt on the next startup.
+ * <p>
+ * The startup load runs while writes are already served, so books and genres changed before the index is
+ * ready are remembered and their rows from the load are skipped; the write has already applied the newer state.
+ */
+@Component
+public class GenreIndex {
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<UUID, Integer> ordinals = new HashMap<>();
+    private final List<UUID> bookIds = new ArrayList<>();
+    private final Map<UUID, RoaringBitmap> bitmaps = new HashMap<>();
+    private final Set<UUID> booksChangedDuringLoad = new HashSet<>();
+    private final Set<UUID> genresRemovedDuringLoad = new HashSet<>();
+    private volatile boolean ready;
+
+    /**
+     * Adds links read by the startup load, except those of books or genres written to meanwhile.
+     */
+    public void load(Collection<BookGenre> bookGenres) {
+        lock.writeLock().lock();
+        try {
+            bookGenres.stream()
+                    .filter(link -> !booksChangedDuringLoad.contains(link.getBookId())
+                            && !genresRemovedDuringLoad.contains(link.getGenreId()))
+                    .forEach(link -> bitmaps.computeIfAbsent(link.getGenreId(), id -> new RoaringBitmap())
+                            .add(ordinalOf(link.getBookId())));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void addBookGenres(UUID bookId, Collection<UUID> genreIds) {
+        lock.writeLock().lock();
+        try {
+            markChanged(bookId);
+            int ordinal = ordinalOf(bookId);
+            genreIds.forEach(genreId -> bitmaps.computeIfAbsent(genreId, id -> new RoaringBitmap()).add(ordinal));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void addAll(Collection<BookGenre> bookGenres) {
+        lock.writeLock().lock();
+        try {
+            bookGenres.forEach(link -> {
+                markChanged(link.getBookId());
+                bitmaps.computeIfAbsent(link.getGenreId(), id -> new RoaringBitmap()).add(ordinalOf(link.getBookId()));
+            });
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void removeBookGenres(UUID bookId, Collection<UUID> genreIds) {
+        lock.writeLock().lock();
+        try {
+            markChanged(bookId);
+            Integer ordinal = ordinals.get(bookId);
+            if (ordinal != null) {
+                genreIds.stream()
+                        .map(bitmaps::get)
+                        .filter(Objects::nonNull)
+                        .forEach(bitmap -> bitmap.remove(ordinal));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void replaceBookGenres(UUID bookId, Collection<UUID> genreIds) {
+        lock.writeLock().lock();
+        try {
+            markChanged(bookId);
+            int ordinal = ordinalOf(bookId);
+            bitmaps.values().forEach(bitmap -> bitmap.remove(ordinal));
+            genreIds.forEach(genreId -> bitmaps.computeIfAbsent(genreId, id -> new RoaringBitmap()).add(ordinal));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void removeBook(UUID bookId) {
+        lock.writeLock().lock();
+        try {
+            markChanged(bookId);
+            Integer ordinal = ordinals.remove(bookId);
+            if (ordinal != null) {
+                bookIds.set(ordinal, null);
+                bitmaps.values().forEach(bitmap -> bitmap.remove(ordinal));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void removeGenre(UUID genreId) {
+        lock.writeLock().lock();
+        try {
+            if (!ready) {
+                genresRemovedDuringLoad.add(genreId);
+            }
+            bitmaps.remove(genreId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Books having every genre of {@code all}, at least one of {@code any} and none of {@code none}.
+     * At least one of {@code all} and {@code any} must be non-empty.
+     */
+    public Result query(Collection<UUID> all, Collection<UUID> any, Collection<UUID> none, int offset, int limit) {
+        if (all.isEmpty() && any.isEmpty()) {
+            throw new IllegalArgumentException("At least one 'all' or 'any' genre is required");
+        }
+        lock.readLock().lock();
+        try {
+            RoaringBitmap matched = null;
+            if (!all.isEmpty()) {
+                matched = FastAggregation.and(all.stream().map(this::bitmapOf).iterator());
+            }
+            if (!any.isEmpty()) {
+                RoaringBitmap union = FastAggregation.or(any.stream().map(this::bitmapOf).iterator());
+                matched = matched == null ? union : RoaringBitmap.and(matched, union);
+            }
+            if (!none.isEmpty()) {
+                matched = RoaringBitmap.andNot(matched, FastAggregation.or(none.stream().map(this::bitmapOf).iterator()));
+            }
+
+            Map<UUID, Integer> facets = new LinkedHashMap<>();
+            for (Map.Entry<UUID, RoaringBitmap> genre : bitmaps.entrySet()) {
+                int count = RoaringBitmap.andCardinality(matched, genre.getValue());
+                if (count > 0) {
+                    facets.put(genre.getKey(), count);
+                }
+            }
+            return new Result(matched.getLongCardinality(), page(matched, offset, limit), facets);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public void markReady() {
+        lock.writeLock().lock();
+        try {
+            ready = true;
+            booksChangedDuringLoad.clear();
+            genresRemovedDuringLoad.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void markChanged(UUID bookId) {
+        if (!ready) {
+            booksChangedDuringLoad.add(bookId);
+        }
+    }
+
+    private List<UUID> page(RoaringBitmap matched, int offset, int limit) {
+        List<UUID> page = new ArrayList<>();
+        if (offset >= matched.getCardinality()) {
+            return page;
+        }
+        PeekableIntIterator iterator = matched.getIntIterator();
+        if (offset > 0) {
+            iterator.advanceIfNeeded(matched.select(offset));
+        }
+        while (iterator.hasNext() && page.size() < limit) {
+            page.add(bookIds.get(iterator.next()));
+        }
+        return page;
+    }
+
+    private RoaringBitmap bitmapOf(UUID genreId) {
+        return bitmaps.getOrDefault(genreId, new RoaringBitmap());
+    }
+
+    private int ordinalOf(UUID bookId) {
+        return ordinals.computeIfAbsent(bookId, id -> {
+            bookIds.add(id);
+            return bookIds.size() - 1;
+        });
+    }
+
+    public record Result(long total, List<UUID> bookIds, Map<UUID, Integer> facets) {
+    }
+}
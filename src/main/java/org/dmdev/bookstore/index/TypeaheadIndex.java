@@ -0,0 +1,186 @@
+package org.dmdev.bookstore.index;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.BaseUnits;
+import org.dmdev.bookstore.domain.Author;
+import org.dmdev.bookstore.domain.Book;
+import org.dmdev.bookstore.dto.SuggestionDTO;
+import org.springframework.stereotype.Component;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * In-process prefix index over book titles and author names.
+ * <p>
+ * Every normalized text is stored under its word-boundary suffixes ("war and peace", "and peace", "peace")
+ * in a sorted map, so a prefix lookup is a range scan that also matches words in the middle of a title.
+ * <p>
+ * The startup load runs while writes are already served; ids written to before {@link #finishLoad()} are
+ * remembered and their rows from the load are skipped, so a stale row cannot undo a delete or rename.
+ */
+@Component
+public class TypeaheadIndex {
+
+    private static final char KEY_SEPARATOR = '\u0000';
+    private static final int MAX_SUFFIXES = 6;
+    // Rough per-entry cost of a skip list node, a String header and its backing array header
+    private static final long ENTRY_OVERHEAD_BYTES = 112;
+    // Per id: a hash map node, the UUID and an ArrayList with its array header; plus one reference per key
+    private static final long ID_OVERHEAD_BYTES = 136;
+    private static final long REFERENCE_BYTES = 8;
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+    private static final Pattern NON_ALPHANUMERIC = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private final ConcurrentSkipListMap<String, SuggestionDTO> entries = new ConcurrentSkipListMap<>();
+    private final Map<UUID, List<String>> keysById = new ConcurrentHashMap<>();
+    private final AtomicLong keyChars = new AtomicLong();
+    private final Set<UUID> changedDuringLoad = ConcurrentHashMap.newKeySet();
+    private volatile boolean loading = true;
+
+    public TypeaheadIndex(MeterRegistry meterRegistry) {
+        Gauge.builder("bookstore.typeahead.memory", this, TypeaheadIndex::estimatedMemoryBytes)
+                .description("Estimated heap used by the typeahead index")
+                .baseUnit(BaseUnits.BYTES)
+                .register(meterRegistry);
+        Gauge.builder("bookstore.typeahead.entries", entries, Map::size)
+                .description("Number of keys in the typeahead index")
+                .register(meterRegistry);
+    }
+
+    public void putBook(Book book) {
+        markChanged(book.getId());
+        put(book.getId(), SuggestionDTO.Type.BOOK, book.getTitle(), false);
+    }
+
+    public void putAuthor(Author author) {
+        markChanged(author.getId());
+        put(author.getId(), SuggestionDTO.Type.AUTHOR, authorName(author), false);
+    }
+
+    /**
+     * Adds a book read by the startup load unless it has been written to meanwhile.
+     */
+    public void loadBook(Book book) {
+        put(book.getId(), SuggestionDTO.Type.BOOK, book.getTitle(), true);
+    }
+
+    /**
+     * Adds an author read by the startup load unless it has been written to meanwhile.
+     */
+    public void loadAuthor(Author author) {
+        put(author.getId(), SuggestionDTO.Type.AUTHOR, authorName(author), true);
+    }
+
+    public void finishLoad() {
+        loading = false;
+        changedDuringLoad.clear();
+    }
+
+    public void remove(UUID id) {
+        markChanged(id);
+        keysById.computeIfPresent(id, (key, keys) -> {
+            keys.forEach(this::removeKey);
+            return null;
+        });
+    }
+
+    public List<SuggestionDTO> suggest(String prefix, int limit) {
+        String normalized = normalize(prefix);
+        if (normalized.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+        Map<UUID, SuggestionDTO> found = new LinkedHashMap<>();
+        for (SuggestionDTO suggestion : entries.subMap(normalized, normalized + Character.MAX_VALUE).values()) {
+            found.putIfAbsent(suggestion.id(), suggestion);
+            if (found.size() == limit) {
+                break;
+            }
+        }
+        return List.copyOf(found.values());
+    }
+
+    public long estimatedMemoryBytes() {
+        return keyChars.get() * Character.BYTES
+                + entries.size() * (ENTRY_OVERHEAD_BYTES + REFERENCE_BYTES)
+                + keysById.size() * ID_OVERHEAD_BYTES;
+    }
+
+    public int size() {
+        return keysById.size();
+    }
+
+    private void markChanged(UUID id) {
+        if (loading && id != null) {
+            changedDuringLoad.add(id);
+        }
+    }
+
+    private static String authorName(Author author) {
+        return author.getFirstname() + " " + author.getLastname();
+    }
+
+    private void put(UUID id, SuggestionDTO.Type type, String text, boolean fromLoad) {
+        if (id == null || text == null) {
+            return;
+        }
+        SuggestionDTO suggestion = new SuggestionDTO(id, type, text);
+        keysById.compute(id, (key, previous) -> {
+            // Marked before the write's own compute, so a load row seen after it is always stale
+            if (fromLoad && changedDuringLoad.contains(id)) {
+                return previous;
+            }
+            if (previous != null) {
+                previous.forEach(this::removeKey);
+            }
+            List<String> keys = new ArrayList<>();
+            for (String suffix : suffixes(normalize(text))) {
+                String entryKey = suffix + KEY_SEPARATOR + id;
+                entries.put(entryKey, suggestion);
+                keyChars.addAndGet(entryKey.length());
+                keys.add(entryKey);
+            }
+            return keys.isEmpty() ? null : keys;
+        });
+    }
+
+    private void removeKey(String key) {
+        if (entries.remove(key) != null) {
+            keyChars.addAndGet(-key.length());
+        }
+    }
+
+    private static List<String> suffixes(String normalized) {
+        List<String> suffixes = new ArrayList<>();
+        int start = 0;
+        while (start < normalized.length() && suffixes.size() < MAX_SUFFIXES) {
+            suffixes.add(normalized.substring(start));
+            int space = normalized.indexOf(' ', start);
+            if (space < 0) {
+                break;
+            }
+            start = space + 1;
+        }
+        return suffixes;
+    }
+
+    static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+        String plain = DIACRITICS.matcher(decomposed).replaceAll("");
+        return NON_ALPHANUMERIC.matcher(plain.toLowerCase(Locale.ROOT)).replaceAll(" ").trim();
+    }
+}
@@ -18,6 +18,7 @@ public class AuthorMapper {
                 .lastname(dto.lastName())
                 .birthdate(dto.birthDate())
                 .dateOfDeath(dto.deathDate())
+                .version(dto.version())
                 .build();
     }
 
@@ -28,6 +29,7 @@ public class AuthorMapper {
                 .lastName(author.getLastname())
                 .birthDate(author.getBirthdate())
                 .deathDate(author.getDateOfDeath())
+                .version(author.getVersion())
                 .build();
     }
 }
@@ -8,12 +8,14 @@ import org.springframework.stereotype.Component;
 @Component
 public class BookFileMapper {
 
+    /**
+     * Paths are never taken from a client; they are set by uploads and imports only.
+     */
     public BookFile toBookFile(BookFileDTO dto) {
         return BookFile.builder()
                 .id(dto.id())
                 .bookId(dto.bookId())
                 .format(dto.format())
-                .filePath(dto.filepath())
                 .build();
     }
 
@@ -23,6 +25,9 @@ public class BookFileMapper {
                 .bookId(file.getBookId())
                 .format(file.getFormat())
                 .filepath(file.getFilePath())
+                .sha256(file.getSha256())
+                .size(file.getSize())
+                .fileName(file.getFileName())
                 .build();
     }
 }
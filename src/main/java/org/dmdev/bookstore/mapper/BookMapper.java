@@ -24,6 +24,7 @@ public class BookMapper {
                 .pages(dto.pages())
                 .publicationDate(dto.publishedDate())
                 .authorId(dto.authorId())
+                .version(dto.version())
                 .build();
     }
 
@@ -35,6 +36,8 @@ public class BookMapper {
                 .publishedDate(book.getPublicationDate())
                 .pages(book.getPages())
                 .authorId(book.getAuthorId())
+                .version(book.getVersion())
+                .updatedAt(book.getUpdatedAt())
                 .build();
     }
 
@@ -46,6 +49,8 @@ public class BookMapper {
                 .publishedDate(book.getPublicationDate())
                 .pages(book.getPages())
                 .authorId(book.getAuthorId())
+                .version(book.getVersion())
+                .updatedAt(book.getUpdatedAt())
                 .genres(genres.stream()
                         .map(genreMapper::genreToDto)
                         .toList())
@@ -0,0 +1,9 @@
+package org.dmdev.bookstore.model;
+
+import org.dmdev.bookstore.domain.Author;
+
+/**
+ * An author whose {@code books} hold one page of their catalog, plus the size of the whole catalog.
+ */
+public record AuthorBooksPage(Author author, long totalBooks) {
+}
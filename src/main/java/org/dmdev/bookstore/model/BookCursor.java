@@ -0,0 +1,48 @@
+package org.dmdev.bookstore.model;
+
+import org.dmdev.bookstore.domain.Book;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * Opaque position in the catalog ordered by (publication_date, id).
+ * Books without a publication date are ordered last, so their cursor carries no date.
+ */
+public record BookCursor(LocalDate publicationDate, UUID id) {
+
+    private static final String SEPARATOR = "|";
+
+    public static BookCursor of(Book book) {
+        return new BookCursor(book.getPublicationDate(), book.getId());
+    }
+
+    public String encode() {
+        String raw = (publicationDate == null ? "" : publicationDate.toString()) + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static BookCursor decode(String cursor) {
+        String raw;
+        try {
+            raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Malformed cursor: " + cursor, e);
+        }
+        int separator = raw.indexOf(SEPARATOR);
+        if (separator < 0) {
+            throw new IllegalArgumentException("Malformed cursor: " + cursor);
+        }
+        try {
+            String date = raw.substring(0, separator);
+            return new BookCursor(
+                    date.isEmpty() ? null : LocalDate.parse(date),
+                    UUID.fromString(raw.substring(separator + 1)));
+        } catch (DateTimeParseException | IllegalArgumentException e) {
+            throw new IllegalArgumentException("Malformed cursor: " + cursor, e);
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package org.dmdev.bookstore.model;
+
+import org.springframework.http.MediaType;
+
+import java.nio.file.Path;
+import java.time.Instant;
+
+/**
+ * A stored book file ready to be sent: where it is and the headers that describe it.
+ * {@code originalSize} is the size without content coding, equal to {@code size} for the original.
+ */
+public record BookFileDownload(Path path, String fileName, MediaType mediaType, long size, Instant lastModified,
+                               String sha256, String contentEncoding, long originalSize, String format) {
+
+    /**
+     * Bytes a full transfer of this representation saves over sending the original.
+     */
+    public long savedBytes() {
+        return originalSize - size;
+    }
+
+    /**
+     * Strong validator: the content checksum where known, otherwise size and modification time,
+     * which a rewritten file changes. Each content coding is a representation of its own.
+     */
+    public String etag() {
+        String tag = sha256 != null
+                ? sha256
+                : Long.toHexString(size) + "-" + Long.toHexString(lastModified.toEpochMilli());
+        return "\"" + tag + (contentEncoding != null ? "-" + contentEncoding : "") + "\"";
+    }
+}
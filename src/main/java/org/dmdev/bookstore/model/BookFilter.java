@@ -0,0 +1,23 @@
+package org.dmdev.bookstore.model;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Selects books for bulk operations. Criteria are combined with AND; at least one is required.
+ */
+public record BookFilter(List<UUID> ids,
+                         UUID authorId,
+                         UUID genreId,
+                         LocalDate publishedFrom,
+                         LocalDate publishedTo) {
+
+    public boolean isEmpty() {
+        return (ids == null || ids.isEmpty())
+                && authorId == null
+                && genreId == null
+                && publishedFrom == null
+                && publishedTo == null;
+    }
+}
@@ -0,0 +1,61 @@
+package org.dmdev.bookstore.model;
+
+import org.springframework.http.MediaType;
+import org.springframework.util.unit.DataSize;
+
+import java.util.Arrays;
+import java.util.Optional;
+
+/**
+ * Known values of {@code book_files.format}, how they are served, how large an upload may be and
+ * whether a gzip variant is worth keeping. EPUB is already a zip, PDF, MOBI and DjVu compress
+ * their own streams; only the plain-text formats are stored precompressed.
+ */
+public enum BookFormat {
+    PDF("application/pdf", DataSize.ofGigabytes(1), false),
+    EPUB("application/epub+zip", DataSize.ofMegabytes(200), false),
+    FB2("application/x-fictionbook+xml", DataSize.ofMegabytes(100), true),
+    MOBI("application/x-mobipocket-ebook", DataSize.ofMegabytes(200), false),
+    DJVU("image/vnd.djvu", DataSize.ofGigabytes(2), false),
+    TXT("text/plain;charset=UTF-8", DataSize.ofMegabytes(50), true);
+
+    private final MediaType mediaType;
+    private final DataSize maxSize;
+    private final boolean compressible;
+
+    BookFormat(String mediaType, DataSize maxSize, boolean compressible) {
+        this.mediaType = MediaType.parseMediaType(mediaType);
+        this.maxSize = maxSize;
+        this.compressible = compressible;
+    }
+
+    public MediaType mediaType() {
+        return mediaType;
+    }
+
+    public DataSize maxSize() {
+        return maxSize;
+    }
+
+    public boolean compressible() {
+        return compressible;
+    }
+
+    /**
+     * The format for a stored or requested format name, case-insensitively.
+     */
+    public static Optional<BookFormat> of(String format) {
+        return Arrays.stream(values())
+                .filter(value -> value.name().equalsIgnoreCase(format))
+                .findFirst();
+    }
+
+    /**
+     * Media type for a stored format name; octet-stream for unknown formats.
+     */
+    public static MediaType mediaTypeOf(String format) {
+        return of(format)
+                .map(BookFormat::mediaType)
+                .orElse(MediaType.APPLICATION_OCTET_STREAM);
+    }
+}
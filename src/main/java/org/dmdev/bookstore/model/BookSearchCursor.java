@@ -0,0 +1,42 @@
+package org.dmdev.bookstore.model;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * Opaque position in search results ordered by (rank DESC, id DESC).
+ */
+public record BookSearchCursor(float rank, UUID id) {
+
+    private static final String SEPARATOR = "|";
+
+    public static BookSearchCursor of(BookSearchHit hit) {
+        return new BookSearchCursor(hit.rank(), hit.book().getId());
+    }
+
+    public String encode() {
+        String raw = Float.toString(rank) + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static BookSearchCursor decode(String cursor) {
+        String raw;
+        try {
+            raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Malformed cursor: " + cursor, e);
+        }
+        int separator = raw.indexOf(SEPARATOR);
+        if (separator < 0) {
+            throw new IllegalArgumentException("Malformed cursor: " + cursor);
+        }
+        try {
+            return new BookSearchCursor(
+                    Float.parseFloat(raw.substring(0, separator)),
+                    UUID.fromString(raw.substring(separator + 1)));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Malformed cursor: " + cursor, e);
+        }
+    }
+}
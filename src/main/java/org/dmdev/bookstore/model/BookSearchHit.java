@@ -0,0 +1,6 @@
+package org.dmdev.bookstore.model;
+
+import org.dmdev.bookstore.domain.Book;
+
+public record BookSearchHit(Book book, float rank) {
+}
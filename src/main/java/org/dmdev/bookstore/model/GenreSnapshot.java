@@ -0,0 +1,29 @@
+package org.dmdev.bookstore.model;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * Pre-serialized genre list response. {@code etag} is a strong, quoted validator over the exact
+ * body bytes, or {@code null} for responses that must not be cached (errors).
+ */
+public record GenreSnapshot(long generation, byte[] body, String etag) {
+
+    public static GenreSnapshot of(long generation, byte[] body) {
+        return new GenreSnapshot(generation, body, strongEtag(body));
+    }
+
+    public static GenreSnapshot uncached(byte[] body) {
+        return new GenreSnapshot(-1, body, null);
+    }
+
+    private static String strongEtag(byte[] body) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(body);
+            return "\"" + HexFormat.of().formatHex(digest) + "\"";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -14,6 +14,7 @@ import lombok.NoArgsConstructor;
 public class ResponseModel {
     public static final String SUCCESS_STATUS = "success";
     public static final String FAIL_STATUS = "fail";
+    public static final String CONFLICT_STATUS = "conflict";
     private String status;
     private String message;
     private Object data;
@@ -1,9 +1,16 @@
 package org.dmdev.bookstore.repository;
 
 import org.dmdev.bookstore.domain.Author;
+import org.dmdev.bookstore.repository.custom.CustomAuthorRepository;
+import org.springframework.data.r2dbc.repository.Query;
 import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+import reactor.core.publisher.Mono;
 
+import java.time.Instant;
 import java.util.UUID;
 
-public interface AuthorRepository extends ReactiveCrudRepository<Author, UUID> {
+public interface AuthorRepository extends ReactiveCrudRepository<Author, UUID>, CustomAuthorRepository {
+
+    @Query("SELECT updated_at FROM authors WHERE id = :id")
+    Mono<Instant> findUpdatedAtById(UUID id);
 }
@@ -0,0 +1,68 @@
+package org.dmdev.bookstore.repository;
+
+import org.dmdev.bookstore.domain.Blob;
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+
+public interface BlobRepository extends ReactiveCrudRepository<Blob, String> {
+
+    /**
+     * Registers a blob about to be referenced, or restarts the grace period of an unreferenced
+     * one, so the sweep leaves it alone while the referencing row is written. Waits for a sweep
+     * that is deleting the same blob to commit, after which the blob is registered afresh.
+     */
+    @Modifying
+    @Query("""
+                INSERT INTO blobs (sha256, size_bytes)
+                VALUES (:sha256, :size)
+                ON CONFLICT (sha256) DO UPDATE
+                    SET unreferenced_at = now()
+                    WHERE blobs.ref_count = 0
+            """)
+    Mono<Integer> reserve(String sha256, long size);
+
+    @Query("""
+                SELECT sha256 FROM blobs
+                WHERE ref_count = 0 AND unreferenced_at < :unreferencedBefore
+                ORDER BY unreferenced_at
+                LIMIT :limit
+            """)
+    Flux<String> findCollectable(Instant unreferencedBefore, int limit);
+
+    /**
+     * Deletes the row if the blob is still collectable. The row lock is held until the caller's
+     * transaction ends, which is what keeps {@link #reserve} from racing the file deletion.
+     */
+    @Modifying
+    @Query("""
+                DELETE FROM blobs
+                WHERE sha256 = :sha256 AND ref_count = 0 AND unreferenced_at < :unreferencedBefore
+            """)
+    Mono<Integer> deleteCollectable(String sha256, Instant unreferencedBefore);
+
+    /**
+     * Referenced blobs not yet considered for a gzip variant that some book file in one of
+     * {@code formats} points at.
+     */
+    @Query("""
+                SELECT b.sha256 FROM blobs b
+                WHERE b.compressed_at IS NULL AND b.ref_count > 0
+                  AND EXISTS (SELECT 1 FROM book_files f
+                              WHERE f.sha256 = b.sha256 AND lower(f.format) = ANY (CAST(:formats AS varchar[])))
+                LIMIT :limit
+            """)
+    Flux<String> findUncompressed(String[] formats, int limit);
+
+    /**
+     * Records the outcome for a blob; {@code gzipSize} is null if no variant was kept. Returns 0
+     * if the blob has been collected meanwhile.
+     */
+    @Modifying
+    @Query("UPDATE blobs SET gzip_size_bytes = :gzipSize, compressed_at = now() WHERE sha256 = :sha256")
+    Mono<Integer> markCompressed(String sha256, Long gzipSize);
+}
@@ -1,18 +1,46 @@
 package org.dmdev.bookstore.repository;
 
 import org.dmdev.bookstore.domain.Book;
+import org.dmdev.bookstore.repository.custom.CustomBookRepository;
 import org.springframework.data.r2dbc.repository.Query;
 import org.springframework.data.repository.reactive.ReactiveCrudRepository;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
+import java.time.Instant;
+import java.time.LocalDate;
 import java.util.List;
 import java.util.UUID;
 
-public interface BookRepository extends ReactiveCrudRepository<Book, UUID> {
+public interface BookRepository extends ReactiveCrudRepository<Book, UUID>, CustomBookRepository {
 
-    @Query("SELECT * FROM books ORDER BY publication_date ASC LIMIT :limit OFFSET :offset")
+    @Query("SELECT updated_at FROM books WHERE id = :id")
+    Mono<Instant> findUpdatedAtById(UUID id);
+
+    @Query("SELECT * FROM books ORDER BY publication_date ASC, id ASC LIMIT :limit OFFSET :offset")
     Flux<Book> findAll(int limit, int offset);
 
+    @Query("SELECT * FROM books ORDER BY publication_date ASC, id ASC LIMIT :limit")
+    Flux<Book> findFirstPage(int limit);
+
+    @Query("""
+                SELECT * FROM books
+                WHERE (publication_date, id) > (:publicationDate, :id)
+                ORDER BY publication_date ASC, id ASC
+                LIMIT :limit
+            """)
+    Flux<Book> findPageAfter(LocalDate publicationDate, UUID id, int limit);
+
+    @Query("""
+                SELECT * FROM books
+                WHERE publication_date IS NULL AND id > :id
+                ORDER BY id ASC
+                LIMIT :limit
+            """)
+    Flux<Book> findUndatedPageAfter(UUID id, int limit);
+
+    Flux<Book> findAllByOrderByPublicationDateAscIdAsc();
+
     Flux<Book> findAllByAuthorId(UUID author);
 
     @Query("""
@@ -6,6 +6,7 @@ import org.springframework.data.r2dbc.repository.Query;
 import org.springframework.data.repository.reactive.ReactiveCrudRepository;
 import reactor.core.publisher.Flux;
 
+import java.util.Collection;
 import java.util.UUID;
 
 public interface GenreRepository extends ReactiveCrudRepository<Genre, UUID>, CustomGenreRepository {
@@ -17,5 +18,6 @@ public interface GenreRepository extends ReactiveCrudRepository<Genre, UUID>, Cu
 """)
     Flux<Genre> findGenresByBookId(UUID bookId);
 
+    Flux<Genre> findAllByNameIn(Collection<String> names);
 
 }
@@ -0,0 +1,40 @@
+package org.dmdev.bookstore.repository;
+
+import org.dmdev.bookstore.domain.IdempotencyKey;
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+
+public interface IdempotencyKeyRepository extends ReactiveCrudRepository<IdempotencyKey, String> {
+
+    /**
+     * Claims a key for execution. Returns 1 if the key was free, its previous use expired before
+     * {@code expiredBefore}, or it was claimed before {@code leaseExpiredBefore} and never completed
+     * (the holder died mid-request); 0 if another request holds or has completed it.
+     */
+    @Modifying
+    @Query("""
+                INSERT INTO idempotency_keys (id, request_hash)
+                VALUES (:id, :requestHash)
+                ON CONFLICT (id) DO UPDATE
+                    SET request_hash = EXCLUDED.request_hash, response = NULL, created_at = now()
+                    WHERE idempotency_keys.created_at < :expiredBefore
+                       OR (idempotency_keys.response IS NULL AND idempotency_keys.created_at < :leaseExpiredBefore)
+            """)
+    Mono<Integer> claim(String id, String requestHash, Instant expiredBefore, Instant leaseExpiredBefore);
+
+    @Modifying
+    @Query("UPDATE idempotency_keys SET response = :response WHERE id = :id")
+    Mono<Integer> complete(String id, String response);
+
+    @Modifying
+    @Query("DELETE FROM idempotency_keys WHERE id = :id AND response IS NULL")
+    Mono<Integer> release(String id);
+
+    @Modifying
+    @Query("DELETE FROM idempotency_keys WHERE created_at < :expiredBefore")
+    Mono<Integer> deleteCreatedBefore(Instant expiredBefore);
+}
@@ -0,0 +1,64 @@
+package org.dmdev.bookstore.repository;
+
+import org.dmdev.bookstore.domain.OutboxEvent;
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+
+public interface OutboxEventRepository extends ReactiveCrudRepository<OutboxEvent, Long> {
+
+    /**
+     * Transaction-scoped lock taken by the relay, so positions are assigned and committed in order
+     * even with several instances running it.
+     */
+    @Query("SELECT pg_try_advisory_xact_lock(:key)")
+    Mono<Boolean> tryRelayLock(long key);
+
+    /**
+     * Publishes up to {@code limit} pending events in id order by assigning them positions.
+     */
+    @Modifying
+    @Query("""
+                WITH claimed AS (
+                    SELECT id FROM outbox_events
+                    WHERE position IS NULL
+                    ORDER BY id
+                    LIMIT :limit
+                    FOR UPDATE SKIP LOCKED
+                ), numbered AS (
+                    SELECT id, nextval('outbox_events_position_seq') AS position
+                    FROM (SELECT id FROM claimed ORDER BY id) c
+                )
+                UPDATE outbox_events o
+                SET position = n.position, published_at = CURRENT_TIMESTAMP
+                FROM numbered n
+                WHERE o.id = n.id
+            """)
+    Mono<Integer> publishPending(int limit);
+
+    @Query("""
+                SELECT id, aggregate_type, aggregate_id, event_type, payload::text AS payload, created_at, position
+                FROM outbox_events
+                WHERE position > :after
+                ORDER BY position
+                LIMIT :limit
+            """)
+    Flux<OutboxEvent> findPublishedAfter(long after, int limit);
+
+    @Query("SELECT COALESCE(MAX(position), 0) FROM outbox_events")
+    Mono<Long> findLastPosition();
+
+    @Modifying
+    @Query("""
+                DELETE FROM outbox_events
+                WHERE id IN (SELECT id FROM outbox_events
+                             WHERE published_at < :publishedBefore
+                             LIMIT :limit
+                             FOR UPDATE SKIP LOCKED)
+            """)
+    Mono<Integer> deletePublishedBefore(Instant publishedBefore, int limit);
+}
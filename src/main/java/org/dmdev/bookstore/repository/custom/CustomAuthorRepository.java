@@ -0,0 +1,14 @@
+package org.dmdev.bookstore.repository.custom;
+
+import org.dmdev.bookstore.model.AuthorBooksPage;
+import reactor.core.publisher.Mono;
+
+import java.util.UUID;
+
+public interface CustomAuthorRepository {
+
+    /**
+     * Loads an author with one page of their books, ordered by publication date, in a single statement.
+     */
+    Mono<AuthorBooksPage> findWithBooks(UUID id, int limit, int offset);
+}
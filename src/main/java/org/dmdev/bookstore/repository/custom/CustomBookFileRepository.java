@@ -4,7 +4,10 @@ import org.dmdev.bookstore.domain.BookFile;
 import reactor.core.publisher.Mono;
 
 import java.util.List;
+import java.util.UUID;
 
 public interface CustomBookFileRepository {
     Mono<Void> saveBookFiles(List<BookFile> bookFiles);
+
+    Mono<Long> deleteAllByBookIds(List<UUID> bookIds);
 }
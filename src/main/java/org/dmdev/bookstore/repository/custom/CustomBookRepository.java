@@ -0,0 +1,69 @@
+package org.dmdev.bookstore.repository.custom;
+
+import org.dmdev.bookstore.domain.Book;
+import org.dmdev.bookstore.domain.BookFile;
+import org.dmdev.bookstore.model.BookFilter;
+import org.dmdev.bookstore.model.BookSearchCursor;
+import org.dmdev.bookstore.model.BookSearchHit;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.UUID;
+
+public interface CustomBookRepository {
+
+    /**
+     * Loads a book together with its genres and files in a single statement.
+     */
+    Mono<Book> findAggregateById(UUID id);
+
+    Flux<Book> findAggregatesByIds(List<UUID> ids);
+
+    /**
+     * Full-text search ranked by relevance. Pass a null {@code after} for the first page.
+     */
+    Flux<BookSearchHit> search(String query, BookSearchCursor after, int limit);
+
+    /**
+     * Creates a book with its genre and file links in one statement and returns it hydrated.
+     * Empty if the author does not exist; fails without side effects if a genre does not exist.
+     * The book and files must carry pre-assigned ids.
+     */
+    Mono<Book> createAggregate(Book book, List<UUID> genreIds, List<BookFile> files);
+
+    /**
+     * Updates a book and reconciles its links in one statement: only removed links are deleted and
+     * only new ones inserted. A null {@code genreIds} or {@code files} leaves those links untouched.
+     * Files are matched by id and must carry one. The update only applies if the row is still at
+     * {@code book.getVersion()}, and bumps it. Empty if the book does not exist or has moved on.
+     */
+    Mono<Book> updateAggregate(Book book, List<UUID> genreIds, List<BookFile> files);
+
+    /**
+     * Inserts books with pre-assigned ids using multi-row INSERTs.
+     */
+    Mono<Long> insertAll(List<Book> books);
+
+    /**
+     * Updates the columns of many books with UPDATE ... FROM (VALUES ...) statements and returns
+     * the ids that were updated; like {@link #updateAggregate}, rows whose version no longer
+     * matches are skipped. Links are not touched. Ids must be distinct.
+     */
+    Flux<UUID> updateAll(List<Book> books);
+
+    /**
+     * Ids of books matching the filter, in id order, starting after {@code after} (null for the start).
+     */
+    Flux<UUID> findIdsByFilter(BookFilter filter, UUID after, int limit);
+
+    Mono<Long> updateAuthor(List<UUID> ids, UUID authorId);
+
+    Mono<Long> deleteAllByIds(List<UUID> ids);
+
+    /**
+     * Every book with its author, genres and files as one JSON document per row, in id order.
+     * Rows are fetched from a server-side cursor {@code fetchSize} at a time as they are consumed.
+     */
+    Flux<String> streamCatalogJson(int fetchSize);
+}
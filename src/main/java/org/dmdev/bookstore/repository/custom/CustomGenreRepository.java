@@ -1,10 +1,25 @@
 package org.dmdev.bookstore.repository.custom;
 
+import org.dmdev.bookstore.domain.BookGenre;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.util.List;
 import java.util.UUID;
 
 public interface CustomGenreRepository {
-    Mono<Void> saveBookGenres(UUID bookId, List<UUID> genreIds);
+    /**
+     * Inserts links of many books at once. The genre index is left alone, so callers writing
+     * inside a transaction can update it after commit.
+     */
+    Mono<Void> insertBookGenres(List<BookGenre> links);
+
+    /**
+     * Links every given book to every given genre, skipping existing links. Returns links created.
+     */
+    Mono<Long> linkGenres(List<UUID> bookIds, List<UUID> genreIds);
+
+    Mono<Long> unlinkGenres(List<UUID> bookIds, List<UUID> genreIds);
+
+    Flux<BookGenre> findAllBookGenres();
 }
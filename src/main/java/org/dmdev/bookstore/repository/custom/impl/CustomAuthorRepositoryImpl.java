@@ -0,0 +1,67 @@
+package org.dmdev.bookstore.repository.custom.impl;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.r2dbc.spi.Row;
+import io.r2dbc.spi.RowMetadata;
+import lombok.RequiredArgsConstructor;
+import org.dmdev.bookstore.domain.Author;
+import org.dmdev.bookstore.domain.Book;
+import org.dmdev.bookstore.model.AuthorBooksPage;
+import org.dmdev.bookstore.repository.custom.CustomAuthorRepository;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+@RequiredArgsConstructor
+public class CustomAuthorRepositoryImpl implements CustomAuthorRepository {
+
+    private static final String AUTHOR_WITH_BOOKS = """
+                SELECT a.*,
+                       COALESCE((SELECT json_agg(json_build_object('id', b.id, 'isbn', b.isbn, 'title', b.title,
+                                                                   'pages', b.pages,
+                                                                   'publicationDate', b.publication_date,
+                                                                   'authorId', b.author_id)
+                                                 ORDER BY b.publication_date, b.id)
+                                 FROM (SELECT * FROM books
+                                       WHERE author_id = a.id
+                                       ORDER BY publication_date, id
+                                       LIMIT :limit OFFSET :offset) b), '[]')::text AS books_json,
+                       (SELECT count(*) FROM books WHERE author_id = a.id) AS books_total
+                FROM authors a
+                WHERE a.id = :id
+            """;
+
+    private static final TypeReference<List<Book>> BOOK_LIST = new TypeReference<>() {
+    };
+
+    private final R2dbcEntityTemplate template;
+    private final ObjectMapper objectMapper;
+
+    @Override
+    public Mono<AuthorBooksPage> findWithBooks(UUID id, int limit, int offset) {
+        return template.getDatabaseClient()
+                .sql(AUTHOR_WITH_BOOKS)
+                .bind("id", id)
+                .bind("limit", limit)
+                .bind("offset", offset)
+                .map(this::readAuthorWithBooks)
+                .one();
+    }
+
+    private AuthorBooksPage readAuthorWithBooks(Row row, RowMetadata metadata) {
+        Author author = template.getConverter().read(Author.class, row, metadata);
+        String json = row.get("books_json", String.class);
+        try {
+            author.setBooks(objectMapper.readValue(json, BOOK_LIST));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Malformed aggregate column: " + json, e);
+        }
+        return new AuthorBooksPage(author, row.get("books_total", Long.class));
+    }
+}
@@ -3,26 +3,48 @@ package org.dmdev.bookstore.repository.custom.impl;
 import lombok.RequiredArgsConstructor;
 import org.dmdev.bookstore.domain.BookFile;
 import org.dmdev.bookstore.repository.custom.CustomBookFileRepository;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
 import org.springframework.stereotype.Repository;
-import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.util.List;
+import java.util.UUID;
 
 @Repository
 @RequiredArgsConstructor
 public class CustomBookFileRepositoryImpl implements CustomBookFileRepository {
 
+    private static final MultiRowInsert<BookFile> BOOK_FILES_INSERT = new MultiRowInsert<>("book_files", List.of(
+            new MultiRowInsert.Column<>("id", UUID.class, BookFile::getId),
+            new MultiRowInsert.Column<>("book_id", UUID.class, BookFile::getBookId),
+            new MultiRowInsert.Column<>("format", String.class, BookFile::getFormat),
+            new MultiRowInsert.Column<>("file_path", String.class, BookFile::getFilePath),
+            new MultiRowInsert.Column<>("sha256", String.class, BookFile::getSha256),
+            new MultiRowInsert.Column<>("size_bytes", Long.class, BookFile::getSize),
+            new MultiRowInsert.Column<>("file_name", String.class, BookFile::getFileName)));
+
     private final R2dbcEntityTemplate template;
 
+    @Value("${bookstore.batch.chunk-size:500}")
+    private int chunkSize;
+
     @Override
     public Mono<Void> saveBookFiles(List<BookFile> bookFiles) {
-        return Flux.fromIterable(bookFiles)
-                .flatMap(bookFile -> template.insert(BookFile.class)
-                        .using(bookFile)
-                        .then()
-                )
+        // Ids are assigned here rather than by the column default so every row binds the same columns
+        bookFiles.stream()
+                .filter(bookFile -> bookFile.getId() == null)
+                .forEach(bookFile -> bookFile.setId(UUID.randomUUID()));
+        return BOOK_FILES_INSERT.execute(template.getDatabaseClient(), bookFiles, chunkSize)
                 .then();
     }
+
+    @Override
+    public Mono<Long> deleteAllByBookIds(List<UUID> bookIds) {
+        return template.getDatabaseClient()
+                .sql("DELETE FROM book_files WHERE book_id = ANY (CAST(:bookIds AS uuid[]))")
+                .bind("bookIds", bookIds.stream().map(UUID::toString).toArray(String[]::new))
+                .fetch()
+                .rowsUpdated();
+    }
 }
@@ -0,0 +1,417 @@
+package org.dmdev.bookstore.repository.custom.impl;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.r2dbc.spi.Row;
+import io.r2dbc.spi.RowMetadata;
+import lombok.RequiredArgsConstructor;
+import org.dmdev.bookstore.domain.Book;
+import org.dmdev.bookstore.domain.BookFile;
+import org.dmdev.bookstore.domain.Genre;
+import org.dmdev.bookstore.model.BookFilter;
+import org.dmdev.bookstore.model.BookSearchCursor;
+import org.dmdev.bookstore.model.BookSearchHit;
+import org.dmdev.bookstore.repository.custom.CustomBookRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+@Repository
+@RequiredArgsConstructor
+public class CustomBookRepositoryImpl implements CustomBookRepository {
+
+    private static final String AGGREGATE_SELECT = """
+                SELECT b.*,
+                       COALESCE((SELECT json_agg(json_build_object('id', g.id, 'name', g.name))
+                                 FROM genres g
+                                 JOIN book_genres bg ON g.id = bg.genre_id
+                                 WHERE bg.book_id = b.id), '[]')::text AS genres_json,
+                       COALESCE((SELECT json_agg(json_build_object('id', f.id, 'bookId', f.book_id,
+                                                                   'format', f.format, 'filePath', f.file_path,
+                                                                   'sha256', f.sha256, 'size', f.size_bytes,
+                                                                   'fileName', f.file_name))
+                                 FROM book_files f
+                                 WHERE f.book_id = b.id), '[]')::text AS files_json
+                FROM books b
+            """;
+
+    private static final String CREATE_AGGREGATE = """
+                WITH author AS (
+                    SELECT id FROM authors WHERE id = :authorId
+                ), book AS (
+                    INSERT INTO books (id, isbn, title, pages, publication_date, author_id)
+                    SELECT :id, :isbn, :title, :pages, :publicationDate, author.id FROM author
+                    RETURNING *
+                ), genre_links AS (
+                    INSERT INTO book_genres (book_id, genre_id)
+                    SELECT book.id, g.genre_id
+                    FROM book, unnest(CAST(:genreIds AS uuid[])) AS g(genre_id)
+                    RETURNING genre_id
+                ), file_links AS (
+                    INSERT INTO book_files (id, book_id, format, file_path)
+                    SELECT f.id, book.id, f.format, f.file_path
+                    FROM book, unnest(CAST(:fileIds AS uuid[]), CAST(:formats AS varchar[]), CAST(:paths AS text[]))
+                        AS f(id, format, file_path)
+                    RETURNING id, book_id, format, file_path, sha256, size_bytes, file_name
+                )
+                SELECT book.*,
+                       COALESCE((SELECT json_agg(json_build_object('id', g.id, 'name', g.name))
+                                 FROM genres g
+                                 JOIN genre_links gl ON g.id = gl.genre_id), '[]')::text AS genres_json,
+                       COALESCE((SELECT json_agg(json_build_object('id', f.id, 'bookId', f.book_id,
+                                                                   'format', f.format, 'filePath', f.file_path,
+                                                                   'sha256', f.sha256, 'size', f.size_bytes,
+                                                                   'fileName', f.file_name))
+                                 FROM file_links f), '[]')::text AS files_json
+                FROM book
+            """;
+
+    private static final String UPDATE_BOOK = """
+                WITH book AS (
+                    UPDATE books
+                    SET isbn = :isbn, title = :title, pages = :pages,
+                        publication_date = :publicationDate, author_id = :authorId,
+                        version = version + 1
+                    WHERE id = :id AND version = :version
+                    RETURNING *
+                )
+            """;
+    private static final String RECONCILE_GENRES = """
+                , removed_genres AS (
+                    DELETE FROM book_genres bg
+                    USING book
+                    WHERE bg.book_id = book.id AND bg.genre_id <> ALL (CAST(:genreIds AS uuid[]))
+                ), added_genres AS (
+                    INSERT INTO book_genres (book_id, genre_id)
+                    SELECT book.id, g.genre_id
+                    FROM book, unnest(CAST(:genreIds AS uuid[])) AS g(genre_id)
+                    ON CONFLICT DO NOTHING
+                )
+            """;
+    private static final String RECONCILE_FILES = """
+                , removed_files AS (
+                    DELETE FROM book_files f
+                    USING book
+                    WHERE f.book_id = book.id AND f.id <> ALL (CAST(:fileIds AS uuid[]))
+                ), written_files AS (
+                    INSERT INTO book_files (id, book_id, format, file_path)
+                    SELECT f.id, book.id, f.format, f.file_path
+                    FROM book, unnest(CAST(:fileIds AS uuid[]), CAST(:formats AS varchar[]), CAST(:paths AS text[]))
+                        AS f(id, format, file_path)
+                    ON CONFLICT (id) DO UPDATE
+                        -- Clients send no path, so an absent one keeps the path the file already has
+                        SET format = EXCLUDED.format, file_path = COALESCE(EXCLUDED.file_path, book_files.file_path),
+                            -- Checksum, size and name describe the old file once the path changes
+                            sha256 = CASE WHEN EXCLUDED.file_path IS NULL OR book_files.file_path = EXCLUDED.file_path
+                                          THEN book_files.sha256 END,
+                            size_bytes = CASE WHEN EXCLUDED.file_path IS NULL OR book_files.file_path = EXCLUDED.file_path
+                                              THEN book_files.size_bytes END,
+                            file_name = CASE WHEN EXCLUDED.file_path IS NULL OR book_files.file_path = EXCLUDED.file_path
+                                             THEN book_files.file_name END
+                        WHERE book_files.book_id = EXCLUDED.book_id
+                          AND (book_files.format, book_files.file_path)
+                              IS DISTINCT FROM (EXCLUDED.format, COALESCE(EXCLUDED.file_path, book_files.file_path))
+                    RETURNING id, book_id, format, file_path, sha256, size_bytes, file_name
+                )
+            """;
+    // The final SELECT sees the tables as they were before the statement, so reconciled links are
+    // read from the requested ids and the rows the CTEs returned rather than from the tables
+    private static final String UPDATED_GENRES = """
+                COALESCE((SELECT json_agg(json_build_object('id', g.id, 'name', g.name))
+                          FROM genres g
+                          WHERE g.id = ANY (CAST(:genreIds AS uuid[]))), '[]')::text AS genres_json
+            """;
+    private static final String CURRENT_GENRES = """
+                COALESCE((SELECT json_agg(json_build_object('id', g.id, 'name', g.name))
+                          FROM genres g
+                          JOIN book_genres bg ON g.id = bg.genre_id
+                          WHERE bg.book_id = book.id), '[]')::text AS genres_json
+            """;
+    private static final String UPDATED_FILES = """
+                COALESCE((SELECT json_agg(json_build_object('id', f.id, 'bookId', f.book_id,
+                                                            'format', f.format, 'filePath', f.file_path,
+                                                            'sha256', f.sha256, 'size', f.size_bytes,
+                                                            'fileName', f.file_name))
+                          FROM (SELECT * FROM written_files
+                                UNION ALL
+                                SELECT f.id, f.book_id, f.format, f.file_path, f.sha256, f.size_bytes, f.file_name
+                                FROM book_files f
+                                WHERE f.book_id = book.id
+                                  AND f.id = ANY (CAST(:fileIds AS uuid[]))
+                                  AND f.id NOT IN (SELECT id FROM written_files)) f), '[]')::text AS files_json
+            """;
+    private static final String CURRENT_FILES = """
+                COALESCE((SELECT json_agg(json_build_object('id', f.id, 'bookId', f.book_id,
+                                                            'format', f.format, 'filePath', f.file_path,
+                                                            'sha256', f.sha256, 'size', f.size_bytes,
+                                                            'fileName', f.file_name))
+                          FROM book_files f
+                          WHERE f.book_id = book.id), '[]')::text AS files_json
+            """;
+
+    // Built in Postgres so the export never materializes rows as Java objects
+    private static final String CATALOG_JSON = """
+                SELECT json_build_object(
+                           'id', b.id, 'isbn', b.isbn, 'title', b.title, 'pages', b.pages,
+                           'publicationDate', b.publication_date, 'version', b.version,
+                           'author', CASE WHEN a.id IS NULL THEN NULL ELSE json_build_object(
+                               'id', a.id, 'firstName', a.firstname, 'lastName', a.lastname,
+                               'birthDate', a.birthdate, 'deathDate', a.death_date) END,
+                           'genres', COALESCE((SELECT json_agg(json_build_object('id', g.id, 'name', g.name))
+                                               FROM genres g
+                                               JOIN book_genres bg ON g.id = bg.genre_id
+                                               WHERE bg.book_id = b.id), '[]'),
+                           'files', COALESCE((SELECT json_agg(json_build_object('id', f.id, 'format', f.format,
+                                                                                'filePath', f.file_path,
+                                                                                'sha256', f.sha256,
+                                                                                'size', f.size_bytes,
+                                                                                'fileName', f.file_name))
+                                              FROM book_files f
+                                              WHERE f.book_id = b.id), '[]'))::text AS line
+                FROM books b
+                LEFT JOIN authors a ON a.id = b.author_id
+                ORDER BY b.id
+            """;
+
+    private static final String SEARCH_SELECT = """
+                SELECT b.*, ts_rank(b.search_vector, q.query) AS rank
+                FROM books b, websearch_to_tsquery('simple', :query) AS q(query)
+                WHERE b.search_vector @@ q.query
+            """;
+    private static final String SEARCH_AFTER = """
+                 AND (ts_rank(b.search_vector, q.query), b.id) < (:rank, :id)
+            """;
+    private static final String SEARCH_ORDER = """
+                 ORDER BY rank DESC, b.id DESC
+                 LIMIT :limit
+            """;
+
+    private static final MultiRowInsert<Book> BOOKS_INSERT = new MultiRowInsert<>("books", List.of(
+            new MultiRowInsert.Column<>("id", UUID.class, Book::getId),
+            new MultiRowInsert.Column<>("isbn", String.class, Book::getISBN),
+            new MultiRowInsert.Column<>("title", String.class, Book::getTitle),
+            new MultiRowInsert.Column<>("pages", Integer.class, Book::getPages),
+            new MultiRowInsert.Column<>("publication_date", LocalDate.class, Book::getPublicationDate),
+            new MultiRowInsert.Column<>("author_id", UUID.class, Book::getAuthorId)));
+    // The same columns plus the version each update was based on
+    private static final MultiRowInsert<Book> BOOKS_UPDATE = new MultiRowInsert<>("books", List.of(
+            new MultiRowInsert.Column<>("id", UUID.class, Book::getId),
+            new MultiRowInsert.Column<>("isbn", String.class, Book::getISBN),
+            new MultiRowInsert.Column<>("title", String.class, Book::getTitle),
+            new MultiRowInsert.Column<>("pages", Integer.class, Book::getPages),
+            new MultiRowInsert.Column<>("publication_date", LocalDate.class, Book::getPublicationDate),
+            new MultiRowInsert.Column<>("author_id", UUID.class, Book::getAuthorId),
+            new MultiRowInsert.Column<>("version", Long.class, Book::getVersion)));
+
+    private static final TypeReference<List<Genre>> GENRE_LIST = new TypeReference<>() {
+    };
+    private static final TypeReference<List<BookFile>> BOOK_FILE_LIST = new TypeReference<>() {
+    };
+
+    private final R2dbcEntityTemplate template;
+    private final ObjectMapper objectMapper;
+
+    @Value("${bookstore.batch.chunk-size:500}")
+    private int chunkSize;
+
+    @Override
+    public Mono<Book> findAggregateById(UUID id) {
+        return template.getDatabaseClient()
+                .sql(AGGREGATE_SELECT + " WHERE b.id = :id")
+                .bind("id", id)
+                .map(this::readAggregate)
+                .one();
+    }
+
+    @Override
+    public Flux<Book> findAggregatesByIds(List<UUID> ids) {
+        if (ids.isEmpty()) {
+            return Flux.empty();
+        }
+        return template.getDatabaseClient()
+                .sql(AGGREGATE_SELECT + " WHERE b.id IN (:ids)")
+                .bind("ids", ids)
+                .map(this::readAggregate)
+                .all();
+    }
+
+    @Override
+    public Flux<BookSearchHit> search(String query, BookSearchCursor after, int limit) {
+        DatabaseClient.GenericExecuteSpec spec = template.getDatabaseClient()
+                .sql(SEARCH_SELECT + (after == null ? "" : SEARCH_AFTER) + SEARCH_ORDER)
+                .bind("query", query)
+                .bind("limit", limit);
+        if (after != null) {
+            spec = spec.bind("rank", after.rank()).bind("id", after.id());
+        }
+        return spec.map((row, metadata) -> new BookSearchHit(
+                        template.getConverter().read(Book.class, row, metadata),
+                        row.get("rank", Float.class)))
+                .all();
+    }
+
+    @Override
+    public Mono<Book> createAggregate(Book book, List<UUID> genreIds, List<BookFile> files) {
+        DatabaseClient.GenericExecuteSpec spec = bindBook(template.getDatabaseClient().sql(CREATE_AGGREGATE), book)
+                .bind("genreIds", genreIds.stream().map(UUID::toString).toArray(String[]::new));
+        return bindFiles(spec, files)
+                .map(this::readAggregate)
+                .one();
+    }
+
+    @Override
+    public Mono<Book> updateAggregate(Book book, List<UUID> genreIds, List<BookFile> files) {
+        String sql = UPDATE_BOOK
+                + (genreIds == null ? "" : RECONCILE_GENRES)
+                + (files == null ? "" : RECONCILE_FILES)
+                + " SELECT book.*, "
+                + (genreIds == null ? CURRENT_GENRES : UPDATED_GENRES) + ", "
+                + (files == null ? CURRENT_FILES : UPDATED_FILES)
+                + " FROM book";
+        DatabaseClient.GenericExecuteSpec spec = bindBook(template.getDatabaseClient().sql(sql), book)
+                .bind("version", book.getVersion());
+        if (genreIds != null) {
+            spec = spec.bind("genreIds", genreIds.stream().map(UUID::toString).toArray(String[]::new));
+        }
+        if (files != null) {
+            spec = bindFiles(spec, files);
+        }
+        return spec.map(this::readAggregate).one();
+    }
+
+    @Override
+    public Mono<Long> insertAll(List<Book> books) {
+        return BOOKS_INSERT.execute(template.getDatabaseClient(), books, chunkSize);
+    }
+
+    private static DatabaseClient.GenericExecuteSpec bindBook(DatabaseClient.GenericExecuteSpec spec, Book book) {
+        spec = spec.bind("id", book.getId())
+                .bind("pages", book.getPages());
+        spec = book.getAuthorId() == null ? spec.bindNull("authorId", UUID.class) : spec.bind("authorId", book.getAuthorId());
+        spec = book.getISBN() == null ? spec.bindNull("isbn", String.class) : spec.bind("isbn", book.getISBN());
+        spec = book.getTitle() == null ? spec.bindNull("title", String.class) : spec.bind("title", book.getTitle());
+        return book.getPublicationDate() == null
+                ? spec.bindNull("publicationDate", LocalDate.class)
+                : spec.bind("publicationDate", book.getPublicationDate());
+    }
+
+    // Arrays are bound as text[] and cast in SQL, which the driver handles for every element type
+    private static DatabaseClient.GenericExecuteSpec bindFiles(DatabaseClient.GenericExecuteSpec spec, List<BookFile> files) {
+        return spec.bind("fileIds", files.stream().map(file -> file.getId().toString()).toArray(String[]::new))
+                .bind("formats", files.stream().map(BookFile::getFormat).toArray(String[]::new))
+                .bind("paths", files.stream().map(BookFile::getFilePath).toArray(String[]::new));
+    }
+
+    @Override
+    public Flux<UUID> updateAll(List<Book> books) {
+        int size = Math.max(1, chunkSize);
+        return Flux.range(0, (books.size() + size - 1) / size)
+                .map(chunk -> books.subList(chunk * size, Math.min(books.size(), (chunk + 1) * size)))
+                .concatMap(chunk -> BOOKS_UPDATE.bind(template.getDatabaseClient().sql("""
+                                        UPDATE books AS b
+                                        SET isbn = v.isbn, title = v.title, pages = v.pages,
+                                            publication_date = v.publication_date, author_id = v.author_id,
+                                            version = b.version + 1
+                                        FROM (VALUES %s) AS v%s
+                                        WHERE b.id = v.id AND b.version = v.version
+                                        RETURNING b.id
+                                        """.formatted(BOOKS_UPDATE.values(chunk.size()), BOOKS_UPDATE.columnList())),
+                                chunk)
+                        .map(row -> row.get("id", UUID.class))
+                        .all());
+    }
+
+    @Override
+    public Flux<UUID> findIdsByFilter(BookFilter filter, UUID after, int limit) {
+        StringBuilder sql = new StringBuilder("SELECT id FROM books b WHERE TRUE");
+        Map<String, Object> params = new HashMap<>();
+        if (filter.ids() != null && !filter.ids().isEmpty()) {
+            sql.append(" AND b.id = ANY (CAST(:ids AS uuid[]))");
+            params.put("ids", toTextArray(filter.ids()));
+        }
+        if (filter.authorId() != null) {
+            sql.append(" AND b.author_id = :authorId");
+            params.put("authorId", filter.authorId());
+        }
+        if (filter.genreId() != null) {
+            sql.append(" AND EXISTS (SELECT 1 FROM book_genres bg WHERE bg.book_id = b.id AND bg.genre_id = :genreId)");
+            params.put("genreId", filter.genreId());
+        }
+        if (filter.publishedFrom() != null) {
+            sql.append(" AND b.publication_date >= :publishedFrom");
+            params.put("publishedFrom", filter.publishedFrom());
+        }
+        if (filter.publishedTo() != null) {
+            sql.append(" AND b.publication_date <= :publishedTo");
+            params.put("publishedTo", filter.publishedTo());
+        }
+        if (after != null) {
+            sql.append(" AND b.id > :after");
+            params.put("after", after);
+        }
+        sql.append(" ORDER BY b.id LIMIT :limit");
+        params.put("limit", limit);
+        return template.getDatabaseClient()
+                .sql(sql.toString())
+                .bindValues(params)
+                .map(row -> row.get("id", UUID.class))
+                .all();
+    }
+
+    @Override
+    public Mono<Long> updateAuthor(List<UUID> ids, UUID authorId) {
+        return template.getDatabaseClient()
+                .sql("UPDATE books SET author_id = :authorId, version = version + 1 WHERE id = ANY (CAST(:ids AS uuid[])) AND author_id IS DISTINCT FROM :authorId")
+                .bind("authorId", authorId)
+                .bind("ids", toTextArray(ids))
+                .fetch()
+                .rowsUpdated();
+    }
+
+    @Override
+    public Mono<Long> deleteAllByIds(List<UUID> ids) {
+        return template.getDatabaseClient()
+                .sql("DELETE FROM books WHERE id = ANY (CAST(:ids AS uuid[]))")
+                .bind("ids", toTextArray(ids))
+                .fetch()
+                .rowsUpdated();
+    }
+
+    @Override
+    public Flux<String> streamCatalogJson(int fetchSize) {
+        return template.getDatabaseClient()
+                .sql(CATALOG_JSON)
+                .filter(statement -> statement.fetchSize(fetchSize))
+                .map(row -> row.get("line", String.class))
+                .all();
+    }
+
+    private static String[] toTextArray(List<UUID> ids) {
+        return ids.stream().map(UUID::toString).toArray(String[]::new);
+    }
+
+    private Book readAggregate(Row row, RowMetadata metadata) {
+        Book book = template.getConverter().read(Book.class, row, metadata);
+        book.setGenres(readJson(row.get("genres_json", String.class), GENRE_LIST));
+        book.setFiles(readJson(row.get("files_json", String.class), BOOK_FILE_LIST));
+        return book;
+    }
+
+    private <T> List<T> readJson(String json, TypeReference<List<T>> type) {
+        try {
+            return objectMapper.readValue(json, type);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Malformed aggregate column: " + json, e);
+        }
+    }
+}
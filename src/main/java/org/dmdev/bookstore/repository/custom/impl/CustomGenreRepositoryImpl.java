@@ -3,6 +3,7 @@ package org.dmdev.bookstore.repository.custom.impl;
 import lombok.RequiredArgsConstructor;
 import org.dmdev.bookstore.domain.BookGenre;
 import org.dmdev.bookstore.repository.custom.CustomGenreRepository;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
 import org.springframework.stereotype.Repository;
 import reactor.core.publisher.Flux;
@@ -15,15 +16,52 @@ import java.util.UUID;
 @RequiredArgsConstructor
 public class CustomGenreRepositoryImpl implements CustomGenreRepository {
 
+    private static final MultiRowInsert<BookGenre> BOOK_GENRES_INSERT = new MultiRowInsert<>("book_genres", List.of(
+            new MultiRowInsert.Column<>("book_id", UUID.class, BookGenre::getBookId),
+            new MultiRowInsert.Column<>("genre_id", UUID.class, BookGenre::getGenreId)));
+
     private final R2dbcEntityTemplate template;
 
+    @Value("${bookstore.batch.chunk-size:500}")
+    private int chunkSize;
+
     @Override
-    public Mono<Void> saveBookGenres(UUID bookId, List<UUID> genreIds) {
-        return Flux.fromIterable(genreIds)
-                .flatMap(genreId -> template.insert(BookGenre.class)
-                        .using(new BookGenre(bookId, genreId))
-                        .then()
-                )
+    public Mono<Void> insertBookGenres(List<BookGenre> links) {
+        return BOOK_GENRES_INSERT.execute(template.getDatabaseClient(), links, chunkSize)
                 .then();
     }
+
+    @Override
+    public Mono<Long> linkGenres(List<UUID> bookIds, List<UUID> genreIds) {
+        return template.getDatabaseClient()
+                .sql("""
+                        INSERT INTO book_genres (book_id, genre_id)
+                        SELECT b.id, g.id
+                        FROM unnest(CAST(:bookIds AS uuid[])) AS b(id), unnest(CAST(:genreIds AS uuid[])) AS g(id)
+                        ON CONFLICT DO NOTHING
+                        """)
+                .bind("bookIds", toTextArray(bookIds))
+                .bind("genreIds", toTextArray(genreIds))
+                .fetch()
+                .rowsUpdated();
+    }
+
+    @Override
+    public Mono<Long> unlinkGenres(List<UUID> bookIds, List<UUID> genreIds) {
+        return template.getDatabaseClient()
+                .sql("DELETE FROM book_genres WHERE book_id = ANY (CAST(:bookIds AS uuid[])) AND genre_id = ANY (CAST(:genreIds AS uuid[]))")
+                .bind("bookIds", toTextArray(bookIds))
+                .bind("genreIds", toTextArray(genreIds))
+                .fetch()
+                .rowsUpdated();
+    }
+
+    @Override
+    public Flux<BookGenre> findAllBookGenres() {
+        return template.select(BookGenre.class).all();
+    }
+
+    private static String[] toTextArray(List<UUID> ids) {
+        return ids.stream().map(UUID::toString).toArray(String[]::new);
+    }
 }
@@ -0,0 +1,75 @@
+package org.dmdev.bookstore.repository.custom.impl;
+
+import org.springframework.r2dbc.core.DatabaseClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.StringJoiner;
+import java.util.function.Function;
+
+/**
+ * Writes rows as {@code INSERT ... VALUES (...), (...)} statements of at most {@code chunkSize}
+ * rows each. Chunks run one after another, so an operation holds a single connection at a time.
+ */
+final class MultiRowInsert<T> {
+
+    record Column<T>(String name, Class<?> type, Function<T, Object> value) {
+    }
+
+    private final String table;
+    private final List<Column<T>> columns;
+
+    MultiRowInsert(String table, List<Column<T>> columns) {
+        this.table = table;
+        this.columns = List.copyOf(columns);
+    }
+
+    Mono<Long> execute(DatabaseClient client, List<T> rows, int chunkSize) {
+        if (rows.isEmpty()) {
+            return Mono.just(0L);
+        }
+        int size = Math.max(1, chunkSize);
+        return Flux.range(0, (rows.size() + size - 1) / size)
+                .concatMap(chunk -> insertChunk(client, rows.subList(chunk * size, Math.min(rows.size(), (chunk + 1) * size))))
+                .reduce(0L, Long::sum);
+    }
+
+    private Mono<Long> insertChunk(DatabaseClient client, List<T> chunk) {
+        return bind(client.sql("INSERT INTO " + table + columnList() + " VALUES " + values(chunk.size())), chunk)
+                .fetch()
+                .rowsUpdated();
+    }
+
+    /**
+     * Column names as {@code " (a, b)"}, usable after a table name or a VALUES alias.
+     */
+    String columnList() {
+        StringJoiner names = new StringJoiner(", ", " (", ")");
+        columns.forEach(column -> names.add(column.name()));
+        return names.toString();
+    }
+
+    String values(int rows) {
+        StringJoiner values = new StringJoiner(", ");
+        for (int row = 0; row < rows; row++) {
+            StringJoiner markers = new StringJoiner(", ", "(", ")");
+            for (Column<T> column : columns) {
+                markers.add(":" + column.name() + "_" + row);
+            }
+            values.add(markers.toString());
+        }
+        return values.toString();
+    }
+
+    DatabaseClient.GenericExecuteSpec bind(DatabaseClient.GenericExecuteSpec spec, List<T> rows) {
+        for (int row = 0; row < rows.size(); row++) {
+            for (Column<T> column : columns) {
+                Object value = column.value().apply(rows.get(row));
+                String marker = column.name() + "_" + row;
+                spec = value == null ? spec.bindNull(marker, column.type()) : spec.bind(marker, value);
+            }
+        }
+        return spec;
+    }
+}
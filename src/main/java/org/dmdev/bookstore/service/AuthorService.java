@@ -2,16 +2,20 @@ package org.dmdev.bookstore.service;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.dmdev.bookstore.dto.AuthorBooksDTO;
 import org.dmdev.bookstore.dto.AuthorDTO;
 import org.dmdev.bookstore.domain.Author;
+import org.dmdev.bookstore.index.TypeaheadIndex;
 import org.dmdev.bookstore.mapper.AuthorMapper;
 import org.dmdev.bookstore.mapper.BookMapper;
 import org.dmdev.bookstore.model.ResponseModel;
 import org.dmdev.bookstore.repository.AuthorRepository;
 import org.dmdev.bookstore.repository.BookRepository;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Mono;
 
+import java.time.Instant;
 import java.util.UUID;
 
 @Slf4j
@@ -21,6 +25,10 @@ public class AuthorService {
 
     private final AuthorRepository authorRepository;
     private final AuthorMapper authorMapper;
+    private final TypeaheadIndex typeaheadIndex;
+    private final BookMapper bookMapper;
+
+    private static final int MAX_PAGE_SIZE = 100;
 
     public Mono<ResponseModel> findAll() {
         log.info("Find all authors");
@@ -44,6 +52,18 @@ public class AuthorService {
                 });
     }
 
+    /**
+     * Version-only probe used for conditional GETs; empty when the author does not exist
+     * or the lookup fails, in which case the caller falls back to a full read.
+     */
+    public Mono<Instant> findLastModified(UUID id) {
+        return authorRepository.findUpdatedAtById(id)
+                .onErrorResume(e -> {
+                    log.warn("Error reading last-modified of author {}: {}", id, e.getMessage());
+                    return Mono.empty();
+                });
+    }
+
     public Mono<ResponseModel> find(UUID id) {
         log.info("Finding author by id: {}", id);
         return authorRepository.findById(id)
@@ -71,6 +91,60 @@ public class AuthorService {
                 });
     }
 
+    /**
+     * Author with one page of their books. Pages are 1-based and capped at the same offset as
+     * {@code GET /api/books}.
+     */
+    public Mono<ResponseModel> findWithBooks(UUID id, int page, int size) {
+        if (page < 1) {
+            return Mono.just(ResponseModel.builder()
+                    .status(ResponseModel.FAIL_STATUS)
+                    .message("Page must be 1 or greater")
+                    .build());
+        }
+        int pageSize = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+        long offset = (long) pageSize * (page - 1);
+        if (offset > BookService.MAX_OFFSET) {
+            log.warn("Rejected books page {} of author {}: offset {} exceeds {}", page, id, offset, BookService.MAX_OFFSET);
+            return Mono.just(ResponseModel.builder()
+                    .status(ResponseModel.FAIL_STATUS)
+                    .message("Page is too deep")
+                    .build());
+        }
+        log.info("Finding author {} with books, offset {}, size {}", id, offset, pageSize);
+        return authorRepository.findWithBooks(id, pageSize, (int) offset)
+                .map(found -> {
+                    Author author = found.author();
+                    log.info("Author found: {} with {} of {} books",
+                            author.getFirstname(), author.getBooks().size(), found.totalBooks());
+                    return ResponseModel.builder()
+                            .status(ResponseModel.SUCCESS_STATUS)
+                            .message("Author with books retrieved successfully")
+                            .data(AuthorBooksDTO.builder()
+                                    .author(authorMapper.authorToDto(author))
+                                    .books(author.getBooks().stream()
+                                            .map(bookMapper::bookToDto)
+                                            .toList())
+                                    .totalBooks(found.totalBooks())
+                                    .build())
+                            .build();
+                })
+                .switchIfEmpty(Mono.defer(() -> {
+                    log.warn("Author not found with id: {}", id);
+                    return Mono.just(ResponseModel.builder()
+                            .status(ResponseModel.FAIL_STATUS)
+                            .message("Author not found")
+                            .build());
+                }))
+                .onErrorResume(e -> {
+                    log.error("Error retrieving author {} with books: {}", id, e.getMessage(), e);
+                    return Mono.just(ResponseModel.builder()
+                            .status(ResponseModel.FAIL_STATUS)
+                            .message("Error: " + e.getMessage())
+                            .build());
+                });
+    }
+
     public Mono<ResponseModel> save(AuthorDTO authorDto) {
         if (authorDto.id() != null) {
             log.warn("Attempted to save an author that already has an ID: {}", authorDto.id());
@@ -80,8 +154,12 @@ public class AuthorService {
                     .build());
         }
         log.info("Saving new author: {} {}", authorDto.firstName(), authorDto.lastName());
-        return authorRepository.save(authorMapper.dtoToAuthor(authorDto))
+        Author author = authorMapper.dtoToAuthor(authorDto);
+        // A version would make Spring Data treat the entity as existing and issue an UPDATE
+        author.setVersion(null);
+        return authorRepository.save(author)
                 .doOnNext(saved -> log.debug("Author saved with ID: {}", saved.getId()))
+                .doOnNext(typeaheadIndex::putAuthor)
                 .map(dto -> ResponseModel.builder()
                         .status(ResponseModel.SUCCESS_STATUS)
                         .message(String.format("Author %s %s saved successfully", authorDto.firstName(), authorDto.lastName()))
@@ -102,6 +180,7 @@ public class AuthorService {
                 .flatMap(author -> {
                     log.info("Author found: {}. Proceeding to delete.", author.getFirstname());
                     return authorRepository.delete(author)
+                            .doOnSuccess(v -> typeaheadIndex.remove(id))
                             .then(Mono.just(ResponseModel.builder()
                                     .status(ResponseModel.SUCCESS_STATUS)
                                     .message("Author deleted successfully")
@@ -132,26 +211,39 @@ public class AuthorService {
                     .message("Author ID must not be null")
                     .build());
         }
-        return authorRepository.findById(authorDto.id())
-                .flatMap(author -> {
-                    log.info("Author found: {}", author.getFirstname());
-                    return authorRepository.save(authorMapper.dtoToAuthor(authorDto))
-                            .map(savedAuthor -> {
-                                log.info("Author updated successfully: {}", savedAuthor.getId());
+        if (authorDto.version() == null) {
+            log.warn("Author version is null for ID: {}", authorDto.id());
+            return Mono.just(ResponseModel.builder()
+                    .status(ResponseModel.FAIL_STATUS)
+                    .message("Author version must not be null")
+                    .build());
+        }
+        // With a version set, save is a single UPDATE ... WHERE id = ? AND version = ?
+        return authorRepository.save(authorMapper.dtoToAuthor(authorDto))
+                .doOnNext(typeaheadIndex::putAuthor)
+                .map(savedAuthor -> {
+                    log.info("Author updated successfully: {}", savedAuthor.getId());
+                    return ResponseModel.builder()
+                            .status(ResponseModel.SUCCESS_STATUS)
+                            .message("Author updated successfully")
+                            .data(authorMapper.authorToDto(savedAuthor))
+                            .build();
+                })
+                .onErrorResume(OptimisticLockingFailureException.class, e -> authorRepository.existsById(authorDto.id())
+                        .map(exists -> {
+                            if (exists) {
+                                log.warn("Author {} was modified concurrently, version {} is stale", authorDto.id(), authorDto.version());
                                 return ResponseModel.builder()
-                                        .status(ResponseModel.SUCCESS_STATUS)
-                                        .message("Author updated successfully")
-                                        .data(authorMapper.authorToDto(savedAuthor))
+                                        .status(ResponseModel.CONFLICT_STATUS)
+                                        .message("Author was modified by another request, reload and retry")
                                         .build();
-                            });
-                })
-                .switchIfEmpty(Mono.defer(() -> {
-                    log.warn("Author not found with ID: {}", authorDto.id());
-                    return Mono.just(ResponseModel.builder()
-                            .status(ResponseModel.FAIL_STATUS)
-                            .message("Author not found")
-                            .build());
-                }))
+                            }
+                            log.warn("Author not found with ID: {}", authorDto.id());
+                            return ResponseModel.builder()
+                                    .status(ResponseModel.FAIL_STATUS)
+                                    .message("Author not found")
+                                    .build();
+                        }))
                 .onErrorResume(e -> {
                     log.error("Error updating author with ID {}: {}", authorDto.id(), e.getMessage(), e);
                     return Mono.just(ResponseModel.builder()
@@ -0,0 +1,176 @@
+package org.dmdev.bookstore.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.dmdev.bookstore.cache.BookCache;
+import org.dmdev.bookstore.dto.BulkBookUpdateDTO;
+import org.dmdev.bookstore.dto.BulkResultDTO;
+import org.dmdev.bookstore.index.GenreIndex;
+import org.dmdev.bookstore.index.TypeaheadIndex;
+import org.dmdev.bookstore.model.BookFilter;
+import org.dmdev.bookstore.model.ResponseModel;
+import org.dmdev.bookstore.repository.AuthorRepository;
+import org.dmdev.bookstore.repository.BookFileRepository;
+import org.dmdev.bookstore.repository.BookRepository;
+import org.dmdev.bookstore.repository.GenreRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Function;
+
+/**
+ * Set-based bulk changes to books selected by a {@link BookFilter}. Matching ids are walked in id
+ * order, {@code bookstore.bulk.chunk-size} at a time, and each chunk is changed with a handful of
+ * {@code = ANY(:ids)} statements in its own transaction, so no transaction holds locks on more
+ * rows than one chunk. Caches and indexes are invalidated per committed chunk.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class BookBulkService {
+
+    private final BookRepository bookRepository;
+    private final AuthorRepository authorRepository;
+    private final GenreRepository genreRepository;
+    private final BookFileRepository bookFileRepository;
+    private final TypeaheadIndex typeaheadIndex;
+    private final GenreIndex genreIndex;
+    private final BookCache bookCache;
+    private final TransactionalOperator transactionalOperator;
+
+    @Value("${bookstore.bulk.chunk-size:1000}")
+    private int chunkSize;
+
+    public Mono<ResponseModel> delete(BookFilter filter) {
+        if (filter == null || filter.isEmpty()) {
+            return Mono.just(fail("Bulk delete requires at least one filter criterion"));
+        }
+        return forEachChunk(filter, this::deleteChunk)
+                .map(result -> {
+                    log.info("Bulk delete removed {} books in {} transactions", result.booksAffected(), result.transactions());
+                    return success(result);
+                })
+                .onErrorResume(e -> {
+                    log.error("Bulk delete failed: {}", e.getMessage(), e);
+                    return Mono.just(fail("Bulk delete failed: " + e.getMessage()));
+                });
+    }
+
+    public Mono<ResponseModel> update(BulkBookUpdateDTO update) {
+        if (update == null || update.filter() == null || update.filter().isEmpty()) {
+            return Mono.just(fail("Bulk update requires at least one filter criterion"));
+        }
+        List<UUID> addGenreIds = distinct(update.addGenreIds());
+        List<UUID> removeGenreIds = distinct(update.removeGenreIds());
+        if (update.authorId() == null && addGenreIds.isEmpty() && removeGenreIds.isEmpty()) {
+            return Mono.just(fail("Bulk update has nothing to change"));
+        }
+        return validate(update.authorId(), addGenreIds)
+                .then(Mono.defer(() -> forEachChunk(update.filter(),
+                        ids -> updateChunk(ids, update.authorId(), addGenreIds, removeGenreIds))))
+                .map(result -> {
+                    log.info("Bulk update changed {} of {} books in {} transactions",
+                            result.booksAffected(), result.matched(), result.transactions());
+                    return success(result);
+                })
+                .onErrorResume(e -> {
+                    log.error("Bulk update failed: {}", e.getMessage(), e);
+                    return Mono.just(fail("Bulk update failed: " + e.getMessage()));
+                });
+    }
+
+    private Mono<Void> validate(UUID authorId, List<UUID> genreIds) {
+        Mono<Void> author = authorId == null ? Mono.empty() : authorRepository.existsById(authorId)
+                .filter(Boolean::booleanValue)
+                .switchIfEmpty(Mono.error(new IllegalArgumentException("author not found")))
+                .then();
+        Mono<Void> genres = genreIds.isEmpty() ? Mono.empty() : genreRepository.findAllById(genreIds)
+                .count()
+                .filter(found -> found == genreIds.size())
+                .switchIfEmpty(Mono.error(new IllegalArgumentException("genre not found")))
+                .then();
+        return author.then(genres);
+    }
+
+    private Mono<BulkResultDTO> forEachChunk(BookFilter filter, Function<List<UUID>, Mono<Chunk>> apply) {
+        return nextChunk(filter, null, apply)
+                .expand(chunk -> chunk.ids().size() < chunkSize
+                        ? Mono.empty()
+                        : nextChunk(filter, chunk.ids().get(chunk.ids().size() - 1), apply))
+                .reduce(BulkResultDTO.builder().build(), (total, chunk) -> BulkResultDTO.builder()
+                        .matched(total.matched() + chunk.ids().size())
+                        .booksAffected(total.booksAffected() + chunk.booksAffected())
+                        .genreLinksAdded(total.genreLinksAdded() + chunk.genreLinksAdded())
+                        .genreLinksRemoved(total.genreLinksRemoved() + chunk.genreLinksRemoved())
+                        .filesDeleted(total.filesDeleted() + chunk.filesDeleted())
+                        .transactions(total.transactions() + 1)
+                        .build());
+    }
+
+    private Mono<Chunk> nextChunk(BookFilter filter, UUID after, Function<List<UUID>, Mono<Chunk>> apply) {
+        return bookRepository.findIdsByFilter(filter, after, chunkSize)
+                .collectList()
+                .filter(ids -> !ids.isEmpty())
+                .flatMap(apply);
+    }
+
+    private Mono<Chunk> deleteChunk(List<UUID> ids) {
+        // book_files has no ON DELETE CASCADE; book_genres does
+        return bookFileRepository.deleteAllByBookIds(ids)
+                .flatMap(files -> bookRepository.deleteAllByIds(ids)
+                        .map(books -> new Chunk(ids, books, 0, 0, files)))
+                .as(transactionalOperator::transactional)
+                .doOnNext(chunk -> {
+                    bookCache.invalidateAll(ids);
+                    ids.forEach(id -> {
+                        typeaheadIndex.remove(id);
+                        genreIndex.removeBook(id);
+                    });
+                });
+    }
+
+    private Mono<Chunk> updateChunk(List<UUID> ids, UUID authorId, List<UUID> addGenreIds, List<UUID> removeGenreIds) {
+        Mono<Long> books = authorId == null ? Mono.just(0L) : bookRepository.updateAuthor(ids, authorId);
+        Mono<Long> removed = removeGenreIds.isEmpty() ? Mono.just(0L) : genreRepository.unlinkGenres(ids, removeGenreIds);
+        Mono<Long> added = addGenreIds.isEmpty() ? Mono.just(0L) : genreRepository.linkGenres(ids, addGenreIds);
+        // Sequential so a genre listed in both add and remove ends up linked
+        return books.flatMap(updated -> removed.flatMap(unlinked -> added
+                        .map(linked -> new Chunk(ids, updated, linked, unlinked, 0))))
+                .as(transactionalOperator::transactional)
+                .doOnNext(chunk -> {
+                    bookCache.invalidateAll(ids);
+                    if (!removeGenreIds.isEmpty()) {
+                        ids.forEach(id -> genreIndex.removeBookGenres(id, removeGenreIds));
+                    }
+                    if (!addGenreIds.isEmpty()) {
+                        ids.forEach(id -> genreIndex.addBookGenres(id, addGenreIds));
+                    }
+                });
+    }
+
+    private static List<UUID> distinct(List<UUID> ids) {
+        return ids == null ? List.of() : ids.stream().distinct().toList();
+    }
+
+    private static ResponseModel success(BulkResultDTO result) {
+        return ResponseModel.builder()
+                .status(ResponseModel.SUCCESS_STATUS)
+                .message("Bulk operation completed")
+                .data(result)
+                .build();
+    }
+
+    private static ResponseModel fail(String message) {
+        return ResponseModel.builder()
+                .status(ResponseModel.FAIL_STATUS)
+                .message(message)
+                .build();
+    }
+
+    private record Chunk(List<UUID> ids, long booksAffected, long genreLinksAdded, long genreLinksRemoved, long filesDeleted) {
+    }
+}
@@ -0,0 +1,242 @@
+package org.dmdev.bookstore.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.dmdev.bookstore.cache.BookCache;
+import org.dmdev.bookstore.domain.BookFile;
+import org.dmdev.bookstore.mapper.BookFileMapper;
+import org.dmdev.bookstore.model.BookFileDownload;
+import org.dmdev.bookstore.model.BookFormat;
+import org.dmdev.bookstore.model.ResponseModel;
+import org.dmdev.bookstore.repository.BookFileRepository;
+import org.dmdev.bookstore.repository.BookRepository;
+import org.dmdev.bookstore.storage.BlobStore;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.multipart.FilePartEvent;
+import org.springframework.http.codec.multipart.PartEvent;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class BookFileService {
+
+    public static final String FILE_PART = "file";
+
+    private static final String GZIP = "gzip";
+
+    private static final Pattern UNSAFE_FILE_NAME_CHARS = Pattern.compile("[^\\p{L}\\p{N}._ -]");
+
+    private final BookFileRepository bookFileRepository;
+    private final BookRepository bookRepository;
+    private final BookFileMapper bookFileMapper;
+    private final BookCache bookCache;
+    private final BlobStore blobStore;
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * Resolves a book file for download. Empty if the record or the file on disk is missing, or if
+     * the stored path lies outside the files directory.
+     * With {@code acceptsGzip}, a stored gzip variant is chosen over the original when there is one;
+     * nothing is compressed here.
+     */
+    public Mono<BookFileDownload> findDownload(UUID bookFileId, boolean acceptsGzip) {
+        return bookFileRepository.findById(bookFileId)
+                .flatMap(file -> Mono.fromCallable(() -> {
+                            Path path = blobStore.resolveStored(file.getFilePath()).orElse(null);
+                            if (path == null) {
+                                log.warn("Book file {} points outside the files directory: {}", bookFileId, file.getFilePath());
+                                return null;
+                            }
+                            if (!Files.isRegularFile(path)) {
+                                log.warn("Book file {} is missing on disk at {}", bookFileId, path);
+                                return null;
+                            }
+                            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+                            String fileName = file.getFileName() != null ? file.getFileName() : path.getFileName().toString();
+                            MediaType mediaType = BookFormat.mediaTypeOf(file.getFormat());
+                            if (acceptsGzip && file.getSha256() != null) {
+                                Path gzip = blobStore.gzipPathOf(file.getSha256());
+                                if (Files.isRegularFile(gzip)) {
+                                    BasicFileAttributes gzipAttributes = Files.readAttributes(gzip, BasicFileAttributes.class);
+                                    return new BookFileDownload(gzip, fileName, mediaType, gzipAttributes.size(),
+                                            attributes.lastModifiedTime().toInstant(), file.getSha256(), GZIP,
+                                            attributes.size(), file.getFormat());
+                                }
+                            }
+                            return new BookFileDownload(path, fileName, mediaType, attributes.size(),
+                                    attributes.lastModifiedTime().toInstant(), file.getSha256(), null,
+                                    attributes.size(), file.getFormat());
+                        })
+                        .subscribeOn(Schedulers.boundedElastic()))
+                .doOnError(e -> log.error("Error resolving book file {}: {}", bookFileId, e.getMessage(), e));
+    }
+
+    /**
+     * Counts the bytes a precompressed variant saved, once it has been sent in full.
+     */
+    public void recordFullDownload(BookFileDownload download) {
+        if (download.contentEncoding() != null) {
+            meterRegistry.counter("bookstore.downloads.precompressed.saved.bytes", "format", download.format())
+                    .increment(download.savedBytes());
+        }
+    }
+
+    /**
+     * Stores the {@value #FILE_PART} part of a multipart upload as a file of the book. Bytes go
+     * straight from the request to disk, hashed and counted on the way, and the upload is cut off
+     * as soon as it passes the format's size limit. The finished file becomes a blob in the
+     * {@link BlobStore}, shared with any file of the same content, and the row is written only
+     * after that, so a row never points at a partial file.
+     */
+    public Mono<ResponseModel> upload(UUID bookId, String format, Flux<PartEvent> parts) {
+        BookFormat bookFormat = BookFormat.of(format).orElse(null);
+        if (bookFormat == null) {
+            return Mono.just(fail("Unsupported format: " + format));
+        }
+        return bookRepository.existsById(bookId)
+                .flatMap(exists -> !exists
+                        ? Mono.just(fail("Book not found"))
+                        : parts.windowUntil(PartEvent::isLast)
+                        .concatMap(part -> part.switchOnFirst((first, events) -> {
+                            if (first.get() instanceof FilePartEvent file && FILE_PART.equals(file.name())) {
+                                return store(bookId, bookFormat, file.filename(), events).flux();
+                            }
+                            return events.doOnNext(event -> DataBufferUtils.release(event.content()))
+                                    .thenMany(Flux.<BookFile>empty());
+                        }))
+                        .next()
+                        .map(saved -> {
+                            bookCache.invalidate(bookId);
+                            log.info("Stored {} bytes of {} for book {} as blob {}", saved.getSize(), bookFormat, bookId, saved.getSha256());
+                            return ResponseModel.builder()
+                                    .status(ResponseModel.SUCCESS_STATUS)
+                                    .message("File uploaded")
+                                    .data(bookFileMapper.toBookFileDTO(saved))
+                                    .build();
+                        })
+                        .defaultIfEmpty(fail("No '" + FILE_PART + "' part in the request")))
+                .onErrorResume(FileTooLargeException.class, e -> Mono.just(fail(e.getMessage())))
+                .onErrorResume(e -> {
+                    log.error("Failed to upload file for book {}: {}", bookId, e.getMessage(), e);
+                    return Mono.just(fail("Failed to upload file"));
+                });
+    }
+
+    private Mono<BookFile> store(UUID bookId, BookFormat format, String fileName, Flux<PartEvent> events) {
+        MessageDigest digest = sha256();
+        AtomicLong size = new AtomicLong();
+        long limit = format.maxSize().toBytes();
+        Flux<DataBuffer> content = events.map(PartEvent::content)
+                .handle((buffer, sink) -> {
+                    if (size.addAndGet(buffer.readableByteCount()) > limit) {
+                        DataBufferUtils.release(buffer);
+                        sink.error(new FileTooLargeException(format));
+                        return;
+                    }
+                    try (DataBuffer.ByteBufferIterator chunks = buffer.readableByteBuffers()) {
+                        chunks.forEachRemaining(digest::update);
+                    }
+                    sink.next(buffer);
+                });
+        return blobStore.newTempFile().flatMap(temp -> Mono.using(
+                        () -> AsynchronousFileChannel.open(temp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE),
+                        channel -> DataBufferUtils.write(content, channel)
+                                .doOnNext(DataBufferUtils::release)
+                                .then(Mono.fromCallable(() -> {
+                                    channel.force(true);
+                                    return channel;
+                                }).subscribeOn(Schedulers.boundedElastic())),
+                        channel -> close(channel, temp))
+                .then(Mono.defer(() -> {
+                    String sha256 = HexFormat.of().formatHex(digest.digest());
+                    return blobStore.commit(temp, sha256, size.get())
+                            .flatMap(blob -> {
+                                BookFile file = BookFile.builder()
+                                        .id(UUID.randomUUID())
+                                        .bookId(bookId)
+                                        .format(format.name().toLowerCase())
+                                        .filePath(blob.toString())
+                                        .sha256(sha256)
+                                        .size(size.get())
+                                        .fileName(safeFileName(fileName, format))
+                                        .build();
+                                return bookFileRepository.saveBookFiles(List.of(file)).thenReturn(file);
+                            });
+                }))
+                // The blob itself is left to the sweep: another row may reference it by now
+                .onErrorResume(e -> Mono.fromRunnable(() -> deleteQuietly(temp))
+                        .subscribeOn(Schedulers.boundedElastic())
+                        .then(Mono.error(e))));
+    }
+
+    /**
+     * Keeps only the last path segment of the client's name and characters safe on any file system.
+     */
+    private static String safeFileName(String fileName, BookFormat format) {
+        String name = fileName == null ? "" : Paths.get(fileName.replace('\\', '/')).getFileName().toString();
+        name = UNSAFE_FILE_NAME_CHARS.matcher(name).replaceAll("_").strip();
+        if (name.isEmpty() || name.startsWith(".")) {
+            return "book." + format.name().toLowerCase();
+        }
+        return name;
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static void close(AsynchronousFileChannel channel, Path path) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            log.warn("Failed to close upload file {}: {}", path, e.getMessage());
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Failed to delete {}: {}", path, e.getMessage());
+        }
+    }
+
+    private static ResponseModel fail(String message) {
+        return ResponseModel.builder()
+                .status(ResponseModel.FAIL_STATUS)
+                .message(message)
+                .build();
+    }
+
+    private static final class FileTooLargeException extends RuntimeException {
+        private FileTooLargeException(BookFormat format) {
+            super("File exceeds the " + format.maxSize().toMegabytes() + " MB limit for " + format);
+        }
+    }
+}
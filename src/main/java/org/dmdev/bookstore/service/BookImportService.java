@@ -0,0 +1,394 @@
+package org.dmdev.bookstore.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.dmdev.bookstore.domain.Author;
+import org.dmdev.bookstore.domain.Book;
+import org.dmdev.bookstore.domain.BookFile;
+import org.dmdev.bookstore.domain.BookGenre;
+import org.dmdev.bookstore.domain.Genre;
+import org.dmdev.bookstore.dto.BookImportRowDTO;
+import org.dmdev.bookstore.dto.ImportErrorDTO;
+import org.dmdev.bookstore.dto.ImportProgressDTO;
+import org.dmdev.bookstore.index.GenreIndex;
+import org.dmdev.bookstore.index.TypeaheadIndex;
+import org.dmdev.bookstore.repository.AuthorRepository;
+import org.dmdev.bookstore.repository.BookFileRepository;
+import org.dmdev.bookstore.repository.BookRepository;
+import org.dmdev.bookstore.repository.GenreRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * Bulk catalog import from a streamed CSV or NDJSON feed. Rows are read in chunks, authors and
+ * genres of a chunk are resolved with one query each, and every chunk is written in its own
+ * transaction with multi-row INSERTs. A chunk that fails to commit is retried row by row, so
+ * bad rows are reported without stopping the run.
+ */
+@Slf4j
+@Service
+public class BookImportService {
+
+    public enum Format {
+        NDJSON, CSV;
+
+        public static Format of(MediaType contentType) {
+            if (contentType != null && contentType.isCompatibleWith(TEXT_CSV)) {
+                return CSV;
+            }
+            return NDJSON;
+        }
+    }
+
+    public static final MediaType TEXT_CSV = MediaType.parseMediaType("text/csv");
+
+    private static final String LIST_SEPARATOR = "\\|";
+
+    private final BookRepository bookRepository;
+    private final AuthorRepository authorRepository;
+    private final GenreRepository genreRepository;
+    private final BookFileRepository bookFileRepository;
+    private final TypeaheadIndex typeaheadIndex;
+    private final GenreIndex genreIndex;
+    private final TransactionalOperator transactionalOperator;
+    private final ObjectMapper objectMapper;
+    private final Counter importedRows;
+    private final Counter failedRows;
+
+    @Value("${bookstore.import.chunk-size:1000}")
+    private int chunkSize;
+
+    public BookImportService(BookRepository bookRepository,
+                             AuthorRepository authorRepository,
+                             GenreRepository genreRepository,
+                             BookFileRepository bookFileRepository,
+                             TypeaheadIndex typeaheadIndex,
+                             GenreIndex genreIndex,
+                             TransactionalOperator transactionalOperator,
+                             ObjectMapper objectMapper,
+                             MeterRegistry meterRegistry) {
+        this.bookRepository = bookRepository;
+        this.authorRepository = authorRepository;
+        this.genreRepository = genreRepository;
+        this.bookFileRepository = bookFileRepository;
+        this.typeaheadIndex = typeaheadIndex;
+        this.genreIndex = genreIndex;
+        this.transactionalOperator = transactionalOperator;
+        this.objectMapper = objectMapper;
+        this.importedRows = meterRegistry.counter("bookstore.import.rows", "outcome", "imported");
+        this.failedRows = meterRegistry.counter("bookstore.import.rows", "outcome", "failed");
+    }
+
+    public Flux<ImportProgressDTO> importBooks(Flux<String> lines, Format format) {
+        return Flux.defer(() -> {
+            Progress progress = new Progress(System.nanoTime());
+            log.info("Starting {} book import", format);
+            return parse(lines, format)
+                    .buffer(Math.max(1, chunkSize))
+                    // No prefetch: the next chunk is parsed only once the previous one has committed
+                    .concatMap(this::importChunk, 0)
+                    .map(progress::add)
+                    .concatWith(Mono.fromSupplier(progress::finish))
+                    .doOnComplete(() -> log.info("Book import finished: {} imported, {} failed",
+                            progress.imported, progress.failed))
+                    .doOnCancel(() -> log.warn("Book import cancelled after {} rows", progress.processed));
+        });
+    }
+
+    private Flux<ParsedRow> parse(Flux<String> lines, Format format) {
+        Flux<Tuple2<Long, String>> numbered = lines.index()
+                .filter(line -> !line.getT2().isBlank());
+        if (format == Format.NDJSON) {
+            return numbered.map(line -> parseJson(line.getT1() + 1, line.getT2()));
+        }
+        return numbered.switchOnFirst((first, rows) -> {
+            if (!first.hasValue()) {
+                return rows.map(line -> ParsedRow.failed(line.getT1() + 1, "Missing CSV header"));
+            }
+            List<String> header = parseCsvLine(first.get().getT2()).stream()
+                    .map(String::trim)
+                    .toList();
+            return rows.skip(1).map(line -> parseCsv(line.getT1() + 1, header, line.getT2()));
+        });
+    }
+
+    private ParsedRow parseJson(long line, String json) {
+        try {
+            return validate(line, objectMapper.readValue(json, BookImportRowDTO.class));
+        } catch (Exception e) {
+            return ParsedRow.failed(line, "Malformed JSON: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Columns: isbn, title, pages, publishedDate, authorId, genres (names separated by '|'),
+     * files ('FORMAT:path' pairs separated by '|'). Quoted fields may not span lines.
+     */
+    private ParsedRow parseCsv(long line, List<String> header, String csv) {
+        try {
+            List<String> values = parseCsvLine(csv);
+            Map<String, String> fields = new HashMap<>();
+            for (int i = 0; i < header.size() && i < values.size(); i++) {
+                fields.put(header.get(i), values.get(i).isBlank() ? null : values.get(i).trim());
+            }
+            return validate(line, BookImportRowDTO.builder()
+                    .isbn(fields.get("isbn"))
+                    .title(fields.get("title"))
+                    .pages(fields.get("pages") == null ? 0 : Integer.parseInt(fields.get("pages")))
+                    .publishedDate(fields.get("publishedDate") == null ? null : LocalDate.parse(fields.get("publishedDate")))
+                    .authorId(fields.get("authorId") == null ? null : UUID.fromString(fields.get("authorId")))
+                    .genres(splitList(fields.get("genres")))
+                    .files(splitList(fields.get("files")).stream()
+                            .map(BookImportService::parseFile)
+                            .toList())
+                    .build());
+        } catch (RuntimeException e) {
+            return ParsedRow.failed(line, "Malformed CSV row: " + e.getMessage());
+        }
+    }
+
+    private static List<String> splitList(String value) {
+        if (value == null) {
+            return List.of();
+        }
+        return Arrays.stream(value.split(LIST_SEPARATOR))
+                .map(String::trim)
+                .filter(item -> !item.isEmpty())
+                .toList();
+    }
+
+    private static BookImportRowDTO.File parseFile(String value) {
+        int separator = value.indexOf(':');
+        if (separator <= 0) {
+            throw new IllegalArgumentException("File must be FORMAT:path, got '" + value + "'");
+        }
+        return BookImportRowDTO.File.builder()
+                .format(value.substring(0, separator))
+                .filepath(value.substring(separator + 1))
+                .build();
+    }
+
+    static List<String> parseCsvLine(String line) {
+        List<String> values = new ArrayList<>();
+        StringBuilder value = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    value.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    value.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                values.add(value.toString());
+                value.setLength(0);
+            } else {
+                value.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("Unterminated quoted field");
+        }
+        values.add(value.toString());
+        return values;
+    }
+
+    private static ParsedRow validate(long line, BookImportRowDTO row) {
+        if (row.title() == null || row.title().isBlank()) {
+            return ParsedRow.failed(line, "Title is required");
+        }
+        if (row.authorId() == null) {
+            return ParsedRow.failed(line, "Author id is required");
+        }
+        if (row.pages() < 0) {
+            return ParsedRow.failed(line, "Pages must not be negative");
+        }
+        return new ParsedRow(line, row, null);
+    }
+
+    private Mono<ChunkResult> importChunk(List<ParsedRow> rows) {
+        List<ImportErrorDTO> errors = new ArrayList<>();
+        List<ParsedRow> valid = new ArrayList<>();
+        rows.forEach(row -> {
+            if (row.error() != null) {
+                errors.add(new ImportErrorDTO(row.line(), row.error()));
+            } else {
+                valid.add(row);
+            }
+        });
+        if (valid.isEmpty()) {
+            return Mono.just(new ChunkResult(rows.size(), 0, errors));
+        }
+        Set<UUID> authorIds = valid.stream()
+                .map(row -> row.row().authorId())
+                .collect(Collectors.toSet());
+        Set<String> genreNames = valid.stream()
+                .flatMap(row -> Objects.requireNonNullElse(row.row().genres(), List.<String>of()).stream())
+                .collect(Collectors.toSet());
+        Mono<Set<UUID>> knownAuthors = authorRepository.findAllById(authorIds)
+                .map(Author::getId)
+                .collect(Collectors.toSet());
+        Mono<Map<String, UUID>> knownGenres = genreNames.isEmpty()
+                ? Mono.just(Map.of())
+                : genreRepository.findAllByNameIn(genreNames).collectMap(Genre::getName, Genre::getId);
+        return Mono.zip(knownAuthors, knownGenres)
+                .flatMap(known -> {
+                    List<PreparedBook> prepared = new ArrayList<>();
+                    for (ParsedRow row : valid) {
+                        String error = resolve(row.row(), known.getT1(), known.getT2());
+                        if (error != null) {
+                            errors.add(new ImportErrorDTO(row.line(), error));
+                        } else {
+                            prepared.add(prepare(row, known.getT2()));
+                        }
+                    }
+                    return write(prepared, errors);
+                })
+                .map(imported -> new ChunkResult(rows.size(), imported, errors));
+    }
+
+    private static String resolve(BookImportRowDTO row, Set<UUID> authors, Map<String, UUID> genres) {
+        if (!authors.contains(row.authorId())) {
+            return "Author not found: " + row.authorId();
+        }
+        for (String genre : Objects.requireNonNullElse(row.genres(), List.<String>of())) {
+            if (!genres.containsKey(genre)) {
+                return "Unknown genre: " + genre;
+            }
+        }
+        return null;
+    }
+
+    private static PreparedBook prepare(ParsedRow parsed, Map<String, UUID> genres) {
+        BookImportRowDTO row = parsed.row();
+        UUID bookId = UUID.randomUUID();
+        Book book = Book.builder()
+                .id(bookId)
+                .ISBN(row.isbn())
+                .title(row.title())
+                .pages(row.pages())
+                .publicationDate(row.publishedDate())
+                .authorId(row.authorId())
+                .build();
+        List<BookGenre> links = Objects.requireNonNullElse(row.genres(), List.<String>of()).stream()
+                .map(genres::get)
+                .distinct()
+                .map(genreId -> new BookGenre(bookId, genreId))
+                .toList();
+        List<BookFile> files = Objects.requireNonNullElse(row.files(), List.<BookImportRowDTO.File>of()).stream()
+                .map(file -> BookFile.builder()
+                        .id(UUID.randomUUID())
+                        .bookId(bookId)
+                        .format(file.format())
+                        .filePath(file.filepath())
+                        .build())
+                .toList();
+        return new PreparedBook(parsed.line(), book, links, files);
+    }
+
+    private Mono<Integer> write(List<PreparedBook> prepared, List<ImportErrorDTO> errors) {
+        if (prepared.isEmpty()) {
+            return Mono.just(0);
+        }
+        return insert(prepared)
+                .thenReturn(prepared.size())
+                .onErrorResume(e -> {
+                    log.warn("Import chunk of {} rows failed ({}), retrying row by row", prepared.size(), e.getMessage());
+                    return Flux.fromIterable(prepared)
+                            .concatMap(book -> insert(List.of(book))
+                                    .thenReturn(1)
+                                    .onErrorResume(rowError -> {
+                                        errors.add(new ImportErrorDTO(book.line(), rowError.getMessage()));
+                                        return Mono.just(0);
+                                    }))
+                            .reduce(0, Integer::sum);
+                });
+    }
+
+    private Mono<Void> insert(List<PreparedBook> prepared) {
+        List<Book> books = prepared.stream().map(PreparedBook::book).toList();
+        List<BookGenre> links = prepared.stream().flatMap(book -> book.links().stream()).toList();
+        List<BookFile> files = prepared.stream().flatMap(book -> book.files().stream()).toList();
+        return bookRepository.insertAll(books)
+                .then(genreRepository.insertBookGenres(links))
+                .then(bookFileRepository.saveBookFiles(files))
+                .as(transactionalOperator::transactional)
+                .doOnSuccess(v -> {
+                    books.forEach(typeaheadIndex::putBook);
+                    genreIndex.addAll(links);
+                });
+    }
+
+    private record ParsedRow(long line, BookImportRowDTO row, String error) {
+        static ParsedRow failed(long line, String error) {
+            return new ParsedRow(line, null, error);
+        }
+    }
+
+    private record PreparedBook(long line, Book book, List<BookGenre> links, List<BookFile> files) {
+    }
+
+    private record ChunkResult(int processed, int imported, List<ImportErrorDTO> errors) {
+    }
+
+    private final class Progress {
+        private final long startNanos;
+        private long processed;
+        private long imported;
+        private long failed;
+
+        private Progress(long startNanos) {
+            this.startNanos = startNanos;
+        }
+
+        private ImportProgressDTO add(ChunkResult chunk) {
+            processed += chunk.processed();
+            imported += chunk.imported();
+            failed += chunk.errors().size();
+            importedRows.increment(chunk.imported());
+            failedRows.increment(chunk.errors().size());
+            log.info("Book import progress: {} processed, {} imported, {} failed", processed, imported, failed);
+            return snapshot(chunk.errors(), false);
+        }
+
+        private ImportProgressDTO finish() {
+            return snapshot(List.of(), true);
+        }
+
+        private ImportProgressDTO snapshot(List<ImportErrorDTO> errors, boolean done) {
+            double seconds = Math.max(1e-9, (System.nanoTime() - startNanos) / 1_000_000_000.0);
+            return ImportProgressDTO.builder()
+                    .processed(processed)
+                    .imported(imported)
+                    .failed(failed)
+                    .rowsPerSecond(processed / seconds)
+                    .errors(errors)
+                    .done(done)
+                    .build();
+        }
+    }
+}
@@ -2,26 +2,32 @@ package org.dmdev.bookstore.service;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.dmdev.bookstore.batch.BookWriteCoalescer;
+import org.dmdev.bookstore.cache.BookCache;
 import org.dmdev.bookstore.domain.BookFile;
 import org.dmdev.bookstore.dto.BookDTO;
 import org.dmdev.bookstore.domain.Book;
 import org.dmdev.bookstore.dto.BookFileDTO;
+import org.dmdev.bookstore.dto.BookPageDTO;
 import org.dmdev.bookstore.dto.GenreDTO;
+import org.dmdev.bookstore.index.GenreIndex;
+import org.dmdev.bookstore.index.TypeaheadIndex;
 import org.dmdev.bookstore.mapper.BookFileMapper;
 import org.dmdev.bookstore.mapper.BookMapper;
+import org.dmdev.bookstore.model.BookCursor;
+import org.dmdev.bookstore.model.BookSearchCursor;
 import org.dmdev.bookstore.model.ResponseModel;
 import org.dmdev.bookstore.repository.AuthorRepository;
 import org.dmdev.bookstore.repository.BookFileRepository;
 import org.dmdev.bookstore.repository.BookRepository;
 import org.dmdev.bookstore.repository.GenreRepository;
-import org.springframework.core.io.FileSystemResource;
-import org.springframework.core.io.Resource;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
-import java.nio.file.Paths;
+import java.time.Instant;
 import java.util.List;
+import java.util.Objects;
 import java.util.UUID;
 
 @Slf4j
@@ -35,8 +41,15 @@ public class BookService {
     private final BookFileRepository bookFileRepository;
     private final BookMapper mapper;
     private final BookFileMapper bookFileMapper;
+    private final TypeaheadIndex typeaheadIndex;
+    private final GenreIndex genreIndex;
+    private final BookCache bookCache;
+    private final BookWriteCoalescer writeCoalescer;
 
-
+    private static final int MAX_PAGE_SIZE = 100;
+    public static final int MAX_OFFSET = 10_000;
+    private static final UUID MIN_UUID = new UUID(0L, 0L);
+    private static final int STREAM_PREFETCH = 256;
 
     public Mono<ResponseModel> save(BookDTO bookDTO) {
         if (bookDTO.id() != null) {
@@ -47,34 +60,37 @@ public class BookService {
                     .build());
         }
         log.info("Attempting to save book: {}", bookDTO.title());
-        return authorRepository.findById(bookDTO.authorId())
+        Book book = mapper.dtoToBook(bookDTO);
+        book.setId(UUID.randomUUID());
+        List<UUID> genreIds = Objects.requireNonNullElse(bookDTO.genres(), List.<GenreDTO>of()).stream()
+                .map(GenreDTO::id)
+                .distinct()
+                .toList();
+        List<BookFile> files = Objects.requireNonNullElse(bookDTO.bookFiles(), List.<BookFileDTO>of()).stream()
+                .map(dto -> {
+                    BookFile file = bookFileMapper.toBookFile(dto);
+                    file.setId(UUID.randomUUID());
+                    file.setBookId(book.getId());
+                    return file;
+                })
+                .toList();
+        return writeCoalescer.create(book, genreIds, files)
+                .doOnNext(created -> log.info("Book '{}' saved with ID {}, genres {}, files {}",
+                        created.getTitle(), created.getId(), genreIds, created.getFiles().size()))
+                .doOnNext(typeaheadIndex::putBook)
+                .doOnNext(created -> genreIndex.addBookGenres(created.getId(), genreIds))
+                .map(created -> ResponseModel.builder()
+                        .status(ResponseModel.SUCCESS_STATUS)
+                        .message("Book '%s' created".formatted(bookDTO.title()))
+                        .data(mapper.bookDtoToSend(created, created.getGenres(), created.getFiles()))
+                        .build())
                 .switchIfEmpty(Mono.defer(() -> {
                     log.warn("Author with ID {} not found", bookDTO.authorId());
-                    return Mono.error(new IllegalArgumentException("Author not found"));
+                    return Mono.just(ResponseModel.builder()
+                            .status(ResponseModel.FAIL_STATUS)
+                            .message("Failed to save book: author not found")
+                            .build());
                 }))
-                .flatMap(author ->
-                        bookRepository.save(mapper.dtoToBook(bookDTO))
-                                .doOnNext(saved -> log.info("Book '{}' saved with ID {}", saved.getTitle(), saved.getId()))
-                                .flatMap(savedBook -> {
-                                    List<UUID> genreIds = bookDTO.genres().stream()
-                                            .map(GenreDTO::id)
-                                            .toList();
-                                    return genreRepository.saveBookGenres(savedBook.getId(), genreIds)
-                                            .doOnSuccess(v -> log.info("Genres {} linked to book ID {}", genreIds, savedBook.getId()))
-                                            .then(Mono.defer(() -> bookFileRepository.saveBookFiles(bookDTO.bookFiles()
-                                                            .stream()
-                                                            .map(dtos -> {
-                                                                BookFile file = bookFileMapper.toBookFile(dtos);
-                                                                file.setBookId(savedBook.getId());
-                                                                return file;
-                                                            })
-                                                            .toList())
-                                                    .doOnSuccess(v -> log.info("BookFiles linked to book ID {}", savedBook.getId()))
-                                                    .thenReturn(ResponseModel.builder()
-                                                            .status(ResponseModel.SUCCESS_STATUS)
-                                                            .message("Book '%s' created".formatted(bookDTO.title()))
-                                                            .build())));
-                                }))
                 .onErrorResume(ex -> {
                     log.error("Failed to save book '{}': {}", bookDTO.title(), ex.getMessage(), ex);
                     return Mono.just(ResponseModel.builder()
@@ -113,6 +129,11 @@ public class BookService {
         return bookRepository.findById(id)
                 .flatMap(book -> bookRepository.delete(book)
                         .doOnSuccess(v -> log.info("Book with ID {} deleted successfully", id))
+                        .doOnSuccess(v -> {
+                            typeaheadIndex.remove(id);
+                            genreIndex.removeBook(id);
+                            bookCache.invalidate(id);
+                        })
                         .thenReturn(ResponseModel.builder()
                                 .status(ResponseModel.SUCCESS_STATUS)
                                 .message("Book deleted successfully")
@@ -134,10 +155,24 @@ public class BookService {
                 });
     }
 
-    public Mono<ResponseModel> findAll(int limit, int size) {
-        int offset = size * (limit - 1);
-        log.info("Fetching books page {}, size {}, offset {}", limit, size, offset);
-        return bookRepository.findAll(size, offset)  // assuming findAll(limit, offset) params order is (limit, offset)
+    public Mono<ResponseModel> findAll(int page, int size) {
+        if (page < 1) {
+            return Mono.just(ResponseModel.builder()
+                    .status(ResponseModel.FAIL_STATUS)
+                    .message("Page must be 1 or greater")
+                    .build());
+        }
+        int pageSize = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+        long offset = (long) pageSize * (page - 1);
+        if (offset > MAX_OFFSET) {
+            log.warn("Rejected books page {}, size {}: offset {} exceeds {}", page, pageSize, offset, MAX_OFFSET);
+            return Mono.just(ResponseModel.builder()
+                    .status(ResponseModel.FAIL_STATUS)
+                    .message("Page is too deep, use cursor pagination")
+                    .build());
+        }
+        log.info("Fetching books page {}, size {}, offset {}", page, pageSize, offset);
+        return bookRepository.findAll(pageSize, (int) offset)
                 .map(mapper::bookToDto)
                 .collectList()
                 .map(bookList -> ResponseModel.builder()
@@ -152,6 +187,93 @@ public class BookService {
                         .build()));
     }
 
+    public Mono<ResponseModel> findAllByCursor(String cursor, int size) {
+        int pageSize = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+        BookCursor after;
+        try {
+            after = cursor == null || cursor.isBlank() ? null : BookCursor.decode(cursor);
+        } catch (IllegalArgumentException ex) {
+            log.warn("Invalid books cursor: {}", cursor);
+            return Mono.just(ResponseModel.builder()
+                    .status(ResponseModel.FAIL_STATUS)
+                    .message("Invalid cursor")
+                    .build());
+        }
+        log.info("Fetching books after cursor {}, size {}", after, pageSize);
+        return findPageAfter(after, pageSize)
+                .collectList()
+                .map(books -> ResponseModel.builder()
+                        .status(ResponseModel.SUCCESS_STATUS)
+                        .message("Books retrieved successfully")
+                        .data(BookPageDTO.builder()
+                                .books(books.stream().map(mapper::bookToDto).toList())
+                                .next(books.size() < pageSize ? null
+                                        : BookCursor.of(books.get(books.size() - 1)).encode())
+                                .build())
+                        .build())
+                .doOnError(ex -> log.error("Error retrieving books after cursor {}: {}", cursor, ex.getMessage()))
+                .onErrorResume(ex -> Mono.just(ResponseModel.builder()
+                        .status(ResponseModel.FAIL_STATUS)
+                        .message("Error retrieving books")
+                        .build()));
+    }
+
+    private Flux<Book> findPageAfter(BookCursor after, int size) {
+        if (after == null) {
+            return bookRepository.findFirstPage(size);
+        }
+        if (after.publicationDate() == null) {
+            return bookRepository.findUndatedPageAfter(after.id(), size);
+        }
+        // Undated books sort last, so a short dated page continues with them
+        return bookRepository.findPageAfter(after.publicationDate(), after.id(), size)
+                .collectList()
+                .flatMapMany(books -> books.size() < size
+                        ? Flux.fromIterable(books)
+                                .concatWith(bookRepository.findUndatedPageAfter(MIN_UUID, size - books.size()))
+                        : Flux.fromIterable(books));
+    }
+
+    public Mono<ResponseModel> search(String query, String cursor, int size) {
+        if (query == null || query.isBlank()) {
+            log.warn("search called with empty query");
+            return Mono.just(ResponseModel.builder()
+                    .status(ResponseModel.FAIL_STATUS)
+                    .message("Search query must not be empty")
+                    .build());
+        }
+        int pageSize = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+        BookSearchCursor after;
+        try {
+            after = cursor == null || cursor.isBlank() ? null : BookSearchCursor.decode(cursor);
+        } catch (IllegalArgumentException ex) {
+            log.warn("Invalid search cursor: {}", cursor);
+            return Mono.just(ResponseModel.builder()
+                    .status(ResponseModel.FAIL_STATUS)
+                    .message("Invalid cursor")
+                    .build());
+        }
+        log.info("Searching books for '{}' after {}, size {}", query, after, pageSize);
+        return bookRepository.search(query, after, pageSize)
+                .collectList()
+                .map(hits -> ResponseModel.builder()
+                        .status(ResponseModel.SUCCESS_STATUS)
+                        .message("Books found")
+                        .data(BookPageDTO.builder()
+                                .books(hits.stream().map(hit -> mapper.bookToDto(hit.book())).toList())
+                                .next(hits.size() < pageSize ? null
+                                        : BookSearchCursor.of(hits.get(hits.size() - 1)).encode())
+                                .build())
+                        .build())
+                .onErrorResume(ex -> {
+                    log.error("Error searching books for '{}': {}", query, ex.getMessage(), ex);
+                    return Mono.just(ResponseModel.builder()
+                            .status(ResponseModel.FAIL_STATUS)
+                            .message("Error searching books")
+                            .build());
+                });
+    }
+
     public Mono<ResponseModel> findAllByAuthor(UUID authorId) {
         log.info("Finding books for author with id: {}", authorId);
         return authorRepository.findById(authorId)
@@ -213,22 +335,69 @@ public class BookService {
                 });
     }
 
+    public Flux<BookDTO> streamAll() {
+        log.info("Streaming all books");
+        return bookRepository.findAllByOrderByPublicationDateAscIdAsc()
+                .limitRate(STREAM_PREFETCH)
+                .map(mapper::bookToDto)
+                .doOnError(ex -> log.error("Error streaming books: {}", ex.getMessage()));
+    }
+
+    public Flux<BookDTO> streamAllByAuthor(UUID authorId) {
+        log.info("Streaming books for author with id: {}", authorId);
+        return bookRepository.findAllByAuthorId(authorId)
+                .limitRate(STREAM_PREFETCH)
+                .map(mapper::bookToDto)
+                .doOnError(ex -> log.error("Error streaming books by author {}: {}", authorId, ex.getMessage()));
+    }
+
+    public Flux<BookDTO> streamBooksByGenres(List<UUID> genreIds) {
+        if (genreIds == null || genreIds.isEmpty()) {
+            log.warn("streamBooksByGenres called with empty or null genreIds");
+            return Flux.empty();
+        }
+        log.info("Streaming books for genres: {}", genreIds);
+        return bookRepository.findBooksByGenres(genreIds, genreIds.size())
+                .limitRate(STREAM_PREFETCH)
+                .map(mapper::bookToDto)
+                .doOnError(ex -> log.error("Error streaming books by genres {}: {}", genreIds, ex.getMessage()));
+    }
+
+    /**
+     * Version-only probe used for conditional GETs; empty when the book does not exist
+     * or the lookup fails, in which case the caller falls back to a full read.
+     */
+    public Mono<Instant> findLastModified(UUID id) {
+        return bookRepository.findUpdatedAtById(id)
+                .onErrorResume(e -> {
+                    log.warn("Error reading last-modified of book {}: {}", id, e.getMessage());
+                    return Mono.empty();
+                });
+    }
+
     public Mono<ResponseModel> findById(UUID id) {
+        return findById(id, null);
+    }
+
+    /**
+     * As {@link #findById(UUID)}, reloading a cached book that does not match {@code updatedAt},
+     * the version the caller has just read; a write may have committed before its invalidation.
+     */
+    public Mono<ResponseModel> findById(UUID id, Instant updatedAt) {
         log.info("Finding book by id: {}", id);
-        return bookRepository.findById(id)
-                .flatMap(book -> {
-                    log.info("Book found with id: {}", id);
-                    return Mono.zip(genreRepository.findGenresByBookId(id).collectList(),
-                                    bookFileRepository.findByBookId(id).collectList())
-                            .map(tuple -> {
-                                log.info("Genres: {}, Files: {}", tuple.getT1().size(), tuple.getT2().size());
-                                return ResponseModel.builder()
-                                        .status(ResponseModel.SUCCESS_STATUS)
-                                        .message("Book with genres and files retrieved successfully")
-                                        .data(mapper.bookDtoToSend(book, tuple.getT1(), tuple.getT2()))
-                                        .build();
-                            });
-                })
+        return bookCache.get(id, this::loadBook)
+                .flatMap(book -> updatedAt == null || updatedAt.equals(book.updatedAt())
+                        ? Mono.just(book)
+                        : Mono.defer(() -> {
+                            log.debug("Cached book {} is at {}, expected {}; reloading", id, book.updatedAt(), updatedAt);
+                            bookCache.invalidate(id);
+                            return bookCache.get(id, this::loadBook);
+                        }))
+                .map(book -> ResponseModel.builder()
+                        .status(ResponseModel.SUCCESS_STATUS)
+                        .message("Book with genres and files retrieved successfully")
+                        .data(book)
+                        .build())
                 .switchIfEmpty(Mono.defer(() -> {
                     log.warn("Book not found with id: {}", id);
                     return Mono.just(ResponseModel.builder()
@@ -245,18 +414,38 @@ public class BookService {
                 });
     }
 
-    public Mono<ResponseModel> download(UUID bookFileId) {
-        return bookFileRepository.findById(bookFileId)
-                .flatMap(file -> {
-                    Resource resource = new FileSystemResource(Paths.get(file.getFilePath()).toFile());
-                    return Mono.just(ResponseModel.builder()
-                            .status(ResponseModel.SUCCESS_STATUS)
-                            .message("Downloading file")
-                            .data(resource)
-                            .build());
-                })
+    private Mono<BookDTO> loadBook(UUID id) {
+        return bookRepository.findAggregateById(id)
+                .map(book -> {
+                    log.info("Book loaded with id: {}, genres: {}, files: {}",
+                            id, book.getGenres().size(), book.getFiles().size());
+                    return mapper.bookDtoToSend(book, book.getGenres(), book.getFiles());
+                });
+    }
+
+    public Mono<ResponseModel> findAllByIds(List<UUID> ids) {
+        List<UUID> distinctIds = ids.stream().distinct().toList();
+        if (distinctIds.isEmpty() || distinctIds.size() > MAX_PAGE_SIZE) {
+            log.warn("findAllByIds called with {} ids", distinctIds.size());
+            return Mono.just(ResponseModel.builder()
+                    .status(ResponseModel.FAIL_STATUS)
+                    .message("Between 1 and %d ids must be requested".formatted(MAX_PAGE_SIZE))
+                    .build());
+        }
+        log.info("Finding {} books by ids", distinctIds.size());
+        return bookRepository.findAggregatesByIds(distinctIds)
+                .collectMap(Book::getId)
+                .map(books -> ResponseModel.builder()
+                        .status(ResponseModel.SUCCESS_STATUS)
+                        .message("Books with genres and files retrieved successfully")
+                        .data(distinctIds.stream()
+                                .map(books::get)
+                                .filter(Objects::nonNull)
+                                .map(book -> mapper.bookDtoToSend(book, book.getGenres(), book.getFiles()))
+                                .toList())
+                        .build())
                 .onErrorResume(e -> {
-                    log.error("Error downloading bookFile with id {}: {}", bookFileId, e.getMessage(), e);
+                    log.error("Error retrieving books by ids {}: {}", distinctIds, e.getMessage(), e);
                     return Mono.just(ResponseModel.builder()
                             .status(ResponseModel.FAIL_STATUS)
                             .message("Error: " + e.getMessage())
@@ -273,30 +462,59 @@ public class BookService {
                     .message("Book ID must not be null")
                     .build());
         }
-        return bookRepository.findById(bookDTO.id())
-                .flatMap(book -> {
-                    log.info("Book found: {}", book.getId());
-                    return bookRepository.save(mapper.dtoToBook(bookDTO))
-                            .flatMap(savedBook -> {
-                                // Update genres
-                                List<UUID> genreIds = bookDTO.genres().stream()
-                                        .map(GenreDTO::id)
-                                        .toList();
-                                return genreRepository.saveBookGenres(savedBook.getId(), genreIds)
-                                        .thenReturn(ResponseModel.builder()
-                                                .status(ResponseModel.SUCCESS_STATUS)
-                                                .message("Book updated successfully")
-                                                .data(mapper.bookToDto(savedBook))
-                                                .build());
-                            });
+        if (bookDTO.version() == null) {
+            log.warn("Book version is null for ID: {}", bookDTO.id());
+            return Mono.just(ResponseModel.builder()
+                    .status(ResponseModel.FAIL_STATUS)
+                    .message("Book version must not be null")
+                    .build());
+        }
+        Book book = mapper.dtoToBook(bookDTO);
+        // A null list means the client did not send it, so those links stay as they are
+        List<UUID> genreIds = bookDTO.genres() == null ? null : bookDTO.genres().stream()
+                .map(GenreDTO::id)
+                .distinct()
+                .toList();
+        List<BookFile> files = bookDTO.bookFiles() == null ? null : bookDTO.bookFiles().stream()
+                .map(dto -> {
+                    BookFile file = bookFileMapper.toBookFile(dto);
+                    if (file.getId() == null) {
+                        file.setId(UUID.randomUUID());
+                    }
+                    file.setBookId(book.getId());
+                    return file;
                 })
-                .switchIfEmpty(Mono.defer(() -> {
-                    log.warn("Book not found with ID: {}", bookDTO.id());
-                    return Mono.just(ResponseModel.builder()
-                            .status(ResponseModel.FAIL_STATUS)
-                            .message("Book not found")
-                            .build());
-                }))
+                .toList();
+        return writeCoalescer.update(book, genreIds, files)
+                .doOnNext(updated -> {
+                    log.info("Book updated: {}", updated.getId());
+                    typeaheadIndex.putBook(updated);
+                    if (genreIds != null) {
+                        genreIndex.replaceBookGenres(updated.getId(), genreIds);
+                    }
+                    bookCache.invalidate(updated.getId());
+                })
+                .map(updated -> ResponseModel.builder()
+                        .status(ResponseModel.SUCCESS_STATUS)
+                        .message("Book updated successfully")
+                        .data(mapper.bookDtoToSend(updated, updated.getGenres(), updated.getFiles()))
+                        .build())
+                // Only a missed update pays for telling a stale version from a missing book
+                .switchIfEmpty(Mono.defer(() -> bookRepository.existsById(bookDTO.id())
+                        .map(exists -> {
+                            if (exists) {
+                                log.warn("Book {} was modified concurrently, version {} is stale", bookDTO.id(), bookDTO.version());
+                                return ResponseModel.builder()
+                                        .status(ResponseModel.CONFLICT_STATUS)
+                                        .message("Book was modified by another request, reload and retry")
+                                        .build();
+                            }
+                            log.warn("Book not found with ID: {}", bookDTO.id());
+                            return ResponseModel.builder()
+                                    .status(ResponseModel.FAIL_STATUS)
+                                    .message("Book not found")
+                                    .build();
+                        })))
                 .onErrorResume(e -> {
                     log.error("Error updating book: {}", e.getMessage(), e);
                     return Mono.just(ResponseModel.builder()
@@ -0,0 +1,336 @@
+package org.dmdev.bookstore.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.dmdev.bookstore.dto.ExportJobDTO;
+import org.dmdev.bookstore.model.ResponseModel;
+import org.dmdev.bookstore.repository.BookRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Full-catalog export to gzipped NDJSON. Rows stream from a server-side cursor, are compressed a
+ * chunk at a time and appended through an {@link AsynchronousFileChannel}, so heap use depends on
+ * the chunk size, not the catalog. Each chunk ends with a sync flush, which keeps the partial file
+ * a valid gzip prefix and lets it be downloaded while the export is still running.
+ */
+@Slf4j
+@Service
+public class CatalogExportService {
+
+    public static final String RUNNING = "running";
+    public static final String COMPLETED = "completed";
+    public static final String FAILED = "failed";
+
+    private static final Pattern FILE_NAME = Pattern.compile("catalog-\\d{8}T\\d{6}Z\\.ndjson\\.gz");
+    private static final DateTimeFormatter FILE_TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'")
+            .withZone(ZoneOffset.UTC);
+    private static final int ROWS_PER_CHUNK = 500;
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+    private static final Duration TAIL_INTERVAL = Duration.ofMillis(500);
+
+    private final BookRepository bookRepository;
+    private final Path directory;
+    private final int fetchSize;
+    private final int keep;
+    private final DataBufferFactory bufferFactory = DefaultDataBufferFactory.sharedInstance;
+    private final Map<String, ExportJob> jobs = new ConcurrentHashMap<>();
+    private final AtomicReference<ExportJob> running = new AtomicReference<>();
+
+    public CatalogExportService(BookRepository bookRepository,
+                                @Value("${bookstore.export.directory:exports}") String directory,
+                                @Value("${bookstore.export.fetch-size:1000}") int fetchSize,
+                                @Value("${bookstore.export.keep:7}") int keep) {
+        this.bookRepository = bookRepository;
+        this.directory = Paths.get(directory).toAbsolutePath();
+        this.fetchSize = fetchSize;
+        this.keep = keep;
+    }
+
+    @Scheduled(cron = "${bookstore.export.cron:0 0 2 * * *}")
+    public void scheduledExport() {
+        start().subscribe(response -> log.info("Scheduled catalog export: {}", response.getMessage()));
+    }
+
+    /**
+     * Starts an export in the background and returns its job, or the job already running.
+     */
+    public Mono<ResponseModel> start() {
+        ExportJob job = new ExportJob(FILE_TIMESTAMP.format(Instant.now()));
+        if (!running.compareAndSet(null, job)) {
+            return Mono.just(ResponseModel.builder()
+                    .status(ResponseModel.FAIL_STATUS)
+                    .message("An export is already running")
+                    .data(running.get().toDto())
+                    .build());
+        }
+        jobs.put(job.fileName, job);
+        log.info("Starting catalog export to {}", directory.resolve(job.fileName));
+        export(job)
+                .doFinally(signal -> running.set(null))
+                .subscribe(ignored -> {
+                }, e -> log.error("Catalog export {} failed: {}", job.fileName, e.getMessage(), e));
+        return Mono.just(ResponseModel.builder()
+                .status(ResponseModel.SUCCESS_STATUS)
+                .message("Export started")
+                .data(job.toDto())
+                .build());
+    }
+
+    /**
+     * Exports on disk, newest first, with the state of those started since this instance came up.
+     */
+    public Mono<ResponseModel> list() {
+        return Mono.fromCallable(() -> {
+                    if (!Files.isDirectory(directory)) {
+                        return List.<ExportJobDTO>of();
+                    }
+                    try (Stream<Path> files = Files.list(directory)) {
+                        return files.filter(CatalogExportService::isExportFile)
+                                .sorted(Comparator.comparing(Path::getFileName).reversed())
+                                .map(this::describe)
+                                .toList();
+                    }
+                })
+                .subscribeOn(Schedulers.boundedElastic())
+                .map(exports -> ResponseModel.builder()
+                        .status(ResponseModel.SUCCESS_STATUS)
+                        .message("Exports listed")
+                        .data(exports)
+                        .build())
+                .onErrorResume(e -> {
+                    log.error("Failed to list exports: {}", e.getMessage(), e);
+                    return Mono.just(ResponseModel.builder()
+                            .status(ResponseModel.FAIL_STATUS)
+                            .message("Failed to list exports")
+                            .build());
+                });
+    }
+
+    /**
+     * The export file, if it exists. Empty for unknown or malformed names.
+     */
+    public Optional<Path> find(String fileName) {
+        if (!FILE_NAME.matcher(fileName).matches()) {
+            return Optional.empty();
+        }
+        Path file = directory.resolve(fileName);
+        return Files.isRegularFile(file) ? Optional.of(file) : Optional.empty();
+    }
+
+    public boolean isRunning(String fileName) {
+        ExportJob job = running.get();
+        return job != null && job.fileName.equals(fileName);
+    }
+
+    /**
+     * The file's bytes, following it until its export finishes if it is still being written.
+     */
+    public Flux<DataBuffer> tail(Path file) {
+        ExportJob job = jobs.get(file.getFileName().toString());
+        AtomicLong position = new AtomicLong();
+        AtomicBoolean finished = new AtomicBoolean();
+        return Flux.defer(() -> {
+                    // Checked before reading, so the pass after the export finishes reads the last bytes
+                    finished.set(job == null || job.finishedAt != null);
+                    return DataBufferUtils.readAsynchronousFileChannel(
+                                    () -> AsynchronousFileChannel.open(file, StandardOpenOption.READ),
+                                    position.get(), bufferFactory, READ_BUFFER_SIZE)
+                            .doOnNext(buffer -> position.addAndGet(buffer.readableByteCount()));
+                })
+                .repeatWhen(passes -> passes
+                        .takeWhile(pass -> !finished.get())
+                        .delayElements(TAIL_INTERVAL));
+    }
+
+    private Mono<Void> export(ExportJob job) {
+        Path file = directory.resolve(job.fileName);
+        Flux<DataBuffer> compressed = Flux.using(GzipChunks::new,
+                        chunks -> bookRepository.streamCatalogJson(fetchSize)
+                                .buffer(ROWS_PER_CHUNK)
+                                // Deflate is CPU work; keep it off the R2DBC event loop
+                                .publishOn(Schedulers.boundedElastic())
+                                .map(lines -> {
+                                    job.rows.addAndGet(lines.size());
+                                    return chunks.compress(lines);
+                                })
+                                .concatWith(Mono.fromCallable(chunks::finish)),
+                        GzipChunks::close)
+                .map(bufferFactory::wrap);
+        return Mono.fromCallable(() -> Files.createDirectories(directory))
+                .subscribeOn(Schedulers.boundedElastic())
+                .then(Mono.using(
+                        () -> AsynchronousFileChannel.open(file, StandardOpenOption.CREATE,
+                                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING),
+                        channel -> DataBufferUtils.write(compressed, channel)
+                                .doOnNext(buffer -> job.bytes.addAndGet(buffer.readableByteCount()))
+                                .doOnNext(DataBufferUtils::release)
+                                .then(Mono.fromCallable(() -> {
+                                    channel.force(true);
+                                    return channel;
+                                }).subscribeOn(Schedulers.boundedElastic())),
+                        channel -> {
+                            try {
+                                channel.close();
+                            } catch (IOException e) {
+                                log.warn("Failed to close export file {}: {}", file, e.getMessage());
+                            }
+                        }))
+                .doOnSuccess(channel -> {
+                    job.finish(COMPLETED, null);
+                    log.info("Catalog export {} completed: {} rows, {} bytes", job.fileName, job.rows.get(), job.bytes.get());
+                    pruneOldExports();
+                })
+                .doOnError(e -> job.finish(FAILED, e.getMessage()))
+                .then();
+    }
+
+    private void pruneOldExports() {
+        try (Stream<Path> files = Files.list(directory)) {
+            files.filter(CatalogExportService::isExportFile)
+                    .sorted(Comparator.comparing(Path::getFileName).reversed())
+                    .skip(Math.max(1, keep))
+                    .forEach(old -> {
+                        try {
+                            Files.deleteIfExists(old);
+                            jobs.remove(old.getFileName().toString());
+                        } catch (IOException e) {
+                            log.warn("Failed to delete old export {}: {}", old, e.getMessage());
+                        }
+                    });
+        } catch (IOException e) {
+            log.warn("Failed to prune exports in {}: {}", directory, e.getMessage());
+        }
+    }
+
+    private ExportJobDTO describe(Path file) {
+        String fileName = file.getFileName().toString();
+        ExportJob job = jobs.get(fileName);
+        if (job != null) {
+            return job.toDto();
+        }
+        try {
+            return ExportJobDTO.builder()
+                    .fileName(fileName)
+                    .status(COMPLETED)
+                    .bytes(Files.size(file))
+                    .finishedAt(Files.getLastModifiedTime(file).toInstant())
+                    .build();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static boolean isExportFile(Path file) {
+        return FILE_NAME.matcher(file.getFileName().toString()).matches();
+    }
+
+    private static final class ExportJob {
+        private final String fileName;
+        private final Instant startedAt = Instant.now();
+        private final AtomicLong rows = new AtomicLong();
+        private final AtomicLong bytes = new AtomicLong();
+        private volatile String status = RUNNING;
+        private volatile String error;
+        private volatile Instant finishedAt;
+
+        private ExportJob(String timestamp) {
+            this.fileName = "catalog-" + timestamp + ".ndjson.gz";
+        }
+
+        private void finish(String status, String error) {
+            this.status = status;
+            this.error = error;
+            this.finishedAt = Instant.now();
+        }
+
+        private ExportJobDTO toDto() {
+            return ExportJobDTO.builder()
+                    .fileName(fileName)
+                    .status(status)
+                    .rows(rows.get())
+                    .bytes(bytes.get())
+                    .startedAt(startedAt)
+                    .finishedAt(finishedAt)
+                    .error(error)
+                    .build();
+        }
+    }
+
+    /**
+     * One gzip stream emitted as byte chunks. Each chunk is sync-flushed, so everything written
+     * so far decompresses without the trailer.
+     */
+    private static final class GzipChunks {
+        private final ByteArrayOutputStream sink = new ByteArrayOutputStream(64 * 1024);
+        private final GZIPOutputStream gzip;
+
+        private GzipChunks() throws IOException {
+            this.gzip = new GZIPOutputStream(sink, 64 * 1024, true);
+        }
+
+        private byte[] compress(List<String> lines) {
+            try {
+                for (String line : lines) {
+                    gzip.write(line.getBytes(StandardCharsets.UTF_8));
+                    gzip.write('\n');
+                }
+                gzip.flush();
+                return drain();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private byte[] finish() throws IOException {
+            gzip.finish();
+            return drain();
+        }
+
+        private byte[] drain() {
+            byte[] bytes = sink.toByteArray();
+            sink.reset();
+            return bytes;
+        }
+
+        private void close() {
+            try {
+                gzip.close();
+            } catch (IOException ignored) {
+                // Only releases the deflater; the output is in memory
+            }
+        }
+    }
+}
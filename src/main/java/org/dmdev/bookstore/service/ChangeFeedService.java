@@ -0,0 +1,176 @@
+package org.dmdev.bookstore.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.dmdev.bookstore.domain.OutboxEvent;
+import org.dmdev.bookstore.dto.ChangeEventDTO;
+import org.dmdev.bookstore.repository.OutboxEventRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.util.concurrent.Queues;
+
+import jakarta.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Change feed over the transactional outbox. Every poll, the relay publishes a batch of pending
+ * events by assigning them positions, and the tailer reads newly published events and fans them
+ * out to live subscribers. Subscribers resuming from a position first replay the stored backlog.
+ * Published events are kept for {@code retention} and then purged in bulk.
+ */
+@Slf4j
+@Service
+public class ChangeFeedService {
+
+    private static final long RELAY_LOCK_KEY = 0x6f7574626f78L;
+    private static final int MAX_BUFFERED_PER_SUBSCRIBER = 4096;
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final TransactionalOperator transactionalOperator;
+    private final boolean relayEnabled;
+    private final Duration pollInterval;
+    private final int batchSize;
+    private final Duration retention;
+    private final Sinks.Many<ChangeEventDTO> live = Sinks.many().multicast().directBestEffort();
+    private final AtomicLong lastPosition = new AtomicLong();
+    private volatile Disposable poller;
+
+    public ChangeFeedService(OutboxEventRepository outboxEventRepository,
+                             TransactionalOperator transactionalOperator,
+                             @Value("${bookstore.outbox.relay.enabled:true}") boolean relayEnabled,
+                             @Value("${bookstore.outbox.poll-interval:PT0.2S}") Duration pollInterval,
+                             @Value("${bookstore.outbox.batch-size:500}") int batchSize,
+                             @Value("${bookstore.outbox.retention:PT168H}") Duration retention) {
+        this.outboxEventRepository = outboxEventRepository;
+        this.transactionalOperator = transactionalOperator;
+        this.relayEnabled = relayEnabled;
+        this.pollInterval = pollInterval;
+        this.batchSize = Math.max(1, batchSize);
+        this.retention = retention;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        poller = outboxEventRepository.findLastPosition()
+                .doOnNext(lastPosition::set)
+                .thenMany(Flux.interval(pollInterval)
+                        .onBackpressureDrop()
+                        .concatMap(tick -> poll().onErrorResume(e -> {
+                            log.warn("Change feed poll failed: {}", e.getMessage());
+                            return Mono.empty();
+                        })))
+                .subscribe();
+        log.info("Change feed started at position {}, relay {}", lastPosition.get(), relayEnabled ? "enabled" : "disabled");
+    }
+
+    @PreDestroy
+    void stop() {
+        if (poller != null) {
+            poller.dispose();
+        }
+        live.tryEmitComplete();
+    }
+
+    public Mono<Void> poll() {
+        return (relayEnabled ? relay() : Mono.<Integer>empty()).then(tail());
+    }
+
+    /**
+     * Publishes one batch of pending events. Returns the number published, 0 if another instance
+     * holds the relay lock.
+     */
+    public Mono<Integer> relay() {
+        return outboxEventRepository.tryRelayLock(RELAY_LOCK_KEY)
+                .flatMap(locked -> locked ? outboxEventRepository.publishPending(batchSize) : Mono.just(0))
+                .as(transactionalOperator::transactional)
+                .doOnNext(published -> {
+                    if (published > 0) {
+                        log.debug("Relayed {} outbox events", published);
+                    }
+                });
+    }
+
+    /**
+     * Live events after {@code after}, or from now on if it is null. Positions are the SSE event ids.
+     */
+    public Flux<ChangeEventDTO> stream(Long after) {
+        return Flux.defer(() -> {
+            AtomicLong cursor = new AtomicLong(after == null ? 0 : after);
+            // Live events are buffered while the backlog is replayed, then the replayed ones dropped
+            Sinks.Many<ChangeEventDTO> buffered = Sinks.many().unicast()
+                    .onBackpressureBuffer(Queues.<ChangeEventDTO>get(MAX_BUFFERED_PER_SUBSCRIBER).get());
+            Disposable subscription = live.asFlux().subscribe(event -> {
+                if (buffered.tryEmitNext(event).isFailure()) {
+                    buffered.tryEmitError(new IllegalStateException("Change feed subscriber fell behind, resume from the last event id"));
+                }
+            }, buffered::tryEmitError, buffered::tryEmitComplete);
+            Flux<ChangeEventDTO> backlog = after == null ? Flux.empty() : replay(after)
+                    .doOnNext(event -> cursor.set(event.position()));
+            return backlog
+                    .concatWith(buffered.asFlux().filter(event -> event.position() > cursor.get()))
+                    .doFinally(signal -> subscription.dispose());
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${bookstore.outbox.purge-interval:PT1H}")
+    public void purgePublished() {
+        Instant publishedBefore = Instant.now().minus(retention);
+        outboxEventRepository.deletePublishedBefore(publishedBefore, batchSize)
+                .expand(deleted -> deleted < batchSize
+                        ? Mono.empty()
+                        : outboxEventRepository.deletePublishedBefore(publishedBefore, batchSize))
+                .reduce(0L, Long::sum)
+                .subscribe(deleted -> log.debug("Purged {} published outbox events", deleted),
+                        e -> log.warn("Failed to purge outbox events: {}", e.getMessage()));
+    }
+
+    private Mono<Void> tail() {
+        if (live.currentSubscriberCount() == 0) {
+            // Nobody is listening, so only keep the starting point of the next subscriber current
+            return outboxEventRepository.findLastPosition().doOnNext(lastPosition::set).then();
+        }
+        return outboxEventRepository.findPublishedAfter(lastPosition.get(), batchSize)
+                .map(ChangeFeedService::toDto)
+                .doOnNext(event -> {
+                    lastPosition.set(event.position());
+                    live.tryEmitNext(event);
+                })
+                .then();
+    }
+
+    private Flux<ChangeEventDTO> replay(long after) {
+        return page(after)
+                .expand(events -> events.size() < batchSize
+                        ? Mono.empty()
+                        : page(events.get(events.size() - 1).position()))
+                .flatMapIterable(Function.identity());
+    }
+
+    private Mono<List<ChangeEventDTO>> page(long after) {
+        return outboxEventRepository.findPublishedAfter(after, batchSize)
+                .map(ChangeFeedService::toDto)
+                .collectList();
+    }
+
+    private static ChangeEventDTO toDto(OutboxEvent event) {
+        return ChangeEventDTO.builder()
+                .position(event.getPosition())
+                .aggregateType(event.getAggregateType())
+                .aggregateId(event.getAggregateId())
+                .eventType(event.getEventType())
+                .payload(event.getPayload())
+                .occurredAt(event.getCreatedAt())
+                .build();
+    }
+}
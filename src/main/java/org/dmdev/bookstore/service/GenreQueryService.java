@@ -0,0 +1,91 @@
+package org.dmdev.bookstore.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.dmdev.bookstore.domain.Book;
+import org.dmdev.bookstore.dto.GenreQueryDTO;
+import org.dmdev.bookstore.index.GenreIndex;
+import org.dmdev.bookstore.mapper.BookMapper;
+import org.dmdev.bookstore.model.ResponseModel;
+import org.dmdev.bookstore.repository.BookRepository;
+import org.dmdev.bookstore.repository.GenreRepository;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class GenreQueryService {
+
+    private static final int LOAD_BATCH_SIZE = 10_000;
+    private static final int MAX_PAGE_SIZE = 100;
+
+    private final GenreIndex genreIndex;
+    private final GenreRepository genreRepository;
+    private final BookRepository bookRepository;
+    private final BookMapper bookMapper;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadIndex() {
+        log.info("Loading genre index...");
+        genreRepository.findAllBookGenres()
+                .buffer(LOAD_BATCH_SIZE)
+                .doOnNext(genreIndex::load)
+                .map(List::size)
+                .reduce(0L, Long::sum)
+                .subscribe(
+                        links -> {
+                            genreIndex.markReady();
+                            log.info("Genre index loaded: {} book-genre links", links);
+                        },
+                        ex -> log.error("Failed to load genre index: {}", ex.getMessage(), ex));
+    }
+
+    public Mono<ResponseModel> query(List<UUID> all, List<UUID> any, List<UUID> none, int offset, int limit) {
+        if (!genreIndex.isReady()) {
+            log.warn("Genre query rejected: index is still loading");
+            return Mono.just(ResponseModel.builder()
+                    .status(ResponseModel.FAIL_STATUS)
+                    .message("Genre index is not ready yet")
+                    .build());
+        }
+        if (all.isEmpty() && any.isEmpty()) {
+            log.warn("Genre query called without 'all' or 'any' genres");
+            return Mono.just(ResponseModel.builder()
+                    .status(ResponseModel.FAIL_STATUS)
+                    .message("At least one 'all' or 'any' genre is required")
+                    .build());
+        }
+        GenreIndex.Result result = genreIndex.query(all, any, none,
+                Math.max(0, offset), Math.max(1, Math.min(limit, MAX_PAGE_SIZE)));
+        log.info("Genre query all={} any={} none={} matched {} books", all, any, none, result.total());
+        return bookRepository.findAllById(result.bookIds())
+                .collectMap(Book::getId)
+                .map(books -> ResponseModel.builder()
+                        .status(ResponseModel.SUCCESS_STATUS)
+                        .message("Books fetched successfully")
+                        .data(GenreQueryDTO.builder()
+                                .total(result.total())
+                                .books(result.bookIds().stream()
+                                        .map(books::get)
+                                        .filter(Objects::nonNull)
+                                        .map(bookMapper::bookToDto)
+                                        .toList())
+                                .facets(result.facets())
+                                .build())
+                        .build())
+                .onErrorResume(e -> {
+                    log.error("Error running genre query: {}", e.getMessage(), e);
+                    return Mono.just(ResponseModel.builder()
+                            .status(ResponseModel.FAIL_STATUS)
+                            .message("Error running genre query")
+                            .build());
+                });
+    }
+}
@@ -1,15 +1,24 @@
 package org.dmdev.bookstore.service;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.dmdev.bookstore.cache.BookCache;
 import org.dmdev.bookstore.dto.GenreDTO;
+import org.dmdev.bookstore.index.GenreIndex;
 import org.dmdev.bookstore.mapper.GenreMapper;
+import org.dmdev.bookstore.model.GenreSnapshot;
 import org.dmdev.bookstore.model.ResponseModel;
 import org.dmdev.bookstore.repository.GenreRepository;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Mono;
 
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 @Slf4j
 @Service
@@ -18,6 +27,12 @@ public class GenreService {
 
     private final GenreRepository genreRepository;
     private final GenreMapper genreMapper;
+    private final GenreIndex genreIndex;
+    private final BookCache bookCache;
+    private final ObjectMapper objectMapper;
+
+    private final AtomicReference<GenreSnapshot> snapshot = new AtomicReference<>();
+    private final AtomicLong snapshotGeneration = new AtomicLong();
 
     public Mono<ResponseModel> save(GenreDTO genreDTO) {
         log.info("Saving genre: {}", genreDTO);
@@ -36,6 +51,7 @@ public class GenreService {
                             .message("Genre saved successfully")
                             .build();
                 })
+                .flatMap(response -> refreshSnapshotQuietly().thenReturn(response))
                 .onErrorResume(e -> {
                     log.error("Error saving genre: {}", e.getMessage(), e);
                     return Mono.just(ResponseModel.builder()
@@ -45,26 +61,69 @@ public class GenreService {
                 });
     }
 
-    public Mono<ResponseModel> findAllGenres() {
-        log.info("Fetching all genres...");
-        return genreRepository.findAll()
-                .map(genreMapper::genreToDto)
-                .collectList()
-                .doOnSuccess(list -> log.info("Successfully retrieved {} genres", list.size()))
-                .map(genres -> ResponseModel.builder()
-                        .status(ResponseModel.SUCCESS_STATUS)
-                        .message("Genres retrieved successfully")
-                        .data(genres)
-                        .build())
+    /**
+     * Serialized genre list served straight from memory. Before the first snapshot is built
+     * (or if building it fails) the list is loaded from the database.
+     */
+    public Mono<GenreSnapshot> findAllGenresSnapshot() {
+        GenreSnapshot current = snapshot.get();
+        if (current != null) {
+            return Mono.just(current);
+        }
+        return refreshSnapshot()
                 .onErrorResume(ex -> {
-                    log.error("Error while fetching genres", ex);
-                    return Mono.just(ResponseModel.builder()
-                            .status(ResponseModel.FAIL_STATUS)
-                            .message("Error while fetching genres")
-                            .build());
+                    log.error("Error while building genre snapshot", ex);
+                    return Mono.fromCallable(() -> GenreSnapshot.uncached(objectMapper.writeValueAsBytes(
+                            ResponseModel.builder()
+                                    .status(ResponseModel.FAIL_STATUS)
+                                    .message("Error while fetching genres")
+                                    .build())));
                 });
     }
 
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadSnapshot() {
+        refreshSnapshot().subscribe(
+                loaded -> log.info("Genre snapshot loaded, etag {}", loaded.etag()),
+                ex -> log.error("Failed to load genre snapshot: {}", ex.getMessage(), ex));
+    }
+
+    public Mono<GenreSnapshot> refreshSnapshot() {
+        return Mono.defer(() -> {
+            long generation = snapshotGeneration.incrementAndGet();
+            return genreRepository.findAll()
+                    .map(genreMapper::genreToDto)
+                    .collectList()
+                    .map(genres -> GenreSnapshot.of(generation, serialize(ResponseModel.builder()
+                            .status(ResponseModel.SUCCESS_STATUS)
+                            .message("Genres retrieved successfully")
+                            .data(genres)
+                            .build())))
+                    // A slower refresh that started earlier must not replace a newer snapshot
+                    .map(built -> snapshot.accumulateAndGet(built, (current, candidate) ->
+                            current == null || candidate.generation() > current.generation() ? candidate : current))
+                    // The snapshot may now be stale; drop it unless a later refresh already replaced it,
+                    // so the next read rebuilds it instead of serving the old list until the next write
+                    .doOnError(ex -> snapshot.updateAndGet(current ->
+                            current != null && current.generation() < generation ? null : current));
+        });
+    }
+
+    private Mono<Void> refreshSnapshotQuietly() {
+        return refreshSnapshot()
+                .doOnError(ex -> log.warn("Failed to refresh genre snapshot: {}", ex.getMessage()))
+                .onErrorResume(ex -> Mono.empty())
+                .then();
+    }
+
+    private byte[] serialize(ResponseModel response) {
+        try {
+            return objectMapper.writeValueAsBytes(response);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize genres", e);
+        }
+    }
+
     public Mono<ResponseModel> findGenresByBookId(UUID bookId) {
         log.info("Finding genres for book with ID: {}", bookId);
         return genreRepository.findGenresByBookId(bookId)
@@ -98,6 +157,11 @@ public class GenreService {
         log.info("Deleting genre with ID: {}", genreId);
         return genreRepository.findById(genreId)
                 .flatMap(genre -> genreRepository.delete(genre)
+                        .doOnSuccess(v -> {
+                            genreIndex.removeGenre(genreId);
+                            bookCache.invalidateByGenre(genreId);
+                        })
+                        .then(refreshSnapshotQuietly())
                         .thenReturn(ResponseModel.builder()
                                 .status(ResponseModel.SUCCESS_STATUS)
                                 .message("Genre deleted successfully")
@@ -130,6 +194,7 @@ public class GenreService {
         }
         return genreRepository.findById(genreDTO.id())
                 .flatMap(existingGenre -> genreRepository.save(genreMapper.dtoToGenre(genreDTO))
+                        .doOnNext(saved -> bookCache.invalidateByGenre(saved.getId()))
                         .map(saved -> {
                             log.info("Genre updated successfully: {}", saved.getId());
                             return ResponseModel.builder()
@@ -137,6 +202,7 @@ public class GenreService {
                                     .message("Genre updated successfully")
                                     .build();
                         })
+                        .flatMap(response -> refreshSnapshotQuietly().thenReturn(response))
                 )
                 .switchIfEmpty(Mono.defer(() -> {
                     log.warn("Genre not found with ID: {}", genreDTO.id());
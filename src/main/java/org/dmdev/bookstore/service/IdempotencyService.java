@@ -0,0 +1,171 @@
+package org.dmdev.bookstore.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.dmdev.bookstore.model.ResponseModel;
+import org.dmdev.bookstore.repository.IdempotencyKeyRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.context.ReactiveSecurityContextHolder;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.function.Supplier;
+
+/**
+ * {@code Idempotency-Key} support for create endpoints. Keys are scoped by operation and user.
+ * Recent outcomes live in a bounded in-memory cache, where concurrent duplicates share one
+ * execution; behind it, a row in {@code idempotency_keys} is claimed before executing, so
+ * duplicates reaching other instances replay the stored response instead of creating again.
+ * Only successful responses are kept; failures may be retried with the same key. A claim that is
+ * never completed, e.g. because its instance died, can be taken over once its lease runs out.
+ */
+@Slf4j
+@Service
+public class IdempotencyService {
+
+    public static final String HEADER = "Idempotency-Key";
+
+    private static final int MAX_KEY_LENGTH = 255;
+
+    private final IdempotencyKeyRepository idempotencyKeyRepository;
+    private final ObjectMapper objectMapper;
+    private final Duration ttl;
+    private final Duration lease;
+    private final AsyncCache<String, StoredResponse> recent;
+
+    public IdempotencyService(IdempotencyKeyRepository idempotencyKeyRepository,
+                              ObjectMapper objectMapper,
+                              @Value("${bookstore.idempotency.maximum-size:10000}") long maximumSize,
+                              @Value("${bookstore.idempotency.ttl:PT24H}") Duration ttl,
+                              @Value("${bookstore.idempotency.lease:PT1M}") Duration lease,
+                              MeterRegistry meterRegistry) {
+        this.idempotencyKeyRepository = idempotencyKeyRepository;
+        this.objectMapper = objectMapper;
+        this.ttl = ttl;
+        this.lease = lease;
+        this.recent = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .buildAsync();
+        CaffeineCacheMetrics.monitor(meterRegistry, recent, "idempotency");
+    }
+
+    /**
+     * Runs {@code action} at most once per operation, user and key. A null key runs it unconditionally.
+     */
+    public Mono<ResponseModel> execute(String operation, String key, Object request, Supplier<Mono<ResponseModel>> action) {
+        if (key == null) {
+            return action.get();
+        }
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            return Mono.just(fail(HEADER + " must be 1 to " + MAX_KEY_LENGTH + " characters"));
+        }
+        return Mono.fromCallable(() -> hash(request))
+                .zipWith(ReactiveSecurityContextHolder.getContext()
+                        .map(context -> context.getAuthentication().getName())
+                        .defaultIfEmpty("anonymous"))
+                .flatMap(hashAndUser -> {
+                    String requestHash = hashAndUser.getT1();
+                    String id = operation + ":" + hashAndUser.getT2() + ":" + key;
+                    return Mono.fromFuture(() -> recent.get(id, (ignored, executor) ->
+                                    claimOrReplay(id, requestHash, action).toFuture()), true)
+                            .doOnNext(stored -> {
+                                if (!isSuccess(stored.response())) {
+                                    recent.synchronous().invalidate(id);
+                                }
+                            })
+                            .map(stored -> {
+                                if (!stored.requestHash().equals(requestHash)) {
+                                    log.warn("{} {} reused with a different request", HEADER, id);
+                                    return fail(HEADER + " was already used for a different request");
+                                }
+                                return stored.response();
+                            });
+                });
+    }
+
+    @Scheduled(fixedDelayString = "${bookstore.idempotency.purge-interval:PT10M}")
+    public void purgeExpired() {
+        idempotencyKeyRepository.deleteCreatedBefore(Instant.now().minus(ttl))
+                .subscribe(deleted -> log.debug("Purged {} expired idempotency keys", deleted),
+                        e -> log.warn("Failed to purge idempotency keys: {}", e.getMessage()));
+    }
+
+    private Mono<StoredResponse> claimOrReplay(String id, String requestHash, Supplier<Mono<ResponseModel>> action) {
+        Instant now = Instant.now();
+        return idempotencyKeyRepository.claim(id, requestHash, now.minus(ttl), now.minus(lease))
+                .flatMap(claimed -> claimed > 0 ? executeClaimed(id, requestHash, action) : replay(id, requestHash));
+    }
+
+    private Mono<StoredResponse> executeClaimed(String id, String requestHash, Supplier<Mono<ResponseModel>> action) {
+        return action.get()
+                .onErrorResume(e -> idempotencyKeyRepository.release(id).then(Mono.error(e)))
+                .flatMap(response -> store(id, response).thenReturn(new StoredResponse(requestHash, response)));
+    }
+
+    private Mono<Void> store(String id, ResponseModel response) {
+        if (!isSuccess(response)) {
+            return idempotencyKeyRepository.release(id).then();
+        }
+        // The write already happened, so failing to record it must not fail the request
+        return Mono.fromCallable(() -> objectMapper.writeValueAsString(response))
+                .flatMap(json -> idempotencyKeyRepository.complete(id, json))
+                .onErrorResume(e -> {
+                    log.warn("Failed to store response for {} {}: {}", HEADER, id, e.getMessage());
+                    return Mono.empty();
+                })
+                .then();
+    }
+
+    private Mono<StoredResponse> replay(String id, String requestHash) {
+        return idempotencyKeyRepository.findById(id)
+                .flatMap(row -> {
+                    if (row.getResponse() == null) {
+                        return Mono.just(new StoredResponse(row.getRequestHash(), inProgress()));
+                    }
+                    log.info("Replaying stored response for {} {}", HEADER, id);
+                    return Mono.fromCallable(() -> objectMapper.readValue(row.getResponse(), ResponseModel.class))
+                            .map(response -> new StoredResponse(row.getRequestHash(), response));
+                })
+                // The other request failed and released the key between our claim and read
+                .defaultIfEmpty(new StoredResponse(requestHash, inProgress()));
+    }
+
+    private String hash(Object request) throws JsonProcessingException, NoSuchAlgorithmException {
+        byte[] body = objectMapper.writeValueAsBytes(request);
+        return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(body));
+    }
+
+    private static boolean isSuccess(ResponseModel response) {
+        return ResponseModel.SUCCESS_STATUS.equals(response.getStatus());
+    }
+
+    private static ResponseModel inProgress() {
+        return ResponseModel.builder()
+                .status(ResponseModel.CONFLICT_STATUS)
+                .message("A request with this " + HEADER + " is still in progress, retry later")
+                .build();
+    }
+
+    private static ResponseModel fail(String message) {
+        return ResponseModel.builder()
+                .status(ResponseModel.FAIL_STATUS)
+                .message(message)
+                .build();
+    }
+
+    private record StoredResponse(String requestHash, ResponseModel response) {
+    }
+}
@@ -0,0 +1,156 @@
+package org.dmdev.bookstore.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.dmdev.bookstore.model.BookFormat;
+import org.dmdev.bookstore.repository.BlobRepository;
+import org.dmdev.bookstore.storage.BlobStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Background gzip compression of blobs in compressible formats, so downloads can send a stored
+ * variant instead of compressing on the request path. Compression runs at the highest level since
+ * it is paid once per content; a variant is kept only if it is at most {@code max-ratio} of the
+ * original.
+ */
+@Slf4j
+@Service
+public class PrecompressionService {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final BlobRepository blobRepository;
+    private final BlobStore blobStore;
+    private final boolean enabled;
+    private final int batchSize;
+    private final double maxRatio;
+    private final String[] formats;
+    private final Counter created;
+    private final Counter skipped;
+    private final Counter savedBytes;
+
+    public PrecompressionService(BlobRepository blobRepository,
+                                 BlobStore blobStore,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${bookstore.files.precompress.enabled:true}") boolean enabled,
+                                 @Value("${bookstore.files.precompress.batch-size:100}") int batchSize,
+                                 @Value("${bookstore.files.precompress.max-ratio:0.9}") double maxRatio) {
+        this.blobRepository = blobRepository;
+        this.blobStore = blobStore;
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.maxRatio = maxRatio;
+        this.formats = Arrays.stream(BookFormat.values())
+                .filter(BookFormat::compressible)
+                .map(format -> format.name().toLowerCase())
+                .toArray(String[]::new);
+        this.created = meterRegistry.counter("bookstore.files.precompressed", "outcome", "created");
+        this.skipped = meterRegistry.counter("bookstore.files.precompressed", "outcome", "skipped");
+        this.savedBytes = meterRegistry.counter("bookstore.files.precompressed.saved.bytes");
+    }
+
+    @Scheduled(fixedDelayString = "${bookstore.files.precompress.interval:PT5M}")
+    public void compressPendingBlobs() {
+        if (!enabled) {
+            return;
+        }
+        compressPending().subscribe(count -> {
+                    if (count > 0) {
+                        log.info("Processed {} blobs for gzip variants", count);
+                    }
+                },
+                e -> log.warn("Precompression failed: {}", e.getMessage()));
+    }
+
+    /**
+     * Processes up to one batch of blobs not yet considered; returns how many were processed.
+     */
+    public Mono<Long> compressPending() {
+        return blobRepository.findUncompressed(formats, batchSize)
+                .concatMap(sha256 -> compress(sha256)
+                        .flatMap(gzipSize -> blobRepository.markCompressed(sha256, gzipSize.orElse(null))
+                                .flatMap(updated -> updated > 0 || gzipSize.isEmpty()
+                                        ? Mono.just(updated)
+                                        // Collected while we worked; the sweep has already run for it
+                                        : Mono.fromCallable(() -> Files.deleteIfExists(blobStore.gzipPathOf(sha256)))
+                                        .subscribeOn(Schedulers.boundedElastic())
+                                        .thenReturn(updated)))
+                        .onErrorResume(e -> {
+                            log.warn("Failed to compress blob {}: {}", sha256, e.getMessage());
+                            return Mono.empty();
+                        }))
+                .count();
+    }
+
+    /**
+     * Writes the gzip variant of a blob and keeps it if it saves enough. Empty optional if no
+     * variant was kept.
+     */
+    private Mono<Optional<Long>> compress(String sha256) {
+        Path blob = blobStore.pathOf(sha256);
+        return blobStore.newTempFile()
+                .flatMap(temp -> Mono.fromCallable(() -> {
+                            if (!Files.isRegularFile(blob)) {
+                                log.warn("Blob {} is missing on disk, skipping compression", sha256);
+                                return Variant.NONE;
+                            }
+                            try (OutputStream out = Files.newOutputStream(temp, StandardOpenOption.CREATE_NEW);
+                                 GZIPOutputStream gzip = new BestCompressionGzipOutputStream(out)) {
+                                Files.copy(blob, gzip);
+                            }
+                            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                                channel.force(true);
+                            }
+                            long originalSize = Files.size(blob);
+                            long gzipSize = Files.size(temp);
+                            if (gzipSize > originalSize * maxRatio) {
+                                Files.delete(temp);
+                                return Variant.NONE;
+                            }
+                            return new Variant(originalSize, gzipSize);
+                        })
+                        .subscribeOn(Schedulers.boundedElastic())
+                        .flatMap(variant -> {
+                            if (variant == Variant.NONE) {
+                                skipped.increment();
+                                return Mono.just(Optional.<Long>empty());
+                            }
+                            return blobStore.commitGzip(temp, sha256)
+                                    .doOnSuccess(committed -> {
+                                        created.increment();
+                                        savedBytes.increment(variant.originalSize() - variant.gzipSize());
+                                    })
+                                    .thenReturn(Optional.of(variant.gzipSize()));
+                        })
+                        .onErrorResume(e -> Mono.fromCallable(() -> Files.deleteIfExists(temp))
+                                .subscribeOn(Schedulers.boundedElastic())
+                                .then(Mono.error(e))));
+    }
+
+    private record Variant(long originalSize, long gzipSize) {
+        private static final Variant NONE = new Variant(-1, -1);
+    }
+
+    private static final class BestCompressionGzipOutputStream extends GZIPOutputStream {
+        private BestCompressionGzipOutputStream(OutputStream out) throws IOException {
+            super(out, BUFFER_SIZE);
+            def.setLevel(Deflater.BEST_COMPRESSION);
+        }
+    }
+}
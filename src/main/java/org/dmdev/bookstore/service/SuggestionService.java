@@ -0,0 +1,45 @@
+package org.dmdev.bookstore.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.dmdev.bookstore.index.TypeaheadIndex;
+import org.dmdev.bookstore.model.ResponseModel;
+import org.dmdev.bookstore.repository.AuthorRepository;
+import org.dmdev.bookstore.repository.BookRepository;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class SuggestionService {
+
+    private static final int MAX_SUGGESTIONS = 20;
+
+    private final TypeaheadIndex typeaheadIndex;
+    private final BookRepository bookRepository;
+    private final AuthorRepository authorRepository;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadIndex() {
+        log.info("Loading typeahead index...");
+        Mono.zip(bookRepository.findAll().doOnNext(typeaheadIndex::loadBook).count(),
+                        authorRepository.findAll().doOnNext(typeaheadIndex::loadAuthor).count())
+                .doFinally(signal -> typeaheadIndex.finishLoad())
+                .subscribe(
+                        counts -> log.info("Typeahead index loaded: {} books, {} authors, ~{} bytes",
+                                counts.getT1(), counts.getT2(), typeaheadIndex.estimatedMemoryBytes()),
+                        ex -> log.error("Failed to load typeahead index: {}", ex.getMessage(), ex));
+    }
+
+    public Mono<ResponseModel> suggest(String prefix, int limit) {
+        int size = Math.max(1, Math.min(limit, MAX_SUGGESTIONS));
+        return Mono.fromSupplier(() -> ResponseModel.builder()
+                .status(ResponseModel.SUCCESS_STATUS)
+                .message("Suggestions retrieved successfully")
+                .data(typeaheadIndex.suggest(prefix, size))
+                .build());
+    }
+}
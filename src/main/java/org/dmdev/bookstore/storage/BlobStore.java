@@ -0,0 +1,202 @@
+package org.dmdev.bookstore.storage;
+
+import lombok.extern.slf4j.Slf4j;
+import org.dmdev.bookstore.repository.BlobRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * Content-addressed file storage. Each distinct content is kept once, at
+ * {@code blobs/ab/cd/<sha256>}, however many book files reference it, with an optional
+ * {@code <sha256>.gz} variant beside it. References are counted by a trigger on
+ * {@code book_files}; a periodic sweep deletes blobs that have had none for longer than the grace
+ * period, along with temp files abandoned by interrupted uploads.
+ */
+@Slf4j
+@Component
+public class BlobStore {
+
+    private final BlobRepository blobRepository;
+    private final TransactionalOperator transactionalOperator;
+    private final Path root;
+    private final Path blobs;
+    private final Path temp;
+    private final Duration gracePeriod;
+    private final int batchSize;
+
+    public BlobStore(BlobRepository blobRepository,
+                     TransactionalOperator transactionalOperator,
+                     @Value("${bookstore.files.directory:files}") String directory,
+                     @Value("${bookstore.files.gc.grace-period:PT1H}") Duration gracePeriod,
+                     @Value("${bookstore.files.gc.batch-size:500}") int batchSize) {
+        this.blobRepository = blobRepository;
+        this.transactionalOperator = transactionalOperator;
+        this.root = Paths.get(directory).toAbsolutePath().normalize();
+        this.blobs = root.resolve("blobs");
+        this.temp = root.resolve("tmp");
+        this.gracePeriod = gracePeriod;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Sharded by the first two byte pairs so no directory grows past 256 entries plus its blobs.
+     */
+    public Path pathOf(String sha256) {
+        return blobs.resolve(sha256.substring(0, 2)).resolve(sha256.substring(2, 4)).resolve(sha256);
+    }
+
+    /**
+     * Resolves a path stored on a book file, or empty when it points outside the files directory.
+     * Paths are normalized first, so {@code ..} segments cannot climb out of the root.
+     */
+    public Optional<Path> resolveStored(String filePath) {
+        if (filePath == null || filePath.isBlank()) {
+            return Optional.empty();
+        }
+        Path path;
+        try {
+            path = Paths.get(filePath);
+        } catch (InvalidPathException e) {
+            return Optional.empty();
+        }
+        path = path.toAbsolutePath().normalize();
+        return path.startsWith(root) ? Optional.of(path) : Optional.empty();
+    }
+
+    /**
+     * Where the gzip variant of a blob is kept, next to the blob itself.
+     */
+    public Path gzipPathOf(String sha256) {
+        Path blob = pathOf(sha256);
+        return blob.resolveSibling(blob.getFileName() + ".gz");
+    }
+
+    /**
+     * A fresh path for a file being written, on the same file system as the blobs so that it can
+     * be renamed into place.
+     */
+    public Mono<Path> newTempFile() {
+        return Mono.fromCallable(() -> Files.createDirectories(temp).resolve(UUID.randomUUID() + ".part"))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    /**
+     * Turns a fully written and synced temp file into the blob for its content. If the blob is
+     * already stored the temp file is dropped. Either way the blob is reserved against the sweep
+     * for the grace period, within which the caller must insert the row referencing it.
+     */
+    public Mono<Path> commit(Path tempFile, String sha256, long size) {
+        Path target = pathOf(sha256);
+        return blobRepository.reserve(sha256, size)
+                .then(Mono.fromCallable(() -> {
+                    if (Files.isRegularFile(target)) {
+                        Files.delete(tempFile);
+                        log.debug("Blob {} already stored, dropped duplicate upload", sha256);
+                        return target;
+                    }
+                    Files.createDirectories(target.getParent());
+                    Files.move(tempFile, target, StandardCopyOption.ATOMIC_MOVE);
+                    syncDirectory(target.getParent());
+                    return target;
+                }).subscribeOn(Schedulers.boundedElastic()));
+    }
+
+    /**
+     * Moves a fully written and synced temp file into place as the gzip variant of a blob.
+     */
+    public Mono<Path> commitGzip(Path tempFile, String sha256) {
+        Path target = gzipPathOf(sha256);
+        return Mono.fromCallable(() -> {
+            Files.move(tempFile, target, StandardCopyOption.ATOMIC_MOVE);
+            syncDirectory(target.getParent());
+            return target;
+        }).subscribeOn(Schedulers.boundedElastic());
+    }
+
+    @Scheduled(fixedDelayString = "${bookstore.files.gc.interval:PT1H}")
+    public void collectGarbage() {
+        sweep().subscribe(deleted -> {
+                    if (deleted > 0) {
+                        log.info("Deleted {} unreferenced blobs", deleted);
+                    }
+                },
+                e -> log.warn("Blob sweep failed: {}", e.getMessage()));
+    }
+
+    /**
+     * Deletes up to one batch of blobs unreferenced for longer than the grace period, and stale
+     * temp files. Each blob's row and file go in one transaction; returns the number of blobs deleted.
+     */
+    public Mono<Long> sweep() {
+        Instant cutoff = Instant.now().minus(gracePeriod);
+        return blobRepository.findCollectable(cutoff, batchSize)
+                .concatMap(sha256 -> blobRepository.deleteCollectable(sha256, cutoff)
+                        .filter(deleted -> deleted > 0)
+                        .flatMap(deleted -> Mono.fromCallable(() -> {
+                                    Files.deleteIfExists(gzipPathOf(sha256));
+                                    return Files.deleteIfExists(pathOf(sha256));
+                                })
+                                .subscribeOn(Schedulers.boundedElastic()))
+                        .as(transactionalOperator::transactional)
+                        .onErrorResume(e -> {
+                            log.warn("Failed to delete blob {}: {}", sha256, e.getMessage());
+                            return Mono.empty();
+                        }))
+                .count()
+                .flatMap(deleted -> Mono.fromRunnable(() -> deleteStaleTempFiles(cutoff))
+                        .subscribeOn(Schedulers.boundedElastic())
+                        .thenReturn(deleted));
+    }
+
+    private void deleteStaleTempFiles(Instant cutoff) {
+        if (!Files.isDirectory(temp)) {
+            return;
+        }
+        try (Stream<Path> files = Files.list(temp)) {
+            files.filter(file -> {
+                try {
+                    return Files.getLastModifiedTime(file).toInstant().isBefore(cutoff);
+                } catch (IOException e) {
+                    return false;
+                }
+            }).forEach(file -> {
+                try {
+                    Files.deleteIfExists(file);
+                } catch (IOException e) {
+                    log.warn("Failed to delete temp file {}: {}", file, e.getMessage());
+                }
+            });
+        } catch (IOException e) {
+            log.warn("Failed to list temp files in {}: {}", temp, e.getMessage());
+        }
+    }
+
+    /**
+     * Makes a rename durable. Not every platform can open a directory, so failures are ignored.
+     */
+    private static void syncDirectory(Path dir) {
+        try (FileChannel channel = FileChannel.open(dir, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            log.debug("Could not sync directory {}: {}", dir, e.getMessage());
+        }
+    }
+}
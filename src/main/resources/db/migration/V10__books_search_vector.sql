@@ -0,0 +1,55 @@
+-- Full-text search over title, ISBN and author name.
+-- A GENERATED column cannot read authors, so the vector is maintained by triggers on both tables.
+ALTER TABLE books
+    ADD COLUMN search_vector tsvector;
+
+CREATE
+OR REPLACE FUNCTION books_search_vector(book_title TEXT, book_isbn TEXT, book_author_id UUID)
+RETURNS tsvector AS $$
+SELECT setweight(to_tsvector('simple', coalesce(book_title, '')), 'A')
+           || setweight(to_tsvector('simple', coalesce(book_isbn, '')), 'A')
+           || setweight(to_tsvector('simple', coalesce(
+        (SELECT a.firstname || ' ' || a.lastname FROM authors a WHERE a.id = book_author_id), '')), 'B');
+$$
+language 'sql' STABLE;
+
+CREATE
+OR REPLACE FUNCTION update_books_search_vector()
+RETURNS TRIGGER AS $$
+BEGIN
+   NEW.search_vector
+= books_search_vector(NEW.title, NEW.isbn, NEW.author_id);
+RETURN NEW;
+END;
+$$
+language 'plpgsql';
+
+CREATE TRIGGER trigger_books_search_vector
+    BEFORE INSERT OR UPDATE OF title, isbn, author_id
+    ON books
+    FOR EACH ROW
+    EXECUTE FUNCTION update_books_search_vector();
+
+CREATE
+OR REPLACE FUNCTION refresh_author_books_search_vector()
+RETURNS TRIGGER AS $$
+BEGIN
+UPDATE books
+SET search_vector = books_search_vector(title, isbn, author_id)
+WHERE author_id = NEW.id;
+RETURN NULL;
+END;
+$$
+language 'plpgsql';
+
+CREATE TRIGGER trigger_authors_search_vector
+    AFTER UPDATE OF firstname, lastname
+    ON authors
+    FOR EACH ROW
+    WHEN (OLD.firstname IS DISTINCT FROM NEW.firstname OR OLD.lastname IS DISTINCT FROM NEW.lastname)
+    EXECUTE FUNCTION refresh_author_books_search_vector();
+
+UPDATE books
+SET search_vector = books_search_vector(title, isbn, author_id);
+
+CREATE INDEX idx_books_search_vector ON books USING GIN (search_vector);
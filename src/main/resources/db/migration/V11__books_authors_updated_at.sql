@@ -0,0 +1,99 @@
+-- Last-modified timestamps used as HTTP validators for GET /api/books/{id} and GET /api/authors/{id}.
+-- Maintained by the update_updated_at_column() trigger from V3; a book is also touched when
+-- its genre links, files or linked genre names change, since those are part of its representation.
+ALTER TABLE books
+    ADD COLUMN updated_at TIMESTAMPTZ NOT NULL DEFAULT CURRENT_TIMESTAMP;
+
+ALTER TABLE authors
+    ADD COLUMN updated_at TIMESTAMPTZ NOT NULL DEFAULT CURRENT_TIMESTAMP;
+
+CREATE TRIGGER trigger_update_books_updated_at
+    BEFORE UPDATE
+    ON books
+    FOR EACH ROW
+    EXECUTE FUNCTION update_updated_at_column();
+
+CREATE TRIGGER trigger_update_authors_updated_at
+    BEFORE UPDATE
+    ON authors
+    FOR EACH ROW
+    EXECUTE FUNCTION update_updated_at_column();
+
+-- Statement-level, so a multi-row link insert or delete touches each book once
+CREATE
+OR REPLACE FUNCTION touch_books_from_new_links()
+RETURNS TRIGGER AS $$
+BEGIN
+UPDATE books
+SET updated_at = CURRENT_TIMESTAMP
+WHERE id IN (SELECT book_id FROM new_links);
+RETURN NULL;
+END;
+$$
+language 'plpgsql';
+
+CREATE
+OR REPLACE FUNCTION touch_books_from_old_links()
+RETURNS TRIGGER AS $$
+BEGIN
+UPDATE books
+SET updated_at = CURRENT_TIMESTAMP
+WHERE id IN (SELECT book_id FROM old_links);
+RETURN NULL;
+END;
+$$
+language 'plpgsql';
+
+CREATE TRIGGER trigger_book_genres_insert_touch_books
+    AFTER INSERT
+    ON book_genres
+    REFERENCING NEW TABLE AS new_links
+    FOR EACH STATEMENT
+    EXECUTE FUNCTION touch_books_from_new_links();
+
+CREATE TRIGGER trigger_book_genres_delete_touch_books
+    AFTER DELETE
+    ON book_genres
+    REFERENCING OLD TABLE AS old_links
+    FOR EACH STATEMENT
+    EXECUTE FUNCTION touch_books_from_old_links();
+
+CREATE TRIGGER trigger_book_files_insert_touch_books
+    AFTER INSERT
+    ON book_files
+    REFERENCING NEW TABLE AS new_links
+    FOR EACH STATEMENT
+    EXECUTE FUNCTION touch_books_from_new_links();
+
+CREATE TRIGGER trigger_book_files_update_touch_books
+    AFTER UPDATE
+    ON book_files
+    REFERENCING NEW TABLE AS new_links
+    FOR EACH STATEMENT
+    EXECUTE FUNCTION touch_books_from_new_links();
+
+CREATE TRIGGER trigger_book_files_delete_touch_books
+    AFTER DELETE
+    ON book_files
+    REFERENCING OLD TABLE AS old_links
+    FOR EACH STATEMENT
+    EXECUTE FUNCTION touch_books_from_old_links();
+
+CREATE
+OR REPLACE FUNCTION touch_books_from_genre()
+RETURNS TRIGGER AS $$
+BEGIN
+UPDATE books
+SET updated_at = CURRENT_TIMESTAMP
+WHERE id IN (SELECT book_id FROM book_genres WHERE genre_id = NEW.id);
+RETURN NULL;
+END;
+$$
+language 'plpgsql';
+
+CREATE TRIGGER trigger_genres_touch_books
+    AFTER UPDATE OF name
+    ON genres
+    FOR EACH ROW
+    WHEN (OLD.name IS DISTINCT FROM NEW.name)
+    EXECUTE FUNCTION touch_books_from_genre();
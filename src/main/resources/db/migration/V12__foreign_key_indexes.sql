@@ -0,0 +1,8 @@
+-- Indexes for the foreign-key lookups behind author pages, book aggregates and genre filters.
+-- (author_id, publication_date, id) also serves the author's books page in its display order.
+CREATE INDEX idx_books_author_id_publication_date ON books (author_id, publication_date, id);
+
+CREATE INDEX idx_book_files_book_id ON book_files (book_id);
+
+-- book_genres' primary key (book_id, genre_id) cannot serve lookups by genre
+CREATE INDEX idx_book_genres_genre_id ON book_genres (genre_id);
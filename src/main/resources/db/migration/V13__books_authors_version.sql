@@ -0,0 +1,5 @@
+-- Row versions for optimistic locking: updates carry the version they read and bump it,
+-- so a concurrent edit turns into a conflict instead of a silent overwrite.
+ALTER TABLE books ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
+
+ALTER TABLE authors ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
@@ -0,0 +1,11 @@
+-- Responses to POSTs sent with an Idempotency-Key. id is "<operation>:<user>:<key>"; a row with a
+-- NULL response is a claim held by the request still executing. Rows are purged after their TTL.
+CREATE TABLE idempotency_keys
+(
+    id           VARCHAR(400) PRIMARY KEY,
+    request_hash CHAR(64)    NOT NULL,
+    response     TEXT,
+    created_at   TIMESTAMPTZ NOT NULL DEFAULT now()
+);
+
+CREATE INDEX idx_idempotency_keys_created_at ON idempotency_keys (created_at);
@@ -0,0 +1,102 @@
+-- Transactional outbox for the change feed. Rows are written by statement-level triggers, so every
+-- write path (services, bulk operations, imports) records its events in its own transaction.
+-- The relay assigns position when it publishes a row; positions are the feed's resumable offsets.
+CREATE TABLE outbox_events
+(
+    id             BIGINT GENERATED ALWAYS AS IDENTITY PRIMARY KEY,
+    aggregate_type VARCHAR(16) NOT NULL,
+    aggregate_id   UUID        NOT NULL,
+    event_type     VARCHAR(16) NOT NULL,
+    payload        JSONB,
+    created_at     TIMESTAMPTZ NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    position       BIGINT UNIQUE,
+    published_at   TIMESTAMPTZ
+);
+
+CREATE SEQUENCE outbox_events_position_seq OWNED BY outbox_events.position;
+
+CREATE INDEX idx_outbox_events_unpublished ON outbox_events (id) WHERE position IS NULL;
+
+CREATE INDEX idx_outbox_events_published_at ON outbox_events (published_at) WHERE published_at IS NOT NULL;
+
+CREATE
+OR REPLACE FUNCTION outbox_from_new_rows()
+RETURNS TRIGGER AS $$
+BEGIN
+INSERT INTO outbox_events (aggregate_type, aggregate_id, event_type, payload)
+SELECT TG_ARGV[0],
+       n.id,
+       CASE TG_OP WHEN 'INSERT' THEN 'CREATED' ELSE 'UPDATED' END,
+       to_jsonb(n) - 'search_vector'
+FROM new_rows n;
+RETURN NULL;
+END;
+$$
+language 'plpgsql';
+
+CREATE
+OR REPLACE FUNCTION outbox_from_old_rows()
+RETURNS TRIGGER AS $$
+BEGIN
+INSERT INTO outbox_events (aggregate_type, aggregate_id, event_type)
+SELECT TG_ARGV[0], o.id, 'DELETED'
+FROM old_rows o;
+RETURN NULL;
+END;
+$$
+language 'plpgsql';
+
+-- Transition tables allow a single event per trigger, hence three triggers per table
+CREATE TRIGGER trigger_books_insert_outbox
+    AFTER INSERT ON books
+    REFERENCING NEW TABLE AS new_rows
+    FOR EACH STATEMENT
+    EXECUTE FUNCTION outbox_from_new_rows('book');
+
+CREATE TRIGGER trigger_books_update_outbox
+    AFTER UPDATE ON books
+    REFERENCING NEW TABLE AS new_rows
+    FOR EACH STATEMENT
+    EXECUTE FUNCTION outbox_from_new_rows('book');
+
+CREATE TRIGGER trigger_books_delete_outbox
+    AFTER DELETE ON books
+    REFERENCING OLD TABLE AS old_rows
+    FOR EACH STATEMENT
+    EXECUTE FUNCTION outbox_from_old_rows('book');
+
+CREATE TRIGGER trigger_authors_insert_outbox
+    AFTER INSERT ON authors
+    REFERENCING NEW TABLE AS new_rows
+    FOR EACH STATEMENT
+    EXECUTE FUNCTION outbox_from_new_rows('author');
+
+CREATE TRIGGER trigger_authors_update_outbox
+    AFTER UPDATE ON authors
+    REFERENCING NEW TABLE AS new_rows
+    FOR EACH STATEMENT
+    EXECUTE FUNCTION outbox_from_new_rows('author');
+
+CREATE TRIGGER trigger_authors_delete_outbox
+    AFTER DELETE ON authors
+    REFERENCING OLD TABLE AS old_rows
+    FOR EACH STATEMENT
+    EXECUTE FUNCTION outbox_from_old_rows('author');
+
+CREATE TRIGGER trigger_genres_insert_outbox
+    AFTER INSERT ON genres
+    REFERENCING NEW TABLE AS new_rows
+    FOR EACH STATEMENT
+    EXECUTE FUNCTION outbox_from_new_rows('genre');
+
+CREATE TRIGGER trigger_genres_update_outbox
+    AFTER UPDATE ON genres
+    REFERENCING NEW TABLE AS new_rows
+    FOR EACH STATEMENT
+    EXECUTE FUNCTION outbox_from_new_rows('genre');
+
+CREATE TRIGGER trigger_genres_delete_outbox
+    AFTER DELETE ON genres
+    REFERENCING OLD TABLE AS old_rows
+    FOR EACH STATEMENT
+    EXECUTE FUNCTION outbox_from_old_rows('genre');
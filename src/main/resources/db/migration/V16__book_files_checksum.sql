@@ -0,0 +1,4 @@
+-- Filled in for uploaded files as the bytes are written; NULL for files registered by path.
+ALTER TABLE book_files ADD COLUMN sha256 CHAR(64);
+
+ALTER TABLE book_files ADD COLUMN size_bytes BIGINT;
@@ -0,0 +1,46 @@
+-- Content-addressed storage for uploaded book files. A blob is stored once per sha256 and counts
+-- the book_files rows that reference it; a trigger keeps the count, so every write path (services,
+-- bulk deletes, imports) maintains it in its own transaction. Blobs at zero since before the grace
+-- period are removed by the background sweep. Only rows stored in the blob store, which always
+-- carry a file_name, are counted; files uploaded earlier stay at their own paths, outside it.
+CREATE TABLE blobs
+(
+    sha256          CHAR(64) PRIMARY KEY,
+    size_bytes      BIGINT      NOT NULL,
+    ref_count       INTEGER     NOT NULL DEFAULT 0,
+    created_at      TIMESTAMPTZ NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    unreferenced_at TIMESTAMPTZ DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE INDEX idx_blobs_unreferenced_at ON blobs (unreferenced_at) WHERE ref_count = 0;
+
+-- Download name of uploaded files; their path is the blob path
+ALTER TABLE book_files ADD COLUMN file_name TEXT;
+
+CREATE INDEX idx_book_files_sha256 ON book_files (sha256);
+
+CREATE
+OR REPLACE FUNCTION book_files_blob_refs()
+RETURNS TRIGGER AS $$
+BEGIN
+IF TG_OP IN ('UPDATE', 'DELETE') AND OLD.sha256 IS NOT NULL AND OLD.file_name IS NOT NULL THEN
+UPDATE blobs
+SET ref_count       = ref_count - 1,
+    unreferenced_at = CASE WHEN ref_count = 1 THEN now() END
+WHERE sha256 = OLD.sha256;
+END IF;
+IF TG_OP IN ('INSERT', 'UPDATE') AND NEW.sha256 IS NOT NULL AND NEW.file_name IS NOT NULL THEN
+INSERT INTO blobs (sha256, size_bytes, ref_count, unreferenced_at)
+VALUES (NEW.sha256, COALESCE(NEW.size_bytes, 0), 1, NULL)
+ON CONFLICT (sha256) DO UPDATE
+    SET ref_count = blobs.ref_count + 1, unreferenced_at = NULL;
+END IF;
+RETURN NULL;
+END;
+$$
+language 'plpgsql';
+
+CREATE TRIGGER trigger_book_files_blob_refs
+    AFTER INSERT OR DELETE OR UPDATE OF sha256, file_name ON book_files
+    FOR EACH ROW
+    EXECUTE FUNCTION book_files_blob_refs();
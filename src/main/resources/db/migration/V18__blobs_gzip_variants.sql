@@ -0,0 +1,7 @@
+-- Precompressed variants of blobs in compressible formats, made by a background job.
+-- compressed_at marks a blob as processed; gzip_size_bytes stays NULL when gzip did not pay off.
+ALTER TABLE blobs ADD COLUMN gzip_size_bytes BIGINT;
+
+ALTER TABLE blobs ADD COLUMN compressed_at TIMESTAMPTZ;
+
+CREATE INDEX idx_blobs_uncompressed ON blobs (sha256) WHERE compressed_at IS NULL;
@@ -0,0 +1,2 @@
+-- Keyset pagination over the catalog seeks on (publication_date, id)
+CREATE INDEX IF NOT EXISTS idx_books_publication_date_id ON books (publication_date, id);
@@ -0,0 +1,176 @@
+package org.dmdev.bookstore.batchTest;
+
+import org.dmdev.bookstore.batch.BookWriteCoalescer;
+import org.dmdev.bookstore.domain.Author;
+import org.dmdev.bookstore.domain.Book;
+import org.dmdev.bookstore.domain.Genre;
+import org.dmdev.bookstore.repository.AuthorRepository;
+import org.dmdev.bookstore.repository.BookFileRepository;
+import org.dmdev.bookstore.repository.BookRepository;
+import org.dmdev.bookstore.repository.GenreRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.*;
+
+public class BookWriteCoalescerTest {
+
+    private static final UUID AUTHOR_ID = UUID.randomUUID();
+    private static final Genre GENRE = new Genre(UUID.randomUUID(), "Fantasy");
+
+    private BookRepository bookRepository;
+    private GenreRepository genreRepository;
+    private BookFileRepository bookFileRepository;
+    private BookWriteCoalescer coalescer;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        bookRepository = mock(BookRepository.class);
+        AuthorRepository authorRepository = mock(AuthorRepository.class);
+        genreRepository = mock(GenreRepository.class);
+        bookFileRepository = mock(BookFileRepository.class);
+        TransactionalOperator transactionalOperator = mock(TransactionalOperator.class);
+        when(transactionalOperator.transactional(any(Mono.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(authorRepository.findAllById(anyCollection())).thenReturn(Flux.just(Author.builder().id(AUTHOR_ID).build()));
+        when(genreRepository.findAllById(anyCollection())).thenReturn(Flux.just(GENRE));
+        when(genreRepository.insertBookGenres(anyList())).thenReturn(Mono.empty());
+        when(bookFileRepository.saveBookFiles(anyList())).thenReturn(Mono.empty());
+        coalescer = new BookWriteCoalescer(bookRepository, authorRepository, genreRepository, bookFileRepository,
+                transactionalOperator, true, 3, Duration.ofSeconds(5), Duration.ofSeconds(30));
+    }
+
+    @Test
+    void shouldInsertConcurrentCreatesInOneBatch() {
+        when(bookRepository.insertAll(anyList())).thenReturn(Mono.just(3L));
+        Book first = book(AUTHOR_ID);
+        Book second = book(AUTHOR_ID);
+        Book orphan = book(UUID.randomUUID());
+
+        StepVerifier.create(Mono.zip(
+                        coalescer.create(first, List.of(GENRE.getId()), List.of()),
+                        coalescer.create(second, List.of(), List.of()),
+                        coalescer.create(orphan, List.of(), List.of()).hasElement()))
+                .assertNext(results -> {
+                    assertEquals(first.getId(), results.getT1().getId());
+                    assertEquals(List.of(GENRE), results.getT1().getGenres());
+                    assertEquals(second.getId(), results.getT2().getId());
+                    assertEquals(false, results.getT3());
+                })
+                .verifyComplete();
+
+        verify(bookRepository).insertAll(List.of(first, second));
+        verify(bookRepository, never()).createAggregate(any(), any(), any());
+    }
+
+    @Test
+    void shouldRetryIndividuallyWhenBatchFails() {
+        Book good = book(AUTHOR_ID);
+        Book bad = book(AUTHOR_ID);
+        Book other = book(AUTHOR_ID);
+        when(bookRepository.insertAll(anyList())).thenReturn(Mono.error(new RuntimeException("value too long")));
+        when(bookRepository.createAggregate(any(), any(), any())).thenAnswer(invocation -> {
+            Book book = invocation.getArgument(0);
+            return book == bad ? Mono.error(new RuntimeException("value too long")) : Mono.just(book);
+        });
+
+        StepVerifier.create(Mono.zip(
+                        coalescer.create(good, List.of(), List.of()),
+                        coalescer.create(bad, List.of(), List.of()).onErrorResume(e -> Mono.just(new Book())),
+                        coalescer.create(other, List.of(), List.of())))
+                .assertNext(results -> {
+                    assertEquals(good, results.getT1());
+                    assertEquals(null, results.getT2().getId());
+                    assertEquals(other, results.getT3());
+                })
+                .verifyComplete();
+
+        verify(bookRepository, times(3)).createAggregate(any(), any(), any());
+    }
+
+    @Test
+    void shouldApplyConcurrentUpdatesInOneBatch() {
+        Book first = book(AUTHOR_ID);
+        Book second = book(AUTHOR_ID);
+        Book stale = book(AUTHOR_ID);
+        when(bookRepository.updateAll(anyList())).thenReturn(Flux.just(first.getId(), second.getId()));
+        when(bookRepository.findAggregatesByIds(List.of(first.getId(), second.getId()))).thenReturn(Flux.just(first, second));
+
+        StepVerifier.create(Mono.zip(
+                        coalescer.update(first, null, null),
+                        coalescer.update(second, null, null),
+                        coalescer.update(stale, null, null).hasElement()))
+                .assertNext(results -> {
+                    assertEquals(first, results.getT1());
+                    assertEquals(second, results.getT2());
+                    assertEquals(false, results.getT3());
+                })
+                .verifyComplete();
+
+        verify(bookRepository).updateAll(List.of(first, second, stale));
+        verify(bookRepository, never()).updateAggregate(any(), any(), any());
+    }
+
+    @Test
+    void shouldReReadInsteadOfReplayingWhenReadAfterUpdateFails() {
+        Book first = book(AUTHOR_ID);
+        Book second = book(AUTHOR_ID);
+        Book third = book(AUTHOR_ID);
+        when(bookRepository.updateAll(anyList())).thenReturn(Flux.just(first.getId(), second.getId(), third.getId()));
+        when(bookRepository.findAggregatesByIds(anyList())).thenReturn(Flux.error(new RuntimeException("connection reset")));
+        when(bookRepository.findAggregateById(any())).thenAnswer(invocation -> Mono.just(
+                Book.builder().id(invocation.getArgument(0)).title("Title").build()));
+
+        StepVerifier.create(Mono.zip(
+                        coalescer.update(first, null, null),
+                        coalescer.update(second, null, null),
+                        coalescer.update(third, null, null)))
+                .assertNext(results -> {
+                    assertEquals(first.getId(), results.getT1().getId());
+                    assertEquals(second.getId(), results.getT2().getId());
+                    assertEquals(third.getId(), results.getT3().getId());
+                })
+                .verifyComplete();
+
+        verify(bookRepository, times(3)).findAggregateById(any());
+        verify(bookRepository, never()).updateAggregate(any(), any(), any());
+    }
+
+    @Test
+    void shouldRetryUpdatesIndividuallyWhenBatchedUpdateFails() {
+        Book first = book(AUTHOR_ID);
+        Book second = book(AUTHOR_ID);
+        Book third = book(AUTHOR_ID);
+        when(bookRepository.updateAll(anyList())).thenReturn(Flux.error(new RuntimeException("deadlock detected")));
+        when(bookRepository.updateAggregate(any(), isNull(), isNull()))
+                .thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+
+        StepVerifier.create(Mono.zip(
+                        coalescer.update(first, null, null),
+                        coalescer.update(second, null, null),
+                        coalescer.update(third, null, null)))
+                .assertNext(results -> assertEquals(List.of(first, second, third),
+                        List.of(results.getT1(), results.getT2(), results.getT3())))
+                .verifyComplete();
+
+        verify(bookRepository, times(3)).updateAggregate(any(), isNull(), isNull());
+        verify(bookRepository, never()).findAggregatesByIds(anyList());
+    }
+
+    private static Book book(UUID authorId) {
+        return Book.builder().id(UUID.randomUUID()).title("Title").authorId(authorId).build();
+    }
+}
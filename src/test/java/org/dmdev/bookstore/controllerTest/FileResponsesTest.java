@@ -0,0 +1,167 @@
+package org.dmdev.bookstore.controllerTest;
+
+import org.dmdev.bookstore.controller.FileResponses;
+import org.dmdev.bookstore.model.BookFileDownload;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import reactor.test.StepVerifier;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class FileResponsesTest {
+
+    private static final String CONTENT = "0123456789abcdefghij";
+
+    @TempDir
+    Path directory;
+
+    private BookFileDownload download;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        Path path = Files.writeString(directory.resolve("book.txt"), CONTENT);
+        download = new BookFileDownload(path, "book.txt", MediaType.TEXT_PLAIN, CONTENT.length(),
+                Files.getLastModifiedTime(path).toInstant(), null, null, CONTENT.length(), "txt");
+    }
+
+    @Test
+    void shouldSendWholeFileWithoutRange() {
+        MockServerWebExchange exchange = send(MockServerHttpRequest.get("/download"));
+
+        assertEquals(HttpStatus.OK, exchange.getResponse().getStatusCode());
+        assertEquals("bytes", exchange.getResponse().getHeaders().getFirst(HttpHeaders.ACCEPT_RANGES));
+        assertEquals(download.etag(), exchange.getResponse().getHeaders().getETag());
+        assertEquals(CONTENT, body(exchange));
+    }
+
+    @Test
+    void shouldSendSingleRange() {
+        MockServerWebExchange exchange = send(MockServerHttpRequest.get("/download").header(HttpHeaders.RANGE, "bytes=5-9"));
+
+        assertEquals(HttpStatus.PARTIAL_CONTENT, exchange.getResponse().getStatusCode());
+        assertEquals("bytes 5-9/20", exchange.getResponse().getHeaders().getFirst(HttpHeaders.CONTENT_RANGE));
+        assertEquals(5, exchange.getResponse().getHeaders().getContentLength());
+        assertEquals("56789", body(exchange));
+    }
+
+    @Test
+    void shouldSendMultipleRangesAsByteranges() {
+        MockServerWebExchange exchange = send(MockServerHttpRequest.get("/download").header(HttpHeaders.RANGE, "bytes=0-1,-3"));
+
+        assertEquals(HttpStatus.PARTIAL_CONTENT, exchange.getResponse().getStatusCode());
+        assertEquals("multipart/byteranges", exchange.getResponse().getHeaders().getContentType().toString().split(";")[0]);
+        String body = body(exchange);
+        assertTrue(body.contains("Content-Range: bytes 0-1/20"));
+        assertTrue(body.contains("Content-Range: bytes 17-19/20"));
+        assertTrue(body.contains("\r\n\r\n01\r\n"));
+        assertTrue(body.contains("\r\n\r\nhij\r\n"));
+    }
+
+    @Test
+    void shouldRejectUnsatisfiableRange() {
+        MockServerWebExchange exchange = send(MockServerHttpRequest.get("/download").header(HttpHeaders.RANGE, "bytes=50-60"));
+
+        assertEquals(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE, exchange.getResponse().getStatusCode());
+        assertEquals("bytes */20", exchange.getResponse().getHeaders().getFirst(HttpHeaders.CONTENT_RANGE));
+    }
+
+    @Test
+    void shouldHonourRangeWhenIfRangeMatches() {
+        String lastModified = DateTimeFormatter.RFC_1123_DATE_TIME.format(download.lastModified().atZone(ZoneOffset.UTC));
+
+        MockServerWebExchange byTag = send(MockServerHttpRequest.get("/download")
+                .header(HttpHeaders.RANGE, "bytes=10-")
+                .header(HttpHeaders.IF_RANGE, download.etag()));
+        MockServerWebExchange byDate = send(MockServerHttpRequest.get("/download")
+                .header(HttpHeaders.RANGE, "bytes=10-")
+                .header(HttpHeaders.IF_RANGE, lastModified));
+
+        assertEquals(HttpStatus.PARTIAL_CONTENT, byTag.getResponse().getStatusCode());
+        assertEquals("abcdefghij", body(byTag));
+        assertEquals(HttpStatus.PARTIAL_CONTENT, byDate.getResponse().getStatusCode());
+    }
+
+    @Test
+    void shouldSendWholeFileWhenIfRangeIsStale() {
+        MockServerWebExchange exchange = send(MockServerHttpRequest.get("/download")
+                .header(HttpHeaders.RANGE, "bytes=10-")
+                .header(HttpHeaders.IF_RANGE, "\"stale\""));
+
+        assertEquals(HttpStatus.OK, exchange.getResponse().getStatusCode());
+        assertEquals(CONTENT, body(exchange));
+    }
+
+    @Test
+    void shouldAnswerNotModifiedForMatchingEtag() {
+        MockServerWebExchange exchange = send(MockServerHttpRequest.get("/download")
+                .header(HttpHeaders.IF_NONE_MATCH, download.etag()));
+
+        assertEquals(HttpStatus.NOT_MODIFIED, exchange.getResponse().getStatusCode());
+    }
+
+    @Test
+    void shouldLabelPrecompressedVariant() throws Exception {
+        Path gzip = Files.write(directory.resolve("book.txt.gz"), new byte[]{1, 2, 3});
+        download = new BookFileDownload(gzip, "book.txt", MediaType.TEXT_PLAIN, 3, download.lastModified(), "ab".repeat(32), "gzip",
+                CONTENT.length(), "txt");
+
+        MockServerWebExchange exchange = send(MockServerHttpRequest.get("/download"));
+
+        assertEquals("gzip", exchange.getResponse().getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+        assertEquals(List.of(HttpHeaders.ACCEPT_ENCODING), exchange.getResponse().getHeaders().getVary());
+        assertEquals(3, exchange.getResponse().getHeaders().getContentLength());
+    }
+
+    @Test
+    void shouldReportOnlyWholeBodiesSentToGet() {
+        AtomicInteger fullBodies = new AtomicInteger();
+        List.of(MockServerHttpRequest.get("/download"),
+                        MockServerHttpRequest.get("/download").header(HttpHeaders.RANGE, "bytes=0-4"),
+                        MockServerHttpRequest.get("/download").header(HttpHeaders.IF_NONE_MATCH, download.etag()),
+                        MockServerHttpRequest.head("/download"))
+                .forEach(request -> StepVerifier.create(FileResponses.send(MockServerWebExchange.from(request),
+                        download, fullBodies::incrementAndGet)).verifyComplete());
+
+        assertEquals(1, fullBodies.get());
+    }
+
+    @Test
+    void shouldNegotiateGzipFromAcceptEncoding() {
+        assertTrue(FileResponses.acceptsGzip(acceptEncoding("gzip, deflate, br")));
+        assertTrue(FileResponses.acceptsGzip(acceptEncoding("br;q=1.0, *;q=0.5")));
+        assertFalse(FileResponses.acceptsGzip(acceptEncoding("gzip;q=0, *")));
+        assertFalse(FileResponses.acceptsGzip(acceptEncoding("identity")));
+        assertFalse(FileResponses.acceptsGzip(MockServerHttpRequest.get("/download").build()));
+    }
+
+    private static MockServerHttpRequest acceptEncoding(String value) {
+        return MockServerHttpRequest.get("/download").header(HttpHeaders.ACCEPT_ENCODING, value).build();
+    }
+
+    private MockServerWebExchange send(MockServerHttpRequest.BaseBuilder<?> request) {
+        MockServerWebExchange exchange = MockServerWebExchange.from(request);
+        StepVerifier.create(FileResponses.send(exchange, download)).verifyComplete();
+        return exchange;
+    }
+
+    private static String body(MockServerWebExchange exchange) {
+        return exchange.getResponse().getBodyAsString().block();
+    }
+}
@@ -0,0 +1,97 @@
+package org.dmdev.bookstore.indexTest;
+
+import org.dmdev.bookstore.domain.BookGenre;
+import org.dmdev.bookstore.index.GenreIndex;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class GenreIndexTest {
+
+    private static final UUID DRAMA = UUID.randomUUID();
+    private static final UUID HISTORY = UUID.randomUUID();
+    private static final UUID ROMANCE = UUID.randomUUID();
+
+    private static final UUID WAR_AND_PEACE = UUID.randomUUID();
+    private static final UUID ANNA_KARENINA = UUID.randomUUID();
+    private static final UUID BORODINO = UUID.randomUUID();
+
+    private GenreIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new GenreIndex();
+        index.addBookGenres(WAR_AND_PEACE, List.of(DRAMA, HISTORY, ROMANCE));
+        index.addBookGenres(ANNA_KARENINA, List.of(DRAMA, ROMANCE));
+        index.addBookGenres(BORODINO, List.of(HISTORY));
+    }
+
+    @Test
+    void query_ShouldIntersectAllGenres() {
+        GenreIndex.Result result = index.query(List.of(DRAMA, HISTORY), List.of(), List.of(), 0, 10);
+
+        assertEquals(1, result.total());
+        assertEquals(List.of(WAR_AND_PEACE), result.bookIds());
+        assertEquals(Map.of(DRAMA, 1, HISTORY, 1, ROMANCE, 1), result.facets());
+    }
+
+    @Test
+    void query_ShouldCombineAnyAndNone() {
+        GenreIndex.Result result = index.query(List.of(), List.of(HISTORY, ROMANCE), List.of(DRAMA), 0, 10);
+
+        assertEquals(List.of(BORODINO), result.bookIds());
+        assertEquals(Map.of(HISTORY, 1), result.facets());
+    }
+
+    @Test
+    void query_ShouldPageThroughMatches() {
+        GenreIndex.Result first = index.query(List.of(), List.of(DRAMA, HISTORY), List.of(), 0, 2);
+        GenreIndex.Result second = index.query(List.of(), List.of(DRAMA, HISTORY), List.of(), 2, 2);
+
+        assertEquals(3, first.total());
+        assertEquals(2, first.bookIds().size());
+        assertEquals(1, second.bookIds().size());
+        assertEquals(Set.of(WAR_AND_PEACE, ANNA_KARENINA, BORODINO),
+                Set.of(first.bookIds().get(0), first.bookIds().get(1), second.bookIds().get(0)));
+    }
+
+    @Test
+    void removeBook_ShouldDropItFromEveryGenre() {
+        index.removeBook(WAR_AND_PEACE);
+
+        GenreIndex.Result result = index.query(List.of(), List.of(DRAMA, HISTORY), List.of(), 0, 10);
+        assertEquals(Set.of(ANNA_KARENINA, BORODINO), Set.copyOf(result.bookIds()));
+    }
+
+    @Test
+    void load_ShouldSkipRowsOfBooksAndGenresChangedMeanwhile() {
+        GenreIndex loading = new GenreIndex();
+        loading.removeBook(WAR_AND_PEACE);
+        loading.replaceBookGenres(ANNA_KARENINA, List.of(ROMANCE));
+        loading.removeGenre(HISTORY);
+
+        loading.load(List.of(
+                new BookGenre(WAR_AND_PEACE, DRAMA),
+                new BookGenre(ANNA_KARENINA, DRAMA),
+                new BookGenre(BORODINO, HISTORY),
+                new BookGenre(BORODINO, DRAMA)));
+        loading.markReady();
+
+        GenreIndex.Result result = loading.query(List.of(), List.of(DRAMA, HISTORY, ROMANCE), List.of(), 0, 10);
+        assertEquals(Set.of(ANNA_KARENINA, BORODINO), Set.copyOf(result.bookIds()));
+        assertEquals(Map.of(DRAMA, 1, ROMANCE, 1), result.facets());
+    }
+
+    @Test
+    void query_ShouldRequireAPositiveTerm() {
+        assertThrows(IllegalArgumentException.class,
+                () -> index.query(List.of(), List.of(), List.of(DRAMA), 0, 10));
+    }
+}
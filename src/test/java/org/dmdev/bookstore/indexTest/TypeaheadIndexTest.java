@@ -0,0 +1,93 @@
+package org.dmdev.bookstore.indexTest;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.dmdev.bookstore.domain.Author;
+import org.dmdev.bookstore.domain.Book;
+import org.dmdev.bookstore.dto.SuggestionDTO;
+import org.dmdev.bookstore.index.TypeaheadIndex;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TypeaheadIndexTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private TypeaheadIndex index;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        index = new TypeaheadIndex(meterRegistry);
+    }
+
+    @Test
+    void suggest_ShouldMatchWordsInsideTitleIgnoringCaseAndDiacritics() {
+        Book book = Book.builder().id(UUID.randomUUID()).title("Война и Мир: Épopée").build();
+        index.putBook(book);
+
+        assertEquals(List.of(book.getId()), ids(index.suggest("мир", 10)));
+        assertEquals(List.of(book.getId()), ids(index.suggest("EPO", 10)));
+        assertTrue(index.suggest("peace", 10).isEmpty());
+    }
+
+    @Test
+    void suggest_ShouldReturnEachEntityOnceAndRespectLimit() {
+        Book book = Book.builder().id(UUID.randomUUID()).title("Night and night").build();
+        Author author = Author.builder().id(UUID.randomUUID()).firstname("Nina").lastname("Nightingale").build();
+        index.putBook(book);
+        index.putAuthor(author);
+
+        List<SuggestionDTO> suggestions = index.suggest("ni", 10);
+        assertEquals(2, suggestions.size());
+        assertEquals(1, index.suggest("ni", 1).size());
+    }
+
+    @Test
+    void putBook_ShouldReplacePreviousTitle() {
+        Book book = Book.builder().id(UUID.randomUUID()).title("Crime").build();
+        index.putBook(book);
+        index.putBook(Book.builder().id(book.getId()).title("Punishment").build());
+
+        assertTrue(index.suggest("cri", 10).isEmpty());
+        assertEquals("Punishment", index.suggest("pun", 10).get(0).text());
+    }
+
+    @Test
+    void remove_ShouldReleaseMemory() {
+        Book book = Book.builder().id(UUID.randomUUID()).title("Demons").build();
+        index.putBook(book);
+        assertTrue(meterRegistry.get("bookstore.typeahead.memory").gauge().value() > 0);
+
+        index.remove(book.getId());
+
+        assertTrue(index.suggest("dem", 10).isEmpty());
+        assertEquals(0, index.estimatedMemoryBytes());
+    }
+
+    @Test
+    void loadBook_ShouldSkipBooksChangedDuringLoad() {
+        Book renamed = Book.builder().id(UUID.randomUUID()).title("Idiot").build();
+        Book deleted = Book.builder().id(UUID.randomUUID()).title("Demons").build();
+        Book untouched = Book.builder().id(UUID.randomUUID()).title("Poor Folk").build();
+        index.putBook(Book.builder().id(renamed.getId()).title("The Idiot").build());
+        index.remove(deleted.getId());
+
+        index.loadBook(renamed);
+        index.loadBook(deleted);
+        index.loadBook(untouched);
+        index.finishLoad();
+
+        assertEquals("The Idiot", index.suggest("idiot", 10).get(0).text());
+        assertTrue(index.suggest("dem", 10).isEmpty());
+        assertEquals(List.of(untouched.getId()), ids(index.suggest("poor", 10)));
+    }
+
+    private static List<UUID> ids(List<SuggestionDTO> suggestions) {
+        return suggestions.stream().map(SuggestionDTO::id).toList();
+    }
+}
@@ -0,0 +1,136 @@
+package org.dmdev.bookstore.repositoryTest;
+
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.dmdev.bookstore.domain.BookGenre;
+import org.dmdev.bookstore.repository.custom.impl.CustomGenreRepositoryImpl;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.BiFunction;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Book-genre link throughput, one INSERT per row versus multi-row INSERTs. Run with
+ * {@code mvn test -Dtest=BatchInsertBenchmarkTest -Dbenchmark=true [-Dbenchmark.books=5000]}.
+ */
+@Slf4j
+@Testcontainers(disabledWithoutDocker = true)
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+public class BatchInsertBenchmarkTest {
+
+    @Container
+    static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>("postgres:16-alpine");
+
+    private static final int BOOKS = Integer.getInteger("benchmark.books", 5_000);
+    private static final int GENRES_PER_BOOK = 12;
+
+    private static final List<UUID> bookIds = new ArrayList<>();
+    private static final List<UUID> genreIds = new ArrayList<>();
+
+    private R2dbcEntityTemplate template;
+
+    @BeforeAll
+    static void seed() throws SQLException {
+        Flyway.configure()
+                .dataSource(POSTGRES.getJdbcUrl(), POSTGRES.getUsername(), POSTGRES.getPassword())
+                .load()
+                .migrate();
+        try (Connection connection = connect(); Statement statement = connection.createStatement()) {
+            statement.execute("INSERT INTO authors (firstname, lastname, birthdate) VALUES ('Leo', 'Tolstoy', DATE '1828-09-09')");
+            statement.execute("""
+                    INSERT INTO books (isbn, title, pages, publication_date, author_id)
+                    SELECT lpad(i::text, 13, '978'), 'Book ' || i, 100, DATE '1900-01-01' + i, (SELECT id FROM authors)
+                    FROM generate_series(1, %d) AS i
+                    """.formatted(BOOKS));
+            statement.execute("""
+                    INSERT INTO genres (name)
+                    SELECT 'Genre ' || i FROM generate_series(1, %d) AS i
+                    """.formatted(GENRES_PER_BOOK));
+            try (ResultSet rows = statement.executeQuery("SELECT id FROM books")) {
+                while (rows.next()) {
+                    bookIds.add(rows.getObject(1, UUID.class));
+                }
+            }
+            try (ResultSet rows = statement.executeQuery("SELECT id FROM genres")) {
+                while (rows.next()) {
+                    genreIds.add(rows.getObject(1, UUID.class));
+                }
+            }
+        }
+    }
+
+    @BeforeEach
+    void connectAndTruncate() throws SQLException {
+        ConnectionFactory connectionFactory = ConnectionFactories.get("r2dbc:pool:postgresql://%s:%s@%s:%d/%s".formatted(
+                POSTGRES.getUsername(), POSTGRES.getPassword(), POSTGRES.getHost(),
+                POSTGRES.getMappedPort(PostgreSQLContainer.POSTGRESQL_PORT), POSTGRES.getDatabaseName()));
+        template = new R2dbcEntityTemplate(connectionFactory);
+        try (Connection connection = connect(); Statement statement = connection.createStatement()) {
+            statement.execute("TRUNCATE book_genres");
+        }
+    }
+
+    @Test
+    void rowPerStatement() {
+        measure("row per statement", (bookId, genres) -> Flux.fromIterable(genres)
+                .flatMap(genreId -> template.insert(BookGenre.class).using(new BookGenre(bookId, genreId)))
+                .then());
+    }
+
+    @Test
+    void multiRowStatement() {
+        CustomGenreRepositoryImpl repository = new CustomGenreRepositoryImpl(template);
+        ReflectionTestUtils.setField(repository, "chunkSize", 500);
+        measure("multi-row statement", (bookId, genres) -> repository.insertBookGenres(genres.stream()
+                .map(genreId -> new BookGenre(bookId, genreId))
+                .toList()));
+    }
+
+    private void measure(String label, BiFunction<UUID, List<UUID>, Mono<Void>> saveBookGenres) {
+        long start = System.nanoTime();
+        Flux.fromIterable(bookIds)
+                .concatMap(bookId -> saveBookGenres.apply(bookId, genreIds))
+                .blockLast();
+        double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+        long rows = (long) BOOKS * GENRES_PER_BOOK;
+        log.info("{}: {} book-genre rows in {}s, {} rows/s", label, rows,
+                String.format("%.2f", seconds), String.format("%.0f", rows / seconds));
+        assertEquals(rows, countLinks());
+    }
+
+    private static long countLinks() {
+        try (Connection connection = connect();
+             Statement statement = connection.createStatement();
+             ResultSet rows = statement.executeQuery("SELECT count(*) FROM book_genres")) {
+            rows.next();
+            return rows.getLong(1);
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Connection connect() throws SQLException {
+        return DriverManager.getConnection(POSTGRES.getJdbcUrl(), POSTGRES.getUsername(), POSTGRES.getPassword());
+    }
+}
@@ -0,0 +1,111 @@
+package org.dmdev.bookstore.repositoryTest;
+
+import lombok.extern.slf4j.Slf4j;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Search latency against a synthetic catalog. Run with
+ * {@code mvn test -Dtest=BookSearchBenchmarkTest -Dbenchmark=true [-Dbenchmark.books=2000000]}.
+ */
+@Slf4j
+@Testcontainers(disabledWithoutDocker = true)
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+public class BookSearchBenchmarkTest {
+
+    @Container
+    static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>("postgres:16-alpine");
+
+    private static final int BOOKS = Integer.getInteger("benchmark.books", 2_000_000);
+    private static final int AUTHORS = Math.max(1, BOOKS / 40);
+    private static final int ITERATIONS = 200;
+    private static final List<String> QUERIES = List.of("war peace", "tolstoy", "night", "9780000001234");
+
+    private static final String SEARCH = """
+            SELECT b.*, ts_rank(b.search_vector, q.query) AS rank
+            FROM books b, websearch_to_tsquery('simple', ?) AS q(query)
+            WHERE b.search_vector @@ q.query
+            ORDER BY rank DESC, b.id DESC
+            LIMIT 10
+            """;
+
+    @BeforeAll
+    static void seed() throws SQLException {
+        Flyway.configure()
+                .dataSource(POSTGRES.getJdbcUrl(), POSTGRES.getUsername(), POSTGRES.getPassword())
+                .load()
+                .migrate();
+        try (Connection connection = connect(); Statement statement = connection.createStatement()) {
+            statement.execute("""
+                    INSERT INTO authors (firstname, lastname, birthdate)
+                    SELECT (ARRAY['Leo','Fyodor','Anna','Ivan','Maria'])[1 + i % 5],
+                           (ARRAY['Tolstoy','Dostoevsky','Akhmatova','Turgenev','Shelley'])[1 + (i / 5) % 5] || i,
+                           DATE '1800-01-01' + i % 50000
+                    FROM generate_series(1, %d) AS i
+                    """.formatted(AUTHORS));
+            statement.execute("""
+                    INSERT INTO books (isbn, title, pages, publication_date, author_id)
+                    SELECT lpad(i::text, 13, '978'),
+                           (ARRAY['War','Peace','Night','Crime','Idiot','Demons','Fathers','Sons'])[1 + i % 8] || ' and '
+                               || (ARRAY['Peace','Punishment','Day','Sons','Smoke','Spring'])[1 + (i / 8) % 6] || ' ' || i,
+                           100 + i % 900,
+                           DATE '1900-01-01' + i % 40000,
+                           a.id
+                    FROM generate_series(1, %d) AS i
+                    JOIN (SELECT id, row_number() OVER () AS n FROM authors) a ON a.n = 1 + i % %d
+                    """.formatted(BOOKS, AUTHORS));
+            statement.execute("ANALYZE books");
+        }
+    }
+
+    @Test
+    void searchLatency() throws SQLException {
+        try (Connection connection = connect(); PreparedStatement search = connection.prepareStatement(SEARCH)) {
+            for (String query : QUERIES) {
+                long[] nanos = new long[ITERATIONS];
+                for (int i = -ITERATIONS / 10; i < ITERATIONS; i++) {
+                    long start = System.nanoTime();
+                    search.setString(1, query);
+                    try (ResultSet rows = search.executeQuery()) {
+                        while (rows.next()) {
+                            rows.getString("id");
+                        }
+                    }
+                    if (i >= 0) {
+                        nanos[i] = System.nanoTime() - start;
+                    }
+                }
+                Arrays.sort(nanos);
+                log.info("search '{}' over {} books: p50={}ms p95={}ms p99={}ms", query, BOOKS,
+                        String.format("%.2f", percentile(nanos, 50)), String.format("%.2f", percentile(nanos, 95)),
+                        String.format("%.2f", percentile(nanos, 99)));
+                assertTrue(percentile(nanos, 50) > 0);
+            }
+        }
+    }
+
+    private static double percentile(long[] sortedNanos, int percentile) {
+        int index = Math.min(sortedNanos.length - 1, sortedNanos.length * percentile / 100);
+        return sortedNanos[index] / 1_000_000.0;
+    }
+
+    private static Connection connect() throws SQLException {
+        return DriverManager.getConnection(POSTGRES.getJdbcUrl(), POSTGRES.getUsername(), POSTGRES.getPassword());
+    }
+}
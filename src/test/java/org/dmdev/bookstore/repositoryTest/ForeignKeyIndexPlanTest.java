@@ -0,0 +1,85 @@
+package org.dmdev.bookstore.repositoryTest;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.StringJoiner;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Fails if a foreign-key lookup falls back from its V12 index. Sequential scans are disabled,
+ * and the plan must use the expected index with the foreign key as its index condition; a scan
+ * of some other index filtering on the column does not count.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+public class ForeignKeyIndexPlanTest {
+
+    @Container
+    static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>("postgres:16-alpine");
+
+    private static final UUID ID = UUID.randomUUID();
+
+    @BeforeAll
+    static void migrate() throws SQLException {
+        Flyway.configure()
+                .dataSource(POSTGRES.getJdbcUrl(), POSTGRES.getUsername(), POSTGRES.getPassword())
+                .load()
+                .migrate();
+        try (Connection connection = connect(); Statement statement = connection.createStatement()) {
+            statement.execute("ANALYZE");
+        }
+    }
+
+    @Test
+    void booksByAuthorUseIndex() throws SQLException {
+        assertIndexLookup("""
+                SELECT * FROM books WHERE author_id = '%s'
+                ORDER BY publication_date, id LIMIT 20
+                """.formatted(ID), "idx_books_author_id_publication_date", "author_id");
+    }
+
+    @Test
+    void filesByBookUseIndex() throws SQLException {
+        assertIndexLookup("SELECT * FROM book_files WHERE book_id = '%s'".formatted(ID),
+                "idx_book_files_book_id", "book_id");
+    }
+
+    @Test
+    void booksByGenreUseIndex() throws SQLException {
+        assertIndexLookup("SELECT book_id FROM book_genres WHERE genre_id = '%s'".formatted(ID),
+                "idx_book_genres_genre_id", "genre_id");
+    }
+
+    private static void assertIndexLookup(String query, String index, String column) throws SQLException {
+        try (Connection connection = connect(); Statement statement = connection.createStatement()) {
+            statement.execute("SET enable_seqscan = off");
+            StringJoiner plan = new StringJoiner("\n");
+            try (ResultSet rows = statement.executeQuery("EXPLAIN " + query)) {
+                while (rows.next()) {
+                    plan.add(rows.getString(1));
+                }
+            }
+            String text = plan.toString();
+            assertFalse(text.contains("Seq Scan"), () -> "Sequential scan in plan:\n" + text);
+            assertTrue(text.contains(" " + index + " "), () -> "Plan does not use " + index + ":\n" + text);
+            assertTrue(text.contains("Index Cond: (" + column + " = "),
+                    () -> "No index condition on " + column + ":\n" + text);
+        }
+    }
+
+    private static Connection connect() throws SQLException {
+        return DriverManager.getConnection(POSTGRES.getJdbcUrl(), POSTGRES.getUsername(), POSTGRES.getPassword());
+    }
+}
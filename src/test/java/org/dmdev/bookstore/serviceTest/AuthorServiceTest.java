@@ -1,13 +1,20 @@
 package org.dmdev.bookstore.serviceTest;
 
 import org.dmdev.bookstore.domain.Author;
+import org.dmdev.bookstore.domain.Book;
+import org.dmdev.bookstore.dto.AuthorBooksDTO;
+import org.dmdev.bookstore.dto.BookDTO;
 import org.dmdev.bookstore.dto.AuthorDTO;
+import org.dmdev.bookstore.index.TypeaheadIndex;
 import org.dmdev.bookstore.mapper.AuthorMapper;
+import org.dmdev.bookstore.mapper.BookMapper;
+import org.dmdev.bookstore.model.AuthorBooksPage;
 import org.dmdev.bookstore.model.ResponseModel;
 import org.dmdev.bookstore.repository.AuthorRepository;
 import org.dmdev.bookstore.service.AuthorService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.springframework.dao.OptimisticLockingFailureException;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
@@ -24,6 +31,8 @@ public class AuthorServiceTest {
     private AuthorService authorService;
     private AuthorMapper authorMapper;
     private AuthorRepository authorRepository;
+    private TypeaheadIndex typeaheadIndex;
+    private BookMapper bookMapper;
 
     private static UUID ID_1 = UUID.randomUUID();
     private static UUID ID_2 = UUID.randomUUID();
@@ -34,6 +43,7 @@ public class AuthorServiceTest {
             .lastname("Tolstoy")
             .birthdate(LocalDate.of(1828, 9, 9))
             .dateOfDeath(LocalDate.of(1910, 11, 20))
+            .version(0L)
             .build();
 
     static final Author AUTHOR_2 = Author.builder()
@@ -42,24 +52,28 @@ public class AuthorServiceTest {
             .lastname("Dostoevsky")
             .birthdate(LocalDate.of(1821, 11, 11))
             .dateOfDeath(LocalDate.of(1881, 2, 9))
+            .version(0L)
             .build();
 
     static final AuthorDTO AUTHOR_DTO_1 = new AuthorDTO(
             ID_1, "Leo", "Tolstoy",
             LocalDate.of(1828, 9, 9),
-            LocalDate.of(1910, 11, 20)
+            LocalDate.of(1910, 11, 20),
+            0L
     );
 
     static final AuthorDTO AUTHOR_DTO_2 = new AuthorDTO(
             ID_2, "Fyodor", "Dostoevsky",
             LocalDate.of(1821, 11, 11),
-            LocalDate.of(1881, 2, 9)
+            LocalDate.of(1881, 2, 9),
+            0L
     );
 
     private static final AuthorDTO VALID_AUTHOR_DTO = new AuthorDTO(
             null, "Leo", "Tolstoy",
             LocalDate.of(1828, 9, 9),
-            LocalDate.of(1910, 11, 20)
+            LocalDate.of(1910, 11, 20),
+            null
     );
 
     private static final Author MAPPED_AUTHOR = Author.builder()
@@ -73,7 +87,9 @@ public class AuthorServiceTest {
     void setUp() {
         authorRepository = mock(AuthorRepository.class);
         authorMapper = new AuthorMapper();
-        authorService = new AuthorService(authorRepository, authorMapper);
+        typeaheadIndex = mock(TypeaheadIndex.class);
+        bookMapper = mock(BookMapper.class);
+        authorService = new AuthorService(authorRepository, authorMapper, typeaheadIndex, bookMapper);
     }
 
     @Test
@@ -92,7 +108,7 @@ public class AuthorServiceTest {
     @Test
     void save_ShouldReturnSuccess_WhenAuthorIsNew() {
         AuthorDTO newDto = AUTHOR_DTO_2.toBuilder().id(null).build();
-        Author mappedAuthor = AUTHOR_2.toBuilder().id(null).build();
+        Author mappedAuthor = AUTHOR_2.toBuilder().id(null).version(null).build();
         Author savedAuthor = AUTHOR_2;
 
         //when(authorMapper.dtoToAuthor(newDto)).thenReturn(mappedAuthor);
@@ -106,6 +122,22 @@ public class AuthorServiceTest {
                     assertEquals(savedAuthor, response.getData());
                 })
                 .verifyComplete();
+
+        verify(typeaheadIndex).putAuthor(savedAuthor);
+    }
+
+    @Test
+    void save_ShouldInsert_WhenNewAuthorCarriesVersion() {
+        AuthorDTO newDto = AUTHOR_DTO_2.toBuilder().id(null).version(3L).build();
+        Author mappedAuthor = AUTHOR_2.toBuilder().id(null).version(null).build();
+        when(authorRepository.save(mappedAuthor)).thenReturn(Mono.just(AUTHOR_2));
+
+        authorService.save(newDto)
+                .as(StepVerifier::create)
+                .assertNext(response -> assertEquals(ResponseModel.SUCCESS_STATUS, response.getStatus()))
+                .verifyComplete();
+
+        verify(authorRepository).save(mappedAuthor);
     }
 
     @Test
@@ -192,7 +224,7 @@ public class AuthorServiceTest {
 
     @Test
     void update_ShouldReturnFail_WhenIdIsNull() {
-        AuthorDTO dtoWithNullId = new AuthorDTO(null, "Leo", "Tolstoy", null, null);
+        AuthorDTO dtoWithNullId = new AuthorDTO(null, "Leo", "Tolstoy", null, null, null);
 
         StepVerifier.create(authorService.update(dtoWithNullId))
                 .assertNext(response -> {
@@ -203,4 +235,71 @@ public class AuthorServiceTest {
 
         verifyNoInteractions(authorRepository);
     }
+
+    @Test
+    void findWithBooks_ShouldReturnAuthorAndBookPage() {
+        Book book = Book.builder().id(UUID.randomUUID()).title("War and Peace").authorId(ID_1).build();
+        BookDTO bookDTO = BookDTO.builder().id(book.getId()).title("War and Peace").authorId(ID_1).build();
+        Author author = AUTHOR_1.toBuilder().books(List.of(book)).build();
+        when(authorRepository.findWithBooks(ID_1, 20, 20)).thenReturn(Mono.just(new AuthorBooksPage(author, 21)));
+        when(bookMapper.bookToDto(book)).thenReturn(bookDTO);
+
+        authorService.findWithBooks(ID_1, 2, 20)
+                .as(StepVerifier::create)
+                .assertNext(response -> {
+                    assertEquals(ResponseModel.SUCCESS_STATUS, response.getStatus());
+                    AuthorBooksDTO data = (AuthorBooksDTO) response.getData();
+                    assertEquals(AUTHOR_DTO_1, data.author());
+                    assertEquals(List.of(bookDTO), data.books());
+                    assertEquals(21, data.totalBooks());
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    void findWithBooks_ShouldReturnFail_WhenAuthorNotFound() {
+        when(authorRepository.findWithBooks(ID_2, 100, 0)).thenReturn(Mono.empty());
+
+        authorService.findWithBooks(ID_2, 1, 500)
+                .as(StepVerifier::create)
+                .assertNext(response -> {
+                    assertEquals(ResponseModel.FAIL_STATUS, response.getStatus());
+                    assertEquals("Author not found", response.getMessage());
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    void findWithBooks_ShouldRejectPageBelowOneAndTooDeepOffset() {
+        StepVerifier.create(authorService.findWithBooks(ID_1, 0, 20))
+                .assertNext(response -> assertEquals(ResponseModel.FAIL_STATUS, response.getStatus()))
+                .verifyComplete();
+        StepVerifier.create(authorService.findWithBooks(ID_1, Integer.MAX_VALUE, 100))
+                .assertNext(response -> assertEquals("Page is too deep", response.getMessage()))
+                .verifyComplete();
+
+        verifyNoInteractions(authorRepository);
+    }
+
+    @Test
+    void update_ShouldReturnConflict_WhenVersionIsStale() {
+        when(authorRepository.save(AUTHOR_1)).thenReturn(Mono.error(new OptimisticLockingFailureException("stale")));
+        when(authorRepository.existsById(ID_1)).thenReturn(Mono.just(true));
+
+        StepVerifier.create(authorService.update(AUTHOR_DTO_1))
+                .assertNext(response -> assertEquals(ResponseModel.CONFLICT_STATUS, response.getStatus()))
+                .verifyComplete();
+
+        verify(authorRepository, never()).findById(ID_1);
+        verifyNoInteractions(typeaheadIndex);
+    }
+
+    @Test
+    void update_ShouldReturnFail_WhenVersionIsNull() {
+        StepVerifier.create(authorService.update(AUTHOR_DTO_1.toBuilder().version(null).build()))
+                .assertNext(response -> assertEquals("Author version must not be null", response.getMessage()))
+                .verifyComplete();
+
+        verifyNoInteractions(authorRepository);
+    }
 }
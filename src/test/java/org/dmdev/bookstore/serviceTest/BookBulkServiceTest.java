@@ -0,0 +1,154 @@
+package org.dmdev.bookstore.serviceTest;
+
+import org.dmdev.bookstore.cache.BookCache;
+import org.dmdev.bookstore.domain.Genre;
+import org.dmdev.bookstore.dto.BulkBookUpdateDTO;
+import org.dmdev.bookstore.dto.BulkResultDTO;
+import org.dmdev.bookstore.index.GenreIndex;
+import org.dmdev.bookstore.index.TypeaheadIndex;
+import org.dmdev.bookstore.model.BookFilter;
+import org.dmdev.bookstore.model.ResponseModel;
+import org.dmdev.bookstore.repository.AuthorRepository;
+import org.dmdev.bookstore.repository.BookFileRepository;
+import org.dmdev.bookstore.repository.BookRepository;
+import org.dmdev.bookstore.repository.GenreRepository;
+import org.dmdev.bookstore.service.BookBulkService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.*;
+
+public class BookBulkServiceTest {
+
+    private static final UUID AUTHOR_ID = UUID.randomUUID();
+    private static final UUID GENRE_ID = UUID.randomUUID();
+    private static final UUID BOOK_1 = UUID.fromString("00000000-0000-0000-0000-000000000001");
+    private static final UUID BOOK_2 = UUID.fromString("00000000-0000-0000-0000-000000000002");
+    private static final UUID BOOK_3 = UUID.fromString("00000000-0000-0000-0000-000000000003");
+
+    private BookBulkService bulkService;
+    private BookRepository bookRepository;
+    private AuthorRepository authorRepository;
+    private GenreRepository genreRepository;
+    private BookFileRepository bookFileRepository;
+    private TypeaheadIndex typeaheadIndex;
+    private GenreIndex genreIndex;
+    private BookCache bookCache;
+    private TransactionalOperator transactionalOperator;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        bookRepository = mock(BookRepository.class);
+        authorRepository = mock(AuthorRepository.class);
+        genreRepository = mock(GenreRepository.class);
+        bookFileRepository = mock(BookFileRepository.class);
+        typeaheadIndex = mock(TypeaheadIndex.class);
+        genreIndex = mock(GenreIndex.class);
+        bookCache = mock(BookCache.class);
+        transactionalOperator = mock(TransactionalOperator.class);
+        when(transactionalOperator.transactional(any(Mono.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        bulkService = new BookBulkService(bookRepository, authorRepository, genreRepository, bookFileRepository,
+                typeaheadIndex, genreIndex, bookCache, transactionalOperator);
+        ReflectionTestUtils.setField(bulkService, "chunkSize", 2);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void shouldDeleteInChunksWithOneTransactionEach() {
+        BookFilter filter = new BookFilter(null, AUTHOR_ID, null, null, null);
+        when(bookRepository.findIdsByFilter(filter, null, 2)).thenReturn(Flux.just(BOOK_1, BOOK_2));
+        when(bookRepository.findIdsByFilter(filter, BOOK_2, 2)).thenReturn(Flux.just(BOOK_3));
+        when(bookFileRepository.deleteAllByBookIds(anyList())).thenReturn(Mono.just(1L));
+        when(bookRepository.deleteAllByIds(anyList())).thenAnswer(invocation ->
+                Mono.just((long) invocation.getArgument(0, List.class).size()));
+
+        StepVerifier.create(bulkService.delete(filter))
+                .expectNextMatches(response -> {
+                    BulkResultDTO result = (BulkResultDTO) response.getData();
+                    return ResponseModel.SUCCESS_STATUS.equals(response.getStatus())
+                            && result.matched() == 3
+                            && result.booksAffected() == 3
+                            && result.filesDeleted() == 2
+                            && result.transactions() == 2;
+                })
+                .verifyComplete();
+
+        verify(transactionalOperator, times(2)).transactional(any(Mono.class));
+        verify(bookFileRepository).deleteAllByBookIds(List.of(BOOK_1, BOOK_2));
+        verify(bookRepository).deleteAllByIds(List.of(BOOK_3));
+        verify(bookCache).invalidateAll(List.of(BOOK_1, BOOK_2));
+        verify(bookCache).invalidateAll(List.of(BOOK_3));
+        verify(typeaheadIndex).remove(BOOK_3);
+        verify(genreIndex).removeBook(BOOK_1);
+    }
+
+    @Test
+    void shouldRejectDeleteWithoutCriteria() {
+        StepVerifier.create(bulkService.delete(new BookFilter(List.of(), null, null, null, null)))
+                .expectNextMatches(response -> ResponseModel.FAIL_STATUS.equals(response.getStatus()))
+                .verifyComplete();
+
+        verify(bookRepository, never()).findIdsByFilter(any(), any(), anyInt());
+    }
+
+    @Test
+    void shouldRetagGenreAndReportCounts() {
+        UUID oldGenre = UUID.randomUUID();
+        BookFilter filter = new BookFilter(null, null, oldGenre, null, null);
+        when(genreRepository.findAllById(List.of(GENRE_ID))).thenReturn(Flux.just(new Genre(GENRE_ID, "New")));
+        when(bookRepository.findIdsByFilter(filter, null, 2)).thenReturn(Flux.just(BOOK_1));
+        when(genreRepository.unlinkGenres(List.of(BOOK_1), List.of(oldGenre))).thenReturn(Mono.just(1L));
+        when(genreRepository.linkGenres(List.of(BOOK_1), List.of(GENRE_ID))).thenReturn(Mono.just(1L));
+
+        BulkBookUpdateDTO update = BulkBookUpdateDTO.builder()
+                .filter(filter)
+                .addGenreIds(List.of(GENRE_ID))
+                .removeGenreIds(List.of(oldGenre))
+                .build();
+
+        StepVerifier.create(bulkService.update(update))
+                .expectNextMatches(response -> {
+                    BulkResultDTO result = (BulkResultDTO) response.getData();
+                    assertEquals(1, result.genreLinksAdded());
+                    assertEquals(1, result.genreLinksRemoved());
+                    return result.matched() == 1 && result.transactions() == 1;
+                })
+                .verifyComplete();
+
+        verify(bookRepository, never()).updateAuthor(anyList(), any());
+        verify(genreIndex).removeBookGenres(BOOK_1, List.of(oldGenre));
+        verify(genreIndex).addBookGenres(BOOK_1, List.of(GENRE_ID));
+        verify(bookCache).invalidateAll(List.of(BOOK_1));
+    }
+
+    @Test
+    void shouldFailUpdateWhenAuthorIsMissing() {
+        when(authorRepository.existsById(AUTHOR_ID)).thenReturn(Mono.just(false));
+        BulkBookUpdateDTO update = BulkBookUpdateDTO.builder()
+                .filter(new BookFilter(List.of(BOOK_1), null, null, null, null))
+                .authorId(AUTHOR_ID)
+                .build();
+
+        StepVerifier.create(bulkService.update(update))
+                .expectNextMatches(response -> ResponseModel.FAIL_STATUS.equals(response.getStatus())
+                        && response.getMessage().contains("author not found"))
+                .verifyComplete();
+
+        verify(bookRepository, never()).findIdsByFilter(any(), isNull(), eq(2));
+    }
+}
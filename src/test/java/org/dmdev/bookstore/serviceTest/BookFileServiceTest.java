@@ -0,0 +1,228 @@
+package org.dmdev.bookstore.serviceTest;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.dmdev.bookstore.cache.BookCache;
+import org.dmdev.bookstore.domain.BookFile;
+import org.dmdev.bookstore.dto.BookFileDTO;
+import org.dmdev.bookstore.mapper.BookFileMapper;
+import org.dmdev.bookstore.model.BookFormat;
+import org.dmdev.bookstore.model.ResponseModel;
+import org.dmdev.bookstore.repository.BookFileRepository;
+import org.dmdev.bookstore.repository.BlobRepository;
+import org.dmdev.bookstore.repository.BookRepository;
+import org.dmdev.bookstore.storage.BlobStore;
+import org.dmdev.bookstore.service.BookFileService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.multipart.FilePartEvent;
+import org.springframework.http.codec.multipart.FormPartEvent;
+import org.springframework.http.codec.multipart.PartEvent;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+public class BookFileServiceTest {
+
+    @TempDir
+    Path directory;
+
+    private BookFileService bookFileService;
+    private BookFileRepository bookFileRepository;
+    private BookRepository bookRepository;
+    private BlobStore blobStore;
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        bookFileRepository = mock(BookFileRepository.class);
+        bookRepository = mock(BookRepository.class);
+        BlobRepository blobRepository = mock(BlobRepository.class);
+        when(blobRepository.reserve(anyString(), anyLong())).thenReturn(Mono.just(1));
+        blobStore = new BlobStore(blobRepository, mock(TransactionalOperator.class),
+                directory.resolve("files").toString(), Duration.ofHours(1), 500);
+        meterRegistry = new SimpleMeterRegistry();
+        bookFileService = new BookFileService(bookFileRepository, bookRepository, new BookFileMapper(),
+                mock(BookCache.class), blobStore, meterRegistry);
+    }
+
+    @Test
+    void shouldDescribeStoredFile() throws Exception {
+        UUID id = UUID.randomUUID();
+        Path path = Files.write(Files.createDirectories(directory.resolve("files")).resolve("war-and-peace.epub"), new byte[1024]);
+        when(bookFileRepository.findById(id)).thenReturn(Mono.just(new BookFile(id, UUID.randomUUID(), "epub", path.toString(), null, null, null)));
+
+        StepVerifier.create(bookFileService.findDownload(id, false))
+                .assertNext(download -> {
+                    assertEquals(path, download.path());
+                    assertEquals("war-and-peace.epub", download.fileName());
+                    assertEquals(MediaType.parseMediaType("application/epub+zip"), download.mediaType());
+                    assertEquals(1024, download.size());
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    void shouldBeEmptyWhenFileIsMissingOnDisk() {
+        UUID id = UUID.randomUUID();
+        when(bookFileRepository.findById(id))
+                .thenReturn(Mono.just(new BookFile(id, UUID.randomUUID(), "pdf", directory.resolve("files").resolve("gone.pdf").toString(), null, null, null)));
+
+        StepVerifier.create(bookFileService.findDownload(id, false)).verifyComplete();
+    }
+
+    @Test
+    void shouldBeEmptyWhenPathIsOutsideFilesDirectory() throws Exception {
+        UUID outside = UUID.randomUUID();
+        UUID traversal = UUID.randomUUID();
+        Path secret = Files.write(directory.resolve("secret.txt"), new byte[16]);
+        when(bookFileRepository.findById(outside))
+                .thenReturn(Mono.just(new BookFile(outside, UUID.randomUUID(), "txt", secret.toString(), null, null, null)));
+        when(bookFileRepository.findById(traversal)).thenReturn(Mono.just(new BookFile(traversal, UUID.randomUUID(), "txt",
+                directory.resolve("files").resolve("..").resolve("secret.txt").toString(), null, null, null)));
+
+        StepVerifier.create(bookFileService.findDownload(outside, false)).verifyComplete();
+        StepVerifier.create(bookFileService.findDownload(traversal, false)).verifyComplete();
+    }
+
+    @Test
+    void shouldBeEmptyForUnknownFile() {
+        UUID id = UUID.randomUUID();
+        when(bookFileRepository.findById(id)).thenReturn(Mono.empty());
+
+        StepVerifier.create(bookFileService.findDownload(id, false)).verifyComplete();
+    }
+
+    @Test
+    void shouldPreferGzipVariantWhenAccepted() throws Exception {
+        UUID id = UUID.randomUUID();
+        String sha256 = "ab".repeat(32);
+        Path blob = blobStore.pathOf(sha256);
+        Files.createDirectories(blob.getParent());
+        Files.write(blob, new byte[1000]);
+        Files.write(blobStore.gzipPathOf(sha256), new byte[100]);
+        when(bookFileRepository.findById(id)).thenReturn(Mono.just(
+                new BookFile(id, UUID.randomUUID(), "txt", blob.toString(), sha256, 1000L, "notes.txt")));
+
+        StepVerifier.create(bookFileService.findDownload(id, true))
+                .assertNext(download -> {
+                    assertEquals(blobStore.gzipPathOf(sha256), download.path());
+                    assertEquals("gzip", download.contentEncoding());
+                    assertEquals(100, download.size());
+                    assertEquals("notes.txt", download.fileName());
+                    assertEquals("\"" + sha256 + "-gzip\"", download.etag());
+                    assertEquals(900, download.savedBytes());
+                    bookFileService.recordFullDownload(download);
+                })
+                .verifyComplete();
+        StepVerifier.create(bookFileService.findDownload(id, false))
+                .assertNext(download -> {
+                    assertEquals(blob, download.path());
+                    assertNull(download.contentEncoding());
+                    bookFileService.recordFullDownload(download);
+                })
+                .verifyComplete();
+
+        assertEquals(900, meterRegistry.get("bookstore.downloads.precompressed.saved.bytes").counter().count());
+    }
+
+    @Test
+    void shouldFallBackToOctetStreamForUnknownFormat() {
+        assertEquals(MediaType.APPLICATION_PDF, BookFormat.mediaTypeOf("PDF"));
+        assertEquals(MediaType.APPLICATION_OCTET_STREAM, BookFormat.mediaTypeOf("cbz"));
+        assertEquals(MediaType.APPLICATION_OCTET_STREAM, BookFormat.mediaTypeOf(null));
+    }
+
+    @Test
+    void shouldStreamUploadToDiskWithChecksum() throws Exception {
+        UUID bookId = UUID.randomUUID();
+        byte[] content = "It was the best of times".getBytes(StandardCharsets.UTF_8);
+        String checksum = sha256(content);
+        when(bookRepository.existsById(bookId)).thenReturn(Mono.just(true));
+        when(bookFileRepository.saveBookFiles(anyList())).thenReturn(Mono.empty());
+        Flux<PartEvent> parts = Flux.concat(
+                FormPartEvent.create("note", "first edition"),
+                FilePartEvent.create(BookFileService.FILE_PART, "../../two-cities.txt", MediaType.TEXT_PLAIN,
+                        Flux.just(buffer(Arrays.copyOfRange(content, 0, 10)), buffer(Arrays.copyOfRange(content, 10, content.length)))));
+
+        StepVerifier.create(bookFileService.upload(bookId, "TXT", parts))
+                .assertNext(response -> {
+                    assertEquals(ResponseModel.SUCCESS_STATUS, response.getStatus());
+                    BookFileDTO file = (BookFileDTO) response.getData();
+                    assertEquals("txt", file.format());
+                    assertEquals(content.length, file.size());
+                    assertEquals(checksum, file.sha256());
+                    assertEquals("two-cities.txt", file.fileName());
+                    assertEquals(blobStore.pathOf(checksum).toString(), file.filepath());
+                })
+                .verifyComplete();
+
+        ArgumentCaptor<List<BookFile>> saved = ArgumentCaptor.forClass(List.class);
+        verify(bookFileRepository).saveBookFiles(saved.capture());
+        assertArrayEquals(content, Files.readAllBytes(Path.of(saved.getValue().get(0).getFilePath())));
+    }
+
+    @Test
+    void shouldRejectUploadOverFormatLimit() throws Exception {
+        UUID bookId = UUID.randomUUID();
+        int megabyte = 1024 * 1024;
+        when(bookRepository.existsById(bookId)).thenReturn(Mono.just(true));
+        Flux<PartEvent> parts = Flux.concat(FilePartEvent.create(BookFileService.FILE_PART, "huge.txt", MediaType.TEXT_PLAIN,
+                Flux.range(0, (int) BookFormat.TXT.maxSize().toMegabytes() + 1).map(i -> buffer(new byte[megabyte]))));
+
+        StepVerifier.create(bookFileService.upload(bookId, "txt", parts))
+                .assertNext(response -> assertEquals(ResponseModel.FAIL_STATUS, response.getStatus()))
+                .verifyComplete();
+
+        verify(bookFileRepository, never()).saveBookFiles(anyList());
+        try (Stream<Path> left = Files.walk(directory.resolve("files"))) {
+            assertTrue(left.noneMatch(Files::isRegularFile));
+        }
+    }
+
+    @Test
+    void shouldRejectUploadForUnknownFormatOrBook() {
+        UUID bookId = UUID.randomUUID();
+        when(bookRepository.existsById(bookId)).thenReturn(Mono.just(false));
+
+        StepVerifier.create(bookFileService.upload(bookId, "cbz", Flux.empty()))
+                .assertNext(response -> assertEquals("Unsupported format: cbz", response.getMessage()))
+                .verifyComplete();
+        StepVerifier.create(bookFileService.upload(bookId, "pdf", Flux.empty()))
+                .assertNext(response -> assertEquals("Book not found", response.getMessage()))
+                .verifyComplete();
+    }
+
+    private static DataBuffer buffer(byte[] bytes) {
+        return DefaultDataBufferFactory.sharedInstance.wrap(bytes);
+    }
+
+    private static String sha256(byte[] bytes) throws Exception {
+        return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+    }
+}
@@ -0,0 +1,125 @@
+package org.dmdev.bookstore.serviceTest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.dmdev.bookstore.domain.Author;
+import org.dmdev.bookstore.domain.Book;
+import org.dmdev.bookstore.domain.BookFile;
+import org.dmdev.bookstore.domain.BookGenre;
+import org.dmdev.bookstore.domain.Genre;
+import org.dmdev.bookstore.dto.ImportErrorDTO;
+import org.dmdev.bookstore.dto.ImportProgressDTO;
+import org.dmdev.bookstore.index.GenreIndex;
+import org.dmdev.bookstore.index.TypeaheadIndex;
+import org.dmdev.bookstore.repository.AuthorRepository;
+import org.dmdev.bookstore.repository.BookFileRepository;
+import org.dmdev.bookstore.repository.BookRepository;
+import org.dmdev.bookstore.repository.GenreRepository;
+import org.dmdev.bookstore.service.BookImportService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+public class BookImportServiceTest {
+
+    private static final UUID AUTHOR_ID = UUID.randomUUID();
+    private static final Genre FANTASY = new Genre(UUID.randomUUID(), "Fantasy");
+
+    private BookImportService importService;
+    private BookRepository bookRepository;
+    private AuthorRepository authorRepository;
+    private GenreRepository genreRepository;
+    private BookFileRepository bookFileRepository;
+    private GenreIndex genreIndex;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        bookRepository = mock(BookRepository.class);
+        authorRepository = mock(AuthorRepository.class);
+        genreRepository = mock(GenreRepository.class);
+        bookFileRepository = mock(BookFileRepository.class);
+        genreIndex = mock(GenreIndex.class);
+        TransactionalOperator transactionalOperator = mock(TransactionalOperator.class);
+        when(transactionalOperator.transactional(any(Mono.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        importService = new BookImportService(bookRepository, authorRepository, genreRepository, bookFileRepository,
+                mock(TypeaheadIndex.class), genreIndex, transactionalOperator,
+                new ObjectMapper().registerModule(new JavaTimeModule()), new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(importService, "chunkSize", 100);
+
+        when(authorRepository.findAllById(anyCollection()))
+                .thenReturn(Flux.just(Author.builder().id(AUTHOR_ID).build()));
+        when(genreRepository.findAllByNameIn(anyCollection())).thenReturn(Flux.just(FANTASY));
+        when(bookRepository.insertAll(anyList())).thenAnswer(invocation ->
+                Mono.just((long) invocation.getArgument(0, List.class).size()));
+        when(genreRepository.insertBookGenres(anyList())).thenReturn(Mono.empty());
+        when(bookFileRepository.saveBookFiles(anyList())).thenReturn(Mono.empty());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void shouldImportCsvAndReportBadRows() {
+        Flux<String> csv = Flux.just(
+                "isbn,title,pages,publishedDate,authorId,genres,files",
+                "9780000000001,\"Dragons, Vol. 1\",320,2020-01-01," + AUTHOR_ID + ",Fantasy,PDF:/books/d1.pdf",
+                "9780000000002,Ghosts,abc,2020-01-01," + AUTHOR_ID + ",,",
+                "9780000000003,Elves,100,," + UUID.randomUUID() + ",Fantasy,",
+                "9780000000004,Orcs,100,," + AUTHOR_ID + ",Horror,");
+
+        StepVerifier.create(importService.importBooks(csv, BookImportService.Format.CSV))
+                .assertNext(progress -> {
+                    assertEquals(4, progress.processed());
+                    assertEquals(1, progress.imported());
+                    assertEquals(3, progress.failed());
+                    assertEquals(List.of(3L, 4L, 5L), progress.errors().stream().map(ImportErrorDTO::line).sorted().toList());
+                })
+                .assertNext(progress -> assertTrue(progress.done()))
+                .verifyComplete();
+
+        ArgumentCaptor<List<Book>> books = ArgumentCaptor.forClass(List.class);
+        verify(bookRepository).insertAll(books.capture());
+        assertEquals("Dragons, Vol. 1", books.getValue().get(0).getTitle());
+        verify(genreIndex).addAll(List.of(new BookGenre(books.getValue().get(0).getId(), FANTASY.getId())));
+        ArgumentCaptor<List<BookFile>> files = ArgumentCaptor.forClass(List.class);
+        verify(bookFileRepository).saveBookFiles(files.capture());
+        assertEquals("/books/d1.pdf", files.getValue().get(0).getFilePath());
+    }
+
+    @Test
+    void shouldRetryFailedChunkRowByRow() {
+        when(bookRepository.insertAll(anyList()))
+                .thenReturn(Mono.error(new RuntimeException("value too long")))
+                .thenReturn(Mono.just(1L))
+                .thenReturn(Mono.error(new RuntimeException("value too long")));
+        Flux<String> ndjson = Flux.just(
+                "{\"title\":\"Dragons\",\"pages\":10,\"authorId\":\"" + AUTHOR_ID + "\",\"genres\":[\"Fantasy\"]}",
+                "{\"title\":\"" + "x".repeat(300) + "\",\"authorId\":\"" + AUTHOR_ID + "\"}",
+                "{not json");
+
+        StepVerifier.create(importService.importBooks(ndjson, BookImportService.Format.NDJSON))
+                .assertNext(progress -> {
+                    assertEquals(3, progress.processed());
+                    assertEquals(1, progress.imported());
+                    assertEquals(2, progress.failed());
+                })
+                .expectNextMatches(ImportProgressDTO::done)
+                .verifyComplete();
+
+        verify(bookRepository, times(3)).insertAll(anyList());
+    }
+}
@@ -1,19 +1,29 @@
 package org.dmdev.bookstore.serviceTest;
 
+import org.dmdev.bookstore.batch.BookWriteCoalescer;
+import org.dmdev.bookstore.cache.BookCache;
 import org.dmdev.bookstore.domain.Author;
 import org.dmdev.bookstore.domain.Book;
 import org.dmdev.bookstore.domain.BookFile;
+import org.dmdev.bookstore.domain.Genre;
 import org.dmdev.bookstore.dto.BookDTO;
 import org.dmdev.bookstore.dto.BookFileDTO;
+import org.dmdev.bookstore.dto.BookPageDTO;
 import org.dmdev.bookstore.dto.GenreDTO;
+import org.dmdev.bookstore.index.GenreIndex;
+import org.dmdev.bookstore.index.TypeaheadIndex;
 import org.dmdev.bookstore.mapper.BookFileMapper;
 import org.dmdev.bookstore.mapper.BookMapper;
+import org.dmdev.bookstore.model.BookCursor;
+import org.dmdev.bookstore.model.BookSearchCursor;
+import org.dmdev.bookstore.model.BookSearchHit;
 import org.dmdev.bookstore.model.ResponseModel;
 import org.dmdev.bookstore.repository.AuthorRepository;
 import org.dmdev.bookstore.repository.BookFileRepository;
 import org.dmdev.bookstore.repository.BookRepository;
 import org.dmdev.bookstore.repository.GenreRepository;
 import org.dmdev.bookstore.service.BookService;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
@@ -23,13 +33,19 @@ import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
 
+import java.time.Instant;
 import java.time.LocalDate;
 import java.util.List;
 import java.util.UUID;
+import java.util.function.Function;
 
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.lenient;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -47,10 +63,27 @@ public class BookServiceTest {
     BookMapper mapper;
     @Mock
     BookFileMapper bookFileMapper;
+    @Mock
+    TypeaheadIndex typeaheadIndex;
+    @Mock
+    GenreIndex genreIndex;
+    @Mock
+    BookCache bookCache;
+    @Mock
+    BookWriteCoalescer writeCoalescer;
 
     @InjectMocks
     BookService bookService;
 
+    @BeforeEach
+    void delegateWritesToRepository() {
+        // A disabled coalescer hands every write straight to the repository
+        lenient().when(writeCoalescer.create(any(), any(), any())).thenAnswer(invocation ->
+                bookRepository.createAggregate(invocation.getArgument(0), invocation.getArgument(1), invocation.getArgument(2)));
+        lenient().when(writeCoalescer.update(any(), any(), any())).thenAnswer(invocation ->
+                bookRepository.updateAggregate(invocation.getArgument(0), invocation.getArgument(1), invocation.getArgument(2)));
+    }
+
     @Test
     void shouldReturnFailIfBookHasId() {
         BookDTO bookDTO = mock(BookDTO.class);
@@ -66,44 +99,52 @@ public class BookServiceTest {
     @Test
     void shouldReturnErrorIfAuthorNotFound() {
         BookDTO bookDTO = buildValidBookDTOWithoutId();
-        when(authorRepository.findById(bookDTO.authorId())).thenReturn(Mono.empty());
+        when(mapper.dtoToBook(bookDTO)).thenReturn(new Book());
+        when(bookFileMapper.toBookFile(any())).thenAnswer(invocation -> new BookFile());
+        when(bookRepository.createAggregate(any(), any(), any())).thenReturn(Mono.empty());
 
         StepVerifier.create(bookService.save(bookDTO))
                 .expectNextMatches(response ->
                         response.getStatus().equals(ResponseModel.FAIL_STATUS) &&
                                 response.getMessage().contains("Failed to save book"))
                 .verifyComplete();
+
+        verifyNoInteractions(typeaheadIndex, genreIndex);
     }
 
     @Test
     void shouldSaveBookSuccessfully() {
         BookDTO bookDTO = buildValidBookDTOWithoutId();
-        Author author = new Author(); // stub
-        Book book = new Book(); book.setId(UUID.randomUUID()); book.setTitle(bookDTO.title());
+        Book book = new Book(); book.setTitle(bookDTO.title());
+        BookDTO created = buildValidBookDTOWithoutId();
 
-        when(authorRepository.findById(bookDTO.authorId())).thenReturn(Mono.just(author));
         when(mapper.dtoToBook(bookDTO)).thenReturn(book);
-        when(bookRepository.save(book)).thenReturn(Mono.just(book));
-        when(genreRepository.saveBookGenres(eq(book.getId()), any())).thenReturn(Mono.empty());
-        when(bookFileMapper.toBookFile(any())).thenReturn(new BookFile());
-        when(bookFileRepository.saveBookFiles(any())).thenReturn(Mono.empty());
+        when(bookFileMapper.toBookFile(any())).thenAnswer(invocation -> new BookFile());
+        when(bookRepository.createAggregate(eq(book), any(), any())).thenAnswer(invocation -> {
+            Book saved = invocation.getArgument(0);
+            saved.setGenres(List.of(new Genre(bookDTO.genres().get(0).id(), "Fantasy")));
+            saved.setFiles(invocation.getArgument(2));
+            return Mono.just(saved);
+        });
+        when(mapper.bookDtoToSend(eq(book), any(), any())).thenReturn(created);
 
         StepVerifier.create(bookService.save(bookDTO))
                 .expectNextMatches(response ->
                         response.getStatus().equals(ResponseModel.SUCCESS_STATUS) &&
-                                response.getMessage().contains("created"))
+                                response.getMessage().contains("created") &&
+                                response.getData() == created)
                 .verifyComplete();
+
+        verify(genreIndex).addBookGenres(book.getId(), List.of(bookDTO.genres().get(0).id()));
     }
 
     @Test
     void shouldHandleRepositoryFailureGracefully() {
         BookDTO bookDTO = buildValidBookDTOWithoutId();
-        Author author = new Author();
-        Book book = new Book(); book.setId(UUID.randomUUID());
-
-        when(authorRepository.findById(bookDTO.authorId())).thenReturn(Mono.just(author));
-        when(mapper.dtoToBook(bookDTO)).thenReturn(book);
-        when(bookRepository.save(book)).thenReturn(Mono.error(new RuntimeException("DB error")));
+        when(mapper.dtoToBook(bookDTO)).thenReturn(new Book());
+        when(bookFileMapper.toBookFile(any())).thenAnswer(invocation -> new BookFile());
+        when(bookRepository.createAggregate(any(), any(), any()))
+                .thenReturn(Mono.error(new RuntimeException("violates foreign key constraint")));
 
         StepVerifier.create(bookService.save(bookDTO))
                 .expectNextMatches(response ->
@@ -112,6 +153,73 @@ public class BookServiceTest {
                 .verifyComplete();
     }
 
+    @Test
+    void shouldReconcileLinksOnUpdate() {
+        BookDTO bookDTO = withId(buildValidBookDTOWithoutId(), UUID.randomUUID());
+        Book book = Book.builder().id(bookDTO.id()).title(bookDTO.title()).build();
+        UUID genreId = bookDTO.genres().get(0).id();
+
+        when(mapper.dtoToBook(bookDTO)).thenReturn(book);
+        when(bookFileMapper.toBookFile(any())).thenAnswer(invocation -> new BookFile());
+        when(bookRepository.updateAggregate(eq(book), eq(List.of(genreId)), any())).thenAnswer(invocation -> {
+            book.setGenres(List.of(new Genre(genreId, "genre")));
+            book.setFiles(invocation.getArgument(2));
+            return Mono.just(book);
+        });
+
+        StepVerifier.create(bookService.update(bookDTO))
+                .expectNextMatches(response -> response.getStatus().equals(ResponseModel.SUCCESS_STATUS))
+                .verifyComplete();
+
+        verify(genreIndex).replaceBookGenres(book.getId(), List.of(genreId));
+        verify(bookCache).invalidate(book.getId());
+    }
+
+    @Test
+    void shouldLeaveLinksUntouchedOnMetadataOnlyUpdate() {
+        BookDTO bookDTO = new BookDTO(UUID.randomUUID(), "Title", "isbn", LocalDate.now(), 545,
+                UUID.randomUUID(), null, null, 3L, null);
+        Book book = Book.builder().id(bookDTO.id()).genres(List.of()).files(List.of()).build();
+
+        when(mapper.dtoToBook(bookDTO)).thenReturn(book);
+        when(bookRepository.updateAggregate(book, null, null)).thenReturn(Mono.just(book));
+
+        StepVerifier.create(bookService.update(bookDTO))
+                .expectNextMatches(response -> response.getStatus().equals(ResponseModel.SUCCESS_STATUS))
+                .verifyComplete();
+
+        verifyNoInteractions(genreIndex, bookFileMapper);
+    }
+
+    @Test
+    void shouldReturnFailWhenUpdatedBookDoesNotExist() {
+        BookDTO bookDTO = withId(buildValidBookDTOWithoutId(), UUID.randomUUID());
+        when(mapper.dtoToBook(bookDTO)).thenReturn(new Book());
+        when(bookFileMapper.toBookFile(any())).thenAnswer(invocation -> new BookFile());
+        when(bookRepository.updateAggregate(any(), any(), any())).thenReturn(Mono.empty());
+        when(bookRepository.existsById(bookDTO.id())).thenReturn(Mono.just(false));
+
+        StepVerifier.create(bookService.update(bookDTO))
+                .expectNextMatches(response -> response.getMessage().equals("Book not found"))
+                .verifyComplete();
+    }
+
+    @Test
+    void shouldReturnConflictWhenUpdatedBookVersionIsStale() {
+        BookDTO bookDTO = withId(buildValidBookDTOWithoutId(), UUID.randomUUID());
+        when(mapper.dtoToBook(bookDTO)).thenReturn(new Book());
+        when(bookFileMapper.toBookFile(any())).thenAnswer(invocation -> new BookFile());
+        when(bookRepository.updateAggregate(any(), any(), any())).thenReturn(Mono.empty());
+        when(bookRepository.existsById(bookDTO.id())).thenReturn(Mono.just(true));
+
+        StepVerifier.create(bookService.update(bookDTO))
+                .expectNextMatches(response -> response.getStatus().equals(ResponseModel.CONFLICT_STATUS))
+                .verifyComplete();
+
+        verify(bookRepository, never()).findById(any(UUID.class));
+        verifyNoInteractions(bookCache);
+    }
+
     @Test
     void shouldReturnBooksSuccessfully() {
         int limit = 1, size = 2, offset = 0;
@@ -146,10 +254,92 @@ public class BookServiceTest {
                 .verifyComplete();
     }
 
+    @Test
+    void shouldRejectTooDeepOffset() {
+        StepVerifier.create(bookService.findAll(2_000, 10))
+                .expectNextMatches(response ->
+                        response.getStatus().equals(ResponseModel.FAIL_STATUS) &&
+                                response.getMessage().contains("cursor"))
+                .verifyComplete();
+
+        verifyNoInteractions(bookRepository);
+    }
+
+    @Test
+    void shouldRejectPageBelowOneAndOverflowingOffset() {
+        StepVerifier.create(bookService.findAll(0, 10))
+                .expectNextMatches(response -> response.getStatus().equals(ResponseModel.FAIL_STATUS))
+                .verifyComplete();
+        StepVerifier.create(bookService.findAll(Integer.MAX_VALUE, 100))
+                .expectNextMatches(response ->
+                        response.getStatus().equals(ResponseModel.FAIL_STATUS) &&
+                                response.getMessage().contains("cursor"))
+                .verifyComplete();
+
+        verifyNoInteractions(bookRepository);
+    }
+
+    @Test
+    void shouldClampPageSize() {
+        when(bookRepository.findAll(100, 0)).thenReturn(Flux.empty());
+
+        StepVerifier.create(bookService.findAll(1, 2_000_000))
+                .expectNextMatches(response -> response.getStatus().equals(ResponseModel.SUCCESS_STATUS))
+                .verifyComplete();
+
+        verify(bookRepository).findAll(100, 0);
+    }
+
+    @Test
+    void shouldReturnNextCursorWhenPageIsFull() {
+        Book book1 = new Book(); book1.setId(UUID.randomUUID()); book1.setPublicationDate(LocalDate.of(2001, 1, 1));
+        Book book2 = new Book(); book2.setId(UUID.randomUUID()); book2.setPublicationDate(LocalDate.of(2002, 1, 1));
+
+        when(bookRepository.findFirstPage(2)).thenReturn(Flux.just(book1, book2));
+
+        StepVerifier.create(bookService.findAllByCursor("", 2))
+                .expectNextMatches(response -> {
+                    BookPageDTO page = (BookPageDTO) response.getData();
+                    return response.getStatus().equals(ResponseModel.SUCCESS_STATUS) &&
+                            page.books().size() == 2 &&
+                            BookCursor.decode(page.next()).equals(BookCursor.of(book2));
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    void shouldContinueWithUndatedBooksAfterLastDatedPage() {
+        BookCursor cursor = new BookCursor(LocalDate.of(2001, 1, 1), UUID.randomUUID());
+        Book dated = new Book(); dated.setId(UUID.randomUUID()); dated.setPublicationDate(LocalDate.of(2002, 1, 1));
+        Book undated = new Book(); undated.setId(UUID.randomUUID());
+
+        when(bookRepository.findPageAfter(cursor.publicationDate(), cursor.id(), 3)).thenReturn(Flux.just(dated));
+        when(bookRepository.findUndatedPageAfter(any(), eq(2))).thenReturn(Flux.just(undated));
+
+        StepVerifier.create(bookService.findAllByCursor(cursor.encode(), 3))
+                .expectNextMatches(response -> {
+                    BookPageDTO page = (BookPageDTO) response.getData();
+                    return page.books().size() == 2 && page.next() == null;
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    void shouldReturnFailForMalformedCursor() {
+        StepVerifier.create(bookService.findAllByCursor("not a cursor", 10))
+                .expectNextMatches(response ->
+                        response.getStatus().equals(ResponseModel.FAIL_STATUS) &&
+                                response.getMessage().equals("Invalid cursor"))
+                .verifyComplete();
+
+        verifyNoInteractions(bookRepository);
+    }
+
     @Test
     void shouldReturnFailIfBookNotFound() {
         UUID id = UUID.randomUUID();
-        when(bookRepository.findById(id)).thenReturn(Mono.empty());
+        readThroughCache(id);
+        when(bookRepository.findAggregateById(id)).thenReturn(Mono.empty());
 
         StepVerifier.create(bookService.findById(id))
                 .expectNextMatches(response ->
@@ -161,7 +351,8 @@ public class BookServiceTest {
     @Test
     void shouldHandleRepositoryErrorGracefully() {
         UUID id = UUID.randomUUID();
-        when(bookRepository.findById(id)).thenReturn(Mono.error(new RuntimeException("DB down")));
+        readThroughCache(id);
+        when(bookRepository.findAggregateById(id)).thenReturn(Mono.error(new RuntimeException("DB down")));
 
         StepVerifier.create(bookService.findById(id))
                 .expectNextMatches(response ->
@@ -170,6 +361,152 @@ public class BookServiceTest {
                 .verifyComplete();
     }
 
+    @Test
+    void shouldMapAggregateInOneQuery() {
+        UUID id = UUID.randomUUID();
+        Book book = new Book(); book.setId(id);
+        book.setGenres(List.of(new Genre(UUID.randomUUID(), "Drama")));
+        book.setFiles(List.of());
+        BookDTO dto = buildValidBookDTOWithoutId();
+
+        readThroughCache(id);
+        when(bookRepository.findAggregateById(id)).thenReturn(Mono.just(book));
+        when(mapper.bookDtoToSend(book, book.getGenres(), book.getFiles())).thenReturn(dto);
+
+        StepVerifier.create(bookService.findById(id))
+                .expectNextMatches(response ->
+                        response.getStatus().equals(ResponseModel.SUCCESS_STATUS) &&
+                                response.getData() == dto)
+                .verifyComplete();
+
+        verifyNoInteractions(genreRepository, bookFileRepository);
+    }
+
+    @Test
+    void shouldReturnBooksByIdsInRequestedOrder() {
+        Book book1 = new Book(); book1.setId(UUID.randomUUID()); book1.setGenres(List.of()); book1.setFiles(List.of());
+        Book book2 = new Book(); book2.setId(UUID.randomUUID()); book2.setGenres(List.of()); book2.setFiles(List.of());
+        BookDTO dto1 = buildValidBookDTOWithoutId();
+        BookDTO dto2 = buildValidBookDTOWithoutId();
+        List<UUID> ids = List.of(book2.getId(), UUID.randomUUID(), book1.getId());
+
+        when(bookRepository.findAggregatesByIds(ids)).thenReturn(Flux.just(book1, book2));
+        when(mapper.bookDtoToSend(eq(book1), any(), any())).thenReturn(dto1);
+        when(mapper.bookDtoToSend(eq(book2), any(), any())).thenReturn(dto2);
+
+        StepVerifier.create(bookService.findAllByIds(ids))
+                .expectNextMatches(response -> response.getData().equals(List.of(dto2, dto1)))
+                .verifyComplete();
+    }
+
+    @Test
+    void shouldStreamBooksByAuthorWithoutCollecting() {
+        UUID authorId = UUID.randomUUID();
+        Book book1 = new Book(); book1.setTitle("Book 1");
+        Book book2 = new Book(); book2.setTitle("Book 2");
+        BookDTO dto1 = buildValidBookDTOWithoutId();
+        BookDTO dto2 = buildValidBookDTOWithoutId();
+
+        when(bookRepository.findAllByAuthorId(authorId)).thenReturn(Flux.just(book1, book2));
+        when(mapper.bookToDto(book1)).thenReturn(dto1);
+        when(mapper.bookToDto(book2)).thenReturn(dto2);
+
+        StepVerifier.create(bookService.streamAllByAuthor(authorId), 1)
+                .expectNext(dto1)
+                .thenRequest(1)
+                .expectNext(dto2)
+                .verifyComplete();
+
+        verifyNoInteractions(authorRepository);
+    }
+
+    @Test
+    void shouldReturnSearchCursorForFullPage() {
+        Book book = new Book(); book.setId(UUID.randomUUID());
+        BookSearchHit hit = new BookSearchHit(book, 0.75f);
+
+        when(bookRepository.search("tolstoy", null, 1)).thenReturn(Flux.just(hit));
+
+        StepVerifier.create(bookService.search("tolstoy", null, 1))
+                .expectNextMatches(response -> {
+                    BookPageDTO page = (BookPageDTO) response.getData();
+                    return response.getStatus().equals(ResponseModel.SUCCESS_STATUS) &&
+                            BookSearchCursor.decode(page.next()).equals(new BookSearchCursor(0.75f, book.getId()));
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    void shouldRejectBlankSearchQuery() {
+        StepVerifier.create(bookService.search(" ", null, 10))
+                .expectNextMatches(response -> response.getStatus().equals(ResponseModel.FAIL_STATUS))
+                .verifyComplete();
+
+        verifyNoInteractions(bookRepository);
+    }
+
+    @Test
+    void shouldServeCachedBookWithoutQuerying() {
+        UUID id = UUID.randomUUID();
+        BookDTO cached = buildValidBookDTOWithoutId();
+        when(bookCache.get(eq(id), any())).thenReturn(Mono.just(cached));
+
+        StepVerifier.create(bookService.findById(id))
+                .expectNextMatches(response -> response.getData() == cached)
+                .verifyComplete();
+
+        verifyNoInteractions(bookRepository);
+    }
+
+    @Test
+    void shouldReloadCachedBookOlderThanValidator() {
+        UUID id = UUID.randomUUID();
+        Instant updatedAt = Instant.parse("2024-05-01T10:15:30.123456Z");
+        BookDTO stale = BookDTO.builder().id(id).title("Old").updatedAt(updatedAt.minusSeconds(1)).build();
+        BookDTO fresh = BookDTO.builder().id(id).title("New").updatedAt(updatedAt).build();
+        when(bookCache.get(eq(id), any())).thenReturn(Mono.just(stale), Mono.just(fresh));
+
+        StepVerifier.create(bookService.findById(id, updatedAt))
+                .expectNextMatches(response -> response.getData() == fresh)
+                .verifyComplete();
+
+        verify(bookCache).invalidate(id);
+    }
+
+    @Test
+    void shouldReturnLastModifiedWithoutLoadingBook() {
+        UUID id = UUID.randomUUID();
+        Instant updatedAt = Instant.parse("2024-05-01T10:15:30.123456Z");
+        when(bookRepository.findUpdatedAtById(id)).thenReturn(Mono.just(updatedAt));
+
+        StepVerifier.create(bookService.findLastModified(id))
+                .expectNext(updatedAt)
+                .verifyComplete();
+
+        verify(bookRepository, never()).findAggregateById(any());
+        verifyNoInteractions(bookCache);
+    }
+
+    @Test
+    void shouldFallBackToFullReadWhenVersionLookupFails() {
+        UUID id = UUID.randomUUID();
+        when(bookRepository.findUpdatedAtById(id)).thenReturn(Mono.error(new RuntimeException("DB down")));
+
+        StepVerifier.create(bookService.findLastModified(id))
+                .verifyComplete();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void readThroughCache(UUID id) {
+        when(bookCache.get(eq(id), any())).thenAnswer(invocation ->
+                invocation.getArgument(1, Function.class).apply(id));
+    }
+
+    private BookDTO withId(BookDTO dto, UUID id) {
+        return new BookDTO(id, dto.title(), dto.isbn(), dto.publishedDate(), dto.pages(),
+                dto.authorId(), dto.genres(), dto.bookFiles(), dto.version(), dto.updatedAt());
+    }
+
     private BookDTO buildValidBookDTOWithoutId() {
         return new BookDTO(
                 null,
@@ -179,7 +516,9 @@ public class BookServiceTest {
                 545,
                 UUID.randomUUID(),
                 List.of(new GenreDTO(UUID.randomUUID(), "genre")),
-                List.of(new BookFileDTO(null, null, "fb2", "file.txt"))
+                List.of(new BookFileDTO(null, null, "fb2", "file.txt", null, null, null)),
+                0L,
+                null
         );
     }
 }
@@ -0,0 +1,100 @@
+package org.dmdev.bookstore.serviceTest;
+
+import org.dmdev.bookstore.dto.ExportJobDTO;
+import org.dmdev.bookstore.model.ResponseModel;
+import org.dmdev.bookstore.repository.BookRepository;
+import org.dmdev.bookstore.service.CatalogExportService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import reactor.core.publisher.Flux;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class CatalogExportServiceTest {
+
+    private static final int ROWS = 1234;
+
+    @TempDir
+    Path directory;
+
+    private CatalogExportService exportService;
+    private BookRepository bookRepository;
+
+    @BeforeEach
+    void setUp() {
+        bookRepository = mock(BookRepository.class);
+        exportService = new CatalogExportService(bookRepository, directory.toString(), 100, 2);
+        when(bookRepository.streamCatalogJson(100)).thenReturn(Flux.range(0, ROWS).map(i -> "{\"id\":" + i + "}"));
+    }
+
+    @Test
+    void shouldWriteGzippedNdjson() throws Exception {
+        ExportJobDTO job = (ExportJobDTO) exportService.start().block().getData();
+        Path file = awaitFinished(job.fileName());
+
+        List<String> lines = new String(gunzip(Files.newInputStream(file)), StandardCharsets.UTF_8).lines().toList();
+        assertEquals(ROWS, lines.size());
+        assertEquals("{\"id\":0}", lines.get(0));
+        assertEquals("{\"id\":1233}", lines.get(ROWS - 1));
+    }
+
+    @Test
+    void shouldRejectSecondExportWhileOneIsRunning() {
+        when(bookRepository.streamCatalogJson(100)).thenReturn(Flux.never());
+
+        assertEquals(ResponseModel.SUCCESS_STATUS, exportService.start().block().getStatus());
+        assertEquals(ResponseModel.FAIL_STATUS, exportService.start().block().getStatus());
+    }
+
+    @Test
+    void shouldTailFinishedExportToTheEnd() throws Exception {
+        ExportJobDTO job = (ExportJobDTO) exportService.start().block().getData();
+        Path file = awaitFinished(job.fileName());
+
+        byte[] streamed = DataBufferUtils.join(exportService.tail(file))
+                .map(buffer -> {
+                    byte[] bytes = new byte[buffer.readableByteCount()];
+                    buffer.read(bytes);
+                    DataBufferUtils.release(buffer);
+                    return bytes;
+                })
+                .block(Duration.ofSeconds(5));
+
+        assertArrayEquals(Files.readAllBytes(file), streamed);
+    }
+
+    @Test
+    void shouldNotResolveNamesOutsideTheExportPattern() {
+        assertTrue(exportService.find("../application.yml").isEmpty());
+        assertTrue(exportService.find("catalog-20260101T020000Z.ndjson.gz").isEmpty());
+    }
+
+    private Path awaitFinished(String fileName) throws InterruptedException {
+        for (int attempt = 0; attempt < 100 && exportService.isRunning(fileName); attempt++) {
+            Thread.sleep(50);
+        }
+        assertFalse(exportService.isRunning(fileName));
+        return exportService.find(fileName).orElseThrow();
+    }
+
+    private static byte[] gunzip(InputStream compressed) throws IOException {
+        try (InputStream in = new GZIPInputStream(compressed); ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+            in.transferTo(out);
+            return out.toByteArray();
+        }
+    }
+}
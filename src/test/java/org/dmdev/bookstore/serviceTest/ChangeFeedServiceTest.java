@@ -0,0 +1,96 @@
+package org.dmdev.bookstore.serviceTest;
+
+import org.dmdev.bookstore.domain.OutboxEvent;
+import org.dmdev.bookstore.dto.ChangeEventDTO;
+import org.dmdev.bookstore.repository.OutboxEventRepository;
+import org.dmdev.bookstore.service.ChangeFeedService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+public class ChangeFeedServiceTest {
+
+    private static final int BATCH_SIZE = 10;
+
+    private ChangeFeedService changeFeedService;
+    private OutboxEventRepository outboxEventRepository;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        outboxEventRepository = mock(OutboxEventRepository.class);
+        TransactionalOperator transactionalOperator = mock(TransactionalOperator.class);
+        when(transactionalOperator.transactional(any(Mono.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        changeFeedService = new ChangeFeedService(outboxEventRepository, transactionalOperator,
+                true, Duration.ofSeconds(1), BATCH_SIZE, Duration.ofDays(7));
+    }
+
+    @Test
+    void shouldPublishPendingEventsOnlyWhileHoldingRelayLock() {
+        when(outboxEventRepository.tryRelayLock(anyLong())).thenReturn(Mono.just(true), Mono.just(false));
+        when(outboxEventRepository.publishPending(BATCH_SIZE)).thenReturn(Mono.just(3));
+
+        StepVerifier.create(changeFeedService.relay()).expectNext(3).verifyComplete();
+        StepVerifier.create(changeFeedService.relay()).expectNext(0).verifyComplete();
+
+        verify(outboxEventRepository, times(1)).publishPending(anyInt());
+    }
+
+    @Test
+    void shouldReplayBacklogThenFollowLiveEventsWithoutDuplicates() {
+        when(outboxEventRepository.tryRelayLock(anyLong())).thenReturn(Mono.just(false));
+        when(outboxEventRepository.findPublishedAfter(5L, BATCH_SIZE)).thenReturn(Flux.just(event(6), event(7)));
+        when(outboxEventRepository.findPublishedAfter(0L, BATCH_SIZE)).thenReturn(Flux.just(event(6), event(7), event(8)));
+
+        StepVerifier.create(changeFeedService.stream(5L).map(ChangeEventDTO::position))
+                .expectNext(6L, 7L)
+                .then(() -> changeFeedService.poll().block())
+                .expectNext(8L)
+                .thenCancel()
+                .verify();
+    }
+
+    @Test
+    void shouldOnlyTrackPositionWhenNobodyListens() {
+        when(outboxEventRepository.tryRelayLock(anyLong())).thenReturn(Mono.just(false));
+        when(outboxEventRepository.findLastPosition()).thenReturn(Mono.just(42L));
+
+        changeFeedService.poll().block();
+
+        verify(outboxEventRepository, never()).findPublishedAfter(anyLong(), anyInt());
+    }
+
+    @Test
+    void shouldPurgePublishedEventsInBatches() {
+        when(outboxEventRepository.deletePublishedBefore(any(Instant.class), anyInt()))
+                .thenReturn(Mono.just(BATCH_SIZE), Mono.just(4));
+
+        changeFeedService.purgePublished();
+
+        verify(outboxEventRepository, times(2)).deletePublishedBefore(any(Instant.class), anyInt());
+    }
+
+    private static OutboxEvent event(long position) {
+        return OutboxEvent.builder()
+                .id(position)
+                .aggregateType("book")
+                .aggregateId(UUID.randomUUID())
+                .eventType("UPDATED")
+                .payload("{}")
+                .createdAt(Instant.now())
+                .position(position)
+                .build();
+    }
+}
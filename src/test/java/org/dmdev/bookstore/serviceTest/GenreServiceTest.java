@@ -1,8 +1,12 @@
 package org.dmdev.bookstore.serviceTest;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.dmdev.bookstore.cache.BookCache;
 import org.dmdev.bookstore.domain.Genre;
 import org.dmdev.bookstore.dto.GenreDTO;
+import org.dmdev.bookstore.index.GenreIndex;
 import org.dmdev.bookstore.mapper.GenreMapper;
+import org.dmdev.bookstore.model.GenreSnapshot;
 import org.dmdev.bookstore.model.ResponseModel;
 import org.dmdev.bookstore.repository.GenreRepository;
 import org.dmdev.bookstore.service.GenreService;
@@ -17,6 +21,9 @@ import java.util.List;
 import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.*;
 
@@ -25,12 +32,14 @@ public class GenreServiceTest {
     private GenreService genreService;
     private GenreMapper genreMapper;
     private GenreRepository genreRepository;
+    private GenreIndex genreIndex;
 
     @BeforeEach
     void setUp(){
         genreRepository = mock(GenreRepository.class);
         genreMapper = mock(GenreMapper.class);
-        genreService = new GenreService(genreRepository, genreMapper);
+        genreIndex = mock(GenreIndex.class);
+        genreService = new GenreService(genreRepository, genreMapper, genreIndex, mock(BookCache.class), new ObjectMapper());
     }
 
     @Test
@@ -85,48 +94,36 @@ public class GenreServiceTest {
     }
 
     @Test
-    void findAllGenres_ShouldReturnResponseModelWithGenres() {
-        List<Genre> genres = List.of(
-                new Genre(UUID.randomUUID(), "Action"),
-                new Genre(UUID.randomUUID(), "Drama")
-        );
-
-        List<GenreDTO> genreDTOs = genres.stream()
-                .map(g -> new GenreDTO(g.getId(), g.getName()))
-                .toList();
-
-        when(genreRepository.findAll()).thenReturn(Flux.fromIterable(genres));
-        for (int i = 0; i < genres.size(); i++) {
-            when(genreMapper.genreToDto(genres.get(i))).thenReturn(genreDTOs.get(i));
-        }
-
-        genreService.findAllGenres()
-                .as(StepVerifier::create)
-                .assertNext(response -> {
-                    assertEquals(ResponseModel.SUCCESS_STATUS, response.getStatus());
-                    assertEquals("Genres retrieved successfully", response.getMessage());
-
-                    assertTrue(response.getData() instanceof List<?>);
-                    List<?> data = (List<?>) response.getData();
-                    assertEquals(2, data.size());
+    void findAllGenresSnapshot_ShouldReturnUncachedFailure_WhenRepositoryFails() {
+        when(genreRepository.findAll()).thenReturn(Flux.error(new RuntimeException("DB error")));
 
-                    assertEquals(genreDTOs.get(0), data.get(0));
-                    assertEquals(genreDTOs.get(1), data.get(1));
+        genreService.findAllGenresSnapshot()
+                .as(StepVerifier::create)
+                .assertNext(snapshot -> {
+                    assertNull(snapshot.etag());
+                    assertTrue(new String(snapshot.body()).contains("Error while fetching genres"));
                 })
                 .verifyComplete();
     }
 
     @Test
-    void findAllGenres_ShouldReturnFailResponse_WhenRepositoryFails() {
-        when(genreRepository.findAll()).thenReturn(Flux.error(new RuntimeException("DB error")));
-
-        genreService.findAllGenres()
-                .as(StepVerifier::create)
-                .assertNext(response -> {
-                    assertEquals(ResponseModel.FAIL_STATUS, response.getStatus());
-                    assertEquals("Error while fetching genres", response.getMessage());
-                })
-                .verifyComplete();
+    void save_ShouldDropSnapshot_WhenRefreshFails() {
+        Genre action = new Genre(UUID.randomUUID(), "Action");
+        Genre drama = new Genre(UUID.randomUUID(), "Drama");
+        GenreDTO dto = new GenreDTO(null, "Drama");
+        when(genreMapper.genreToDto(action)).thenReturn(new GenreDTO(action.getId(), "Action"));
+        when(genreMapper.genreToDto(drama)).thenReturn(new GenreDTO(drama.getId(), "Drama"));
+        when(genreMapper.dtoToGenre(dto)).thenReturn(drama);
+        when(genreRepository.save(drama)).thenReturn(Mono.just(drama));
+        when(genreRepository.findAll()).thenReturn(Flux.just(action),
+                Flux.error(new RuntimeException("DB error")), Flux.just(action, drama));
+
+        genreService.refreshSnapshot().block();
+        assertEquals(ResponseModel.SUCCESS_STATUS, genreService.save(dto).block().getStatus());
+        GenreSnapshot after = genreService.findAllGenresSnapshot().block();
+
+        assertTrue(new String(after.body()).contains("Drama"));
+        verify(genreRepository, times(3)).findAll();
     }
 
     @Test
@@ -270,4 +267,38 @@ public class GenreServiceTest {
         verify(genreMapper).dtoToGenre(dto);
         verify(genreRepository).save(toSave);
     }
+
+    @Test
+    void findAllGenresSnapshot_ShouldServeFromMemory_OnceBuilt() {
+        Genre genre = new Genre(UUID.randomUUID(), "Action");
+        when(genreRepository.findAll()).thenReturn(Flux.just(genre));
+        when(genreMapper.genreToDto(genre)).thenReturn(new GenreDTO(genre.getId(), "Action"));
+
+        GenreSnapshot first = genreService.refreshSnapshot().block();
+        GenreSnapshot second = genreService.findAllGenresSnapshot().block();
+
+        assertSame(first, second);
+        assertTrue(second.etag().startsWith("\""));
+        assertTrue(new String(second.body()).contains("Action"));
+        verify(genreRepository, times(1)).findAll();
+    }
+
+    @Test
+    void save_ShouldSwapSnapshot_WhenGenreAdded() {
+        Genre action = new Genre(UUID.randomUUID(), "Action");
+        Genre drama = new Genre(UUID.randomUUID(), "Drama");
+        GenreDTO dto = new GenreDTO(null, "Drama");
+        when(genreMapper.genreToDto(action)).thenReturn(new GenreDTO(action.getId(), "Action"));
+        when(genreMapper.genreToDto(drama)).thenReturn(new GenreDTO(drama.getId(), "Drama"));
+        when(genreMapper.dtoToGenre(dto)).thenReturn(drama);
+        when(genreRepository.save(drama)).thenReturn(Mono.just(drama));
+        when(genreRepository.findAll()).thenReturn(Flux.just(action), Flux.just(action, drama));
+
+        String before = genreService.refreshSnapshot().block().etag();
+        genreService.save(dto).block();
+        GenreSnapshot after = genreService.findAllGenresSnapshot().block();
+
+        assertNotEquals(before, after.etag());
+        assertTrue(new String(after.body()).contains("Drama"));
+    }
 }
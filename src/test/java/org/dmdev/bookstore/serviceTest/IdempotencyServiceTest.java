@@ -0,0 +1,164 @@
+package org.dmdev.bookstore.serviceTest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.dmdev.bookstore.domain.IdempotencyKey;
+import org.dmdev.bookstore.model.ResponseModel;
+import org.dmdev.bookstore.repository.IdempotencyKeyRepository;
+import org.dmdev.bookstore.service.IdempotencyService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class IdempotencyServiceTest {
+
+    private static final Map<String, String> REQUEST = Map.of("title", "War and Peace");
+
+    private IdempotencyService idempotencyService;
+    private IdempotencyKeyRepository repository;
+    private ObjectMapper objectMapper;
+    private AtomicInteger executions;
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(IdempotencyKeyRepository.class);
+        objectMapper = new ObjectMapper();
+        idempotencyService = new IdempotencyService(repository, objectMapper, 100, Duration.ofHours(1), Duration.ofMinutes(1), new SimpleMeterRegistry());
+        executions = new AtomicInteger();
+        when(repository.complete(anyString(), anyString())).thenReturn(Mono.just(1));
+        when(repository.release(anyString())).thenReturn(Mono.just(1));
+    }
+
+    @Test
+    void shouldExecuteOnceAndReplayFromMemory() {
+        when(repository.claim(anyString(), anyString(), any(), any())).thenReturn(Mono.just(1));
+
+        StepVerifier.create(idempotencyService.execute("create-book", "key-1", REQUEST, action(success("created"))))
+                .expectNextMatches(response -> response.getMessage().equals("created"))
+                .verifyComplete();
+        StepVerifier.create(idempotencyService.execute("create-book", "key-1", REQUEST, action(success("again"))))
+                .expectNextMatches(response -> response.getMessage().equals("created"))
+                .verifyComplete();
+
+        assertEquals(1, executions.get());
+        verify(repository, times(1)).claim(eq("create-book:anonymous:key-1"), anyString(), any(), any());
+        verify(repository).complete(eq("create-book:anonymous:key-1"), anyString());
+    }
+
+    @Test
+    void shouldCollapseConcurrentDuplicates() {
+        when(repository.claim(anyString(), anyString(), any(), any())).thenReturn(Mono.just(1));
+        Sinks.One<ResponseModel> pending = Sinks.one();
+        Supplier<Mono<ResponseModel>> slowAction = () -> {
+            executions.incrementAndGet();
+            return pending.asMono();
+        };
+
+        Mono<ResponseModel> first = idempotencyService.execute("create-book", "key-2", REQUEST, slowAction);
+        Mono<ResponseModel> second = idempotencyService.execute("create-book", "key-2", REQUEST, slowAction);
+
+        StepVerifier.create(Mono.zip(first, second))
+                .then(() -> pending.tryEmitValue(success("created")))
+                .expectNextMatches(both -> both.getT1() == both.getT2())
+                .verifyComplete();
+
+        assertEquals(1, executions.get());
+    }
+
+    @Test
+    void shouldReplayStoredResponseWhenKeyIsAlreadyClaimed() throws Exception {
+        when(repository.claim(anyString(), anyString(), any(), any())).thenReturn(Mono.just(0));
+        String requestHash = requestHash();
+        when(repository.findById("create-author:anonymous:key-3")).thenReturn(Mono.just(new IdempotencyKey(
+                "create-author:anonymous:key-3", requestHash, objectMapper.writeValueAsString(success("stored")), null)));
+
+        StepVerifier.create(idempotencyService.execute("create-author", "key-3", REQUEST, action(success("created"))))
+                .expectNextMatches(response -> response.getMessage().equals("stored"))
+                .verifyComplete();
+
+        assertEquals(0, executions.get());
+    }
+
+    @Test
+    void shouldReportConflictWhileAnotherRequestHoldsTheKey() throws Exception {
+        when(repository.claim(anyString(), anyString(), any(), any())).thenReturn(Mono.just(0));
+        String requestHash = requestHash();
+        when(repository.findById(anyString())).thenReturn(Mono.just(new IdempotencyKey(
+                "create-book:anonymous:key-4", requestHash, null, null)));
+
+        StepVerifier.create(idempotencyService.execute("create-book", "key-4", REQUEST, action(success("created"))))
+                .expectNextMatches(response -> response.getStatus().equals(ResponseModel.CONFLICT_STATUS))
+                .verifyComplete();
+
+        assertEquals(0, executions.get());
+    }
+
+    @Test
+    void shouldRejectKeyReusedWithDifferentRequest() {
+        when(repository.claim(anyString(), anyString(), any(), any())).thenReturn(Mono.just(1));
+        idempotencyService.execute("create-book", "key-5", REQUEST, action(success("created"))).block();
+
+        StepVerifier.create(idempotencyService.execute("create-book", "key-5", Map.of("title", "Anna Karenina"),
+                        action(success("other"))))
+                .expectNextMatches(response -> response.getStatus().equals(ResponseModel.FAIL_STATUS))
+                .verifyComplete();
+
+        assertEquals(1, executions.get());
+    }
+
+    @Test
+    void shouldReleaseKeyWhenActionFails() {
+        when(repository.claim(anyString(), anyString(), any(), any())).thenReturn(Mono.just(1));
+        ResponseModel failure = ResponseModel.builder().status(ResponseModel.FAIL_STATUS).message("nope").build();
+
+        idempotencyService.execute("create-book", "key-6", REQUEST, action(failure)).block();
+        idempotencyService.execute("create-book", "key-6", REQUEST, action(failure)).block();
+
+        assertEquals(2, executions.get());
+        verify(repository, times(2)).release("create-book:anonymous:key-6");
+        verify(repository, never()).complete(anyString(), anyString());
+    }
+
+    @Test
+    void shouldBypassStoreWithoutKey() {
+        StepVerifier.create(idempotencyService.execute("create-book", null, REQUEST, action(success("created"))))
+                .expectNextCount(1)
+                .verifyComplete();
+
+        verifyNoInteractions(repository);
+    }
+
+    private String requestHash() throws Exception {
+        byte[] body = objectMapper.writeValueAsBytes(REQUEST);
+        return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(body));
+    }
+
+    private Supplier<Mono<ResponseModel>> action(ResponseModel response) {
+        return () -> {
+            executions.incrementAndGet();
+            return Mono.just(response);
+        };
+    }
+
+    private static ResponseModel success(String message) {
+        return ResponseModel.builder()
+                .status(ResponseModel.SUCCESS_STATUS)
+                .message(message)
+                .build();
+    }
+}
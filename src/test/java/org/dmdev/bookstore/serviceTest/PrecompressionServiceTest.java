@@ -0,0 +1,116 @@
+package org.dmdev.bookstore.serviceTest;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.dmdev.bookstore.repository.BlobRepository;
+import org.dmdev.bookstore.service.PrecompressionService;
+import org.dmdev.bookstore.storage.BlobStore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.*;
+
+public class PrecompressionServiceTest {
+
+    private static final String TEXT_SHA = "ab".repeat(32);
+    private static final String RANDOM_SHA = "cd".repeat(32);
+
+    @TempDir
+    Path directory;
+
+    private BlobRepository blobRepository;
+    private BlobStore blobStore;
+    private SimpleMeterRegistry meterRegistry;
+    private PrecompressionService precompressionService;
+
+    @BeforeEach
+    void setUp() {
+        blobRepository = mock(BlobRepository.class);
+        blobStore = new BlobStore(blobRepository, mock(TransactionalOperator.class), directory.toString(), Duration.ofHours(1), 500);
+        meterRegistry = new SimpleMeterRegistry();
+        precompressionService = new PrecompressionService(blobRepository, blobStore, meterRegistry, true, 100, 0.9);
+        when(blobRepository.markCompressed(any(), any())).thenReturn(Mono.just(1));
+    }
+
+    @Test
+    void shouldKeepGzipVariantOfCompressibleContent() throws Exception {
+        byte[] text = "Happy families are all alike; ".repeat(1000).getBytes(StandardCharsets.UTF_8);
+        writeBlob(TEXT_SHA, text);
+        when(blobRepository.findUncompressed(any(), anyInt())).thenReturn(Flux.just(TEXT_SHA));
+
+        StepVerifier.create(precompressionService.compressPending()).expectNext(1L).verifyComplete();
+
+        Path gzip = blobStore.gzipPathOf(TEXT_SHA);
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(gzip))) {
+            assertArrayEquals(text, in.readAllBytes());
+        }
+        verify(blobRepository).markCompressed(TEXT_SHA, Files.size(gzip));
+        assertEquals(text.length - Files.size(gzip),
+                meterRegistry.get("bookstore.files.precompressed.saved.bytes").counter().count());
+    }
+
+    @Test
+    void shouldSkipVariantThatDoesNotPayOff() throws Exception {
+        byte[] noise = new byte[64 * 1024];
+        new Random(42).nextBytes(noise);
+        writeBlob(RANDOM_SHA, noise);
+        when(blobRepository.findUncompressed(any(), anyInt())).thenReturn(Flux.just(RANDOM_SHA));
+
+        StepVerifier.create(precompressionService.compressPending()).expectNext(1L).verifyComplete();
+
+        assertFalse(Files.exists(blobStore.gzipPathOf(RANDOM_SHA)));
+        verify(blobRepository).markCompressed(eq(RANDOM_SHA), isNull());
+        assertEquals(1, meterRegistry.get("bookstore.files.precompressed").tag("outcome", "skipped").counter().count());
+    }
+
+    @Test
+    void shouldDropVariantOfBlobCollectedMeanwhile() throws Exception {
+        writeBlob(TEXT_SHA, "a".repeat(10_000).getBytes(StandardCharsets.UTF_8));
+        when(blobRepository.findUncompressed(any(), anyInt())).thenReturn(Flux.just(TEXT_SHA));
+        when(blobRepository.markCompressed(eq(TEXT_SHA), any())).thenReturn(Mono.just(0));
+
+        StepVerifier.create(precompressionService.compressPending()).expectNext(1L).verifyComplete();
+
+        assertFalse(Files.exists(blobStore.gzipPathOf(TEXT_SHA)));
+    }
+
+    @Test
+    void shouldNotCountVariantThatFailedToCommit() throws Exception {
+        writeBlob(TEXT_SHA, "a".repeat(10_000).getBytes(StandardCharsets.UTF_8));
+        when(blobRepository.findUncompressed(any(), anyInt())).thenReturn(Flux.just(TEXT_SHA));
+        BlobStore failingStore = spy(blobStore);
+        doReturn(Mono.error(new IOException("disk full"))).when(failingStore).commitGzip(any(), eq(TEXT_SHA));
+        precompressionService = new PrecompressionService(blobRepository, failingStore, meterRegistry, true, 100, 0.9);
+
+        StepVerifier.create(precompressionService.compressPending()).expectNext(0L).verifyComplete();
+
+        assertEquals(0, meterRegistry.get("bookstore.files.precompressed").tag("outcome", "created").counter().count());
+        assertEquals(0, meterRegistry.get("bookstore.files.precompressed.saved.bytes").counter().count());
+    }
+
+    private void writeBlob(String sha256, byte[] content) throws Exception {
+        Path blob = blobStore.pathOf(sha256);
+        Files.createDirectories(blob.getParent());
+        Files.write(blob, content);
+    }
+}
@@ -0,0 +1,81 @@
+package org.dmdev.bookstore.storageTest;
+
+import org.dmdev.bookstore.repository.BlobRepository;
+import org.dmdev.bookstore.storage.BlobStore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class BlobStoreTest {
+
+    private static final String SHA_1 = "ab".repeat(32);
+    private static final String SHA_2 = "cd".repeat(32);
+
+    @TempDir
+    Path directory;
+
+    private BlobRepository blobRepository;
+    private BlobStore blobStore;
+
+    @BeforeEach
+    void setUp() {
+        blobRepository = mock(BlobRepository.class);
+        TransactionalOperator transactionalOperator = mock(TransactionalOperator.class);
+        when(transactionalOperator.transactional(any(Mono.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(blobRepository.reserve(anyString(), anyLong())).thenReturn(Mono.just(1));
+        blobStore = new BlobStore(blobRepository, transactionalOperator, directory.toString(), Duration.ofHours(1), 500);
+    }
+
+    @Test
+    void shouldShardBlobPaths() {
+        assertEquals(directory.resolve("blobs/ab/ab/" + SHA_1), blobStore.pathOf(SHA_1));
+    }
+
+    @Test
+    void shouldStoreEachContentOnce() throws Exception {
+        Path first = Files.writeString(blobStore.newTempFile().block(), "content");
+        Path second = Files.writeString(blobStore.newTempFile().block(), "content");
+
+        StepVerifier.create(blobStore.commit(first, SHA_1, 7)).expectNext(blobStore.pathOf(SHA_1)).verifyComplete();
+        StepVerifier.create(blobStore.commit(second, SHA_1, 7)).expectNext(blobStore.pathOf(SHA_1)).verifyComplete();
+
+        assertEquals("content", Files.readString(blobStore.pathOf(SHA_1)));
+        assertFalse(Files.exists(first));
+        assertFalse(Files.exists(second));
+        verify(blobRepository, times(2)).reserve(SHA_1, 7);
+    }
+
+    @Test
+    void shouldDeleteOnlyBlobsStillCollectable() throws Exception {
+        for (String sha : new String[]{SHA_1, SHA_2}) {
+            blobStore.commit(Files.writeString(blobStore.newTempFile().block(), sha), sha, 64).block();
+        }
+        when(blobRepository.findCollectable(any(), anyInt())).thenReturn(Flux.just(SHA_1, SHA_2));
+        when(blobRepository.deleteCollectable(eq(SHA_1), any())).thenReturn(Mono.just(1));
+        // Referenced again between the scan and the delete
+        when(blobRepository.deleteCollectable(eq(SHA_2), any())).thenReturn(Mono.just(0));
+
+        StepVerifier.create(blobStore.sweep()).expectNext(1L).verifyComplete();
+
+        assertFalse(Files.exists(blobStore.pathOf(SHA_1)));
+        assertTrue(Files.exists(blobStore.pathOf(SHA_2)));
+    }
+}